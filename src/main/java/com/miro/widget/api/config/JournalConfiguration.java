@@ -0,0 +1,44 @@
+package com.miro.widget.api.config;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.repository.JournaledWidgetRepository;
+import com.miro.widget.api.repository.journal.WidgetCheckpoint;
+import com.miro.widget.api.repository.journal.WidgetJournal;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+@ConditionalOnProperty(name = "widget.repository.journal.path")
+public class JournalConfiguration {
+
+    @Bean
+    public static BeanPostProcessor journalWidgetRepository(
+            @Value("${widget.repository.journal.path}") String path,
+            @Value("${widget.repository.checkpoint.path:}") String checkpointPath,
+            @Value("${widget.repository.checkpoint.interval:600000}") long checkpointInterval) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof WidgetRepository)) {
+                    return bean;
+                }
+                try {
+                    WidgetCheckpoint checkpoint = checkpointPath.isEmpty()
+                            ? null
+                            : new WidgetCheckpoint(Paths.get(checkpointPath));
+                    return new JournaledWidgetRepository(
+                            (WidgetRepository) bean, new WidgetJournal(Paths.get(path)), checkpoint, checkpointInterval);
+                } catch (IOException e) {
+                    throw new BeanInitializationException(String.format("Journal `%s` can not be opened", path), e);
+                }
+            }
+        };
+    }
+}
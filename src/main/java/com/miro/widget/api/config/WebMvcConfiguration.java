@@ -1,18 +1,28 @@
 package com.miro.widget.api.config;
 
+import com.miro.widget.api.converter.WidgetPageBinaryHttpMessageConverter;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 
+import java.util.List;
+
 @Configuration
 public class WebMvcConfiguration extends WebMvcConfigurationSupport {
 
+    // the Accept header picks JSON, Smile, CBOR or the binary page format; JSON is the default.
+    // Smile and CBOR converters are registered by default along with their Jackson modules
     @Override
     protected void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
-        configurer.ignoreAcceptHeader(true);
         configurer.defaultContentType(MediaType.APPLICATION_JSON);
 
         super.configureContentNegotiation(configurer);
     }
+
+    @Override
+    protected void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new WidgetPageBinaryHttpMessageConverter());
+    }
 }
@@ -0,0 +1,16 @@
+package com.miro.widget.api.contract;
+
+import com.miro.widget.api.model.dto.WidgetEventDto;
+
+import java.io.IOException;
+
+/**
+ * Receives the events of a viewport subscription one at a time, never on the thread that changed the board.
+ * A listener that throws is unsubscribed.
+ */
+public interface WidgetListener {
+    void onEvent(WidgetEventDto event) throws IOException;
+
+    // the listener fell too far behind and was unsubscribed, whatever it shows of the viewport may be stale
+    void onOverflow() throws IOException;
+}
@@ -1,32 +1,36 @@
 package com.miro.widget.api.contract;
 
-import com.miro.widget.api.model.entity.Point;
 import com.miro.widget.api.model.entity.Widget;
 
+import java.time.Instant;
 import java.util.*;
 
-public interface WidgetRepository {
-    long count();
+public interface WidgetRepository extends WidgetRepositoryView {
+    // immutable view of the current state that can be read without locking, or null if not supported
+    default WidgetRepositoryView snapshot() {
+        return null;
+    }
 
-    Long findHighestZIndex();
+    default void shiftTailZIndexesAt(long zIndex, Long excludeIndex) {
+        shiftTailZIndexesAt(zIndex, excludeIndex, Date.from(Instant.now()));
+    }
 
-    Long findLeastZIndexGreaterThanOrEqualTo(long index);
-
-    Widget findById(UUID uuid);
-
-    Set<Widget> findAllSortByZIndex();
-
-    Set<Widget> findAllSortByZIndex(long skip, long take);
-
-    Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take);
-
-    NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index);
+    void shiftTailZIndexesAt(long zIndex, Long excludeIndex, Date modifiedAt);
 
     void saveOrUpdate(Widget widget);
 
     void saveOrUpdate(Collection<Widget> widget);
 
+    // new widgets with strictly increasing z-indexes above the highest one, loaded faster than one by one
+    default void bulkLoad(List<Widget> widgets) {
+        saveOrUpdate(widgets);
+    }
+
     Widget remove(Widget widget);
 
     void removeAll();
+
+    // makes the changes applied so far durable, if the repository persists them at all
+    default void flush() {
+    }
 }
@@ -0,0 +1,41 @@
+package com.miro.widget.api.contract;
+
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Widget;
+
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// the reading half of a widget repository, all a snapshot offers
+public interface WidgetRepositoryView {
+    long count();
+
+    long countInArea(Point bottomLeft, Point upperRight);
+
+    Long findHighestZIndex();
+
+    Long findLeastZIndexGreaterThanOrEqualTo(long index);
+
+    Widget findById(UUID uuid);
+
+    Set<Widget> findAllSortByZIndex();
+
+    Set<Widget> findAllSortByZIndex(long skip, long take);
+
+    // visits every widget in z-order without collecting them
+    default void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+        findAllSortByZIndex().forEach(consumer);
+    }
+
+    Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take);
+
+    // widgets ordered after the one with the given z-index and id, or after every widget with the z-index
+    // if that widget is not there anymore
+    Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take);
+
+    Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take);
+
+    NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index);
+}
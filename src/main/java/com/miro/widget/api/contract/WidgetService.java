@@ -2,24 +2,55 @@ package com.miro.widget.api.contract;
 
 import com.miro.widget.api.model.dto.PageableDto;
 import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetOperationDto;
 import com.miro.widget.api.model.entity.Filter;
 import com.miro.widget.api.model.entity.Page;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface WidgetService {
+    // differs for every applied change of the board, and between runs and instances of the service
+    String version();
+
     WidgetDto findById(UUID uuid);
 
+    // the modification time of the widget without converting it, null if there is no such widget
+    Date findModifiedAt(UUID uuid);
+
     Page<WidgetDto> findPage(PageableDto meta, Filter filter);
 
     Collection<WidgetDto> findAll();
 
+    // visits every widget of one consistent state in z-order without collecting dtos; a repository without
+    // snapshots holds writers back while its widgets are copied, though not while the consumer runs
+    void exportAll(Consumer<WidgetDto> consumer);
+
+    // the listener gets widgets entering, changing in and leaving the viewport until it is unsubscribed
+    void subscribe(Filter viewport, WidgetListener listener);
+
+    void unsubscribe(WidgetListener listener);
+
     WidgetDto save(WidgetDto dto);
 
+    CompletableFuture<WidgetDto> saveAsync(WidgetDto dto);
+
+    List<WidgetDto> saveAll(List<WidgetDto> dtos);
+
     WidgetDto update(UUID uuid, WidgetDto dto);
 
+    CompletableFuture<WidgetDto> updateAsync(UUID uuid, WidgetDto dto);
+
     WidgetDto delete(UUID uuid);
 
+    CompletableFuture<WidgetDto> deleteAsync(UUID uuid);
+
+    // applies every operation or none of them, returns the affected widgets in the order of operations
+    List<WidgetDto> applyAll(List<WidgetOperationDto> operations);
+
     void deleteAll();
 }
@@ -1,73 +1,146 @@
 package com.miro.widget.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.miro.widget.api.contract.WidgetListener;
 import com.miro.widget.api.contract.WidgetService;
 import com.miro.widget.api.model.dto.PageableDto;
 import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetEventDto;
+import com.miro.widget.api.model.dto.WidgetOperationDto;
+import com.miro.widget.api.model.entity.Cursor;
 import com.miro.widget.api.model.entity.Filter;
 import com.miro.widget.api.model.entity.Page;
+import com.miro.widget.api.model.entity.WidgetView;
 import com.miro.widget.api.model.request.Pageable;
+import com.miro.widget.api.model.request.Projection;
+import com.miro.widget.api.model.request.WidgetBatchRequest;
+import com.miro.widget.api.model.request.WidgetBulkRequest;
+import com.miro.widget.api.model.request.WidgetOperationRequest;
 import com.miro.widget.api.model.request.WidgetRequest;
 import com.miro.widget.api.model.response.*;
 import lombok.RequiredArgsConstructor;
-import org.springframework.hateoas.mvc.ControllerLinkBuilder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.core.DummyInvocationUtils.methodOn;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 
 @RestController
 @RequestMapping(path = "api/widgets")
 @RequiredArgsConstructor
 public class WidgetController {
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final WidgetService service;
+    private final ObjectMapper mapper;
 
     @GetMapping
-    public ResponseEntity<WidgetPagedResources> getAll(
-            @Valid Pageable pageable, @Valid Filter filter
+    public ResponseEntity<WidgetPageResponse> getAll(
+            @Valid Pageable pageable, @Valid Filter filter, Projection projection, WebRequest webRequest
     ) {
         assertPageableIsValid(pageable);
         assertFilterIsValid(filter);
+        WidgetView view = convertFromProjection(projection);
+        // the version is taken before the query, so a page never carries a newer version than its content
+        if (webRequest.checkNotModified(etagOf(service.version()))) {
+            return null;
+        }
 
+        // the page is written to JSON straight from the widgets, see WidgetPageResponse
         Page<WidgetDto> page = service.findPage(convertFromPageable(pageable), filter);
-        Page<WidgetResponse> responsePage = Page.createPageBy(
-                page,
-                page.getItems().stream()
-                        .map(WidgetController::convertToResponse)
-                        .collect(Collectors.toList())
-        );
-        WidgetPagedResources widgetPagedResources = WidgetPagedResources.withLinks(
-                responsePage,
-                linkToGetOne(null),
-                linkToGetAll(),
-                linkToCreate()
-        );
-        return ResponseEntity.ok(widgetPagedResources);
+        // one version covers every representation, so caches have to tell them apart
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new WidgetPageResponse(page, linksOf(view), view));
+    }
+
+    // the content type is set here, the global negotiation only knows JSON
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> exportAll() {
+        ObjectWriter writer = mapper.writerFor(WidgetResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                service.exportAll(widget -> {
+                    try {
+                        writer.writeValue(generator, convertToResponse(widget));
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // server-sent events of widgets entering, changing in and leaving the viewport; a client reads
+    // the viewport after subscribing and starts over after an overflow event or a dropped connection
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@Valid Filter filter) {
+        assertViewportIsValid(filter);
+        WidgetEventEmitter emitter = new WidgetEventEmitter();
+        emitter.onCompletion(() -> service.unsubscribe(emitter));
+        emitter.onTimeout(() -> service.unsubscribe(emitter));
+        emitter.onError(e -> service.unsubscribe(emitter));
+        service.subscribe(filter, emitter);
+        return emitter;
     }
 
     @GetMapping(path = "/{id}")
-    public ResponseEntity<WidgetResource> getOne(
-            @PathVariable UUID id
+    public ResponseEntity<?> getOne(
+            @PathVariable UUID id, Projection projection, WebRequest webRequest, HttpServletResponse servletResponse
     ) {
+        WidgetView view = convertFromProjection(projection);
+        // a matching tag is answered before the widget is converted at all
+        Date modifiedAt = service.findModifiedAt(id);
+        if (modifiedAt == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(etagOf(modifiedAt.getTime()))) {
+            return null;
+        }
+
         WidgetDto widget = service.findById(id);
         if (widget == null) {
             return ResponseEntity.notFound().build();
         }
+        // the widget may have changed since the check, the tag follows the content actually sent
+        if (!modifiedAt.equals(widget.getModifiedAt())) {
+            servletResponse.setHeader(HttpHeaders.ETAG, etagOf(widget.getModifiedAt().getTime()));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT);
+        if (!view.isFull()) {
+            return response.body(new WidgetViewResponse(widget, linksOf(view), view));
+        }
         WidgetResponse widgetResponse = convertToResponse(widget);
-        WidgetResource widgetResourceWithLink = WidgetResource.withLinks(
-                widgetResponse,
-                linkToGetOne(widgetResponse.getUuid()),
-                linkToGetAll(),
-                linkToUpdate(widgetResponse.getUuid()),
-                linkToDelete(widgetResponse.getUuid())
-        );
-        return ResponseEntity.ok(widgetResourceWithLink);
+        WidgetResource widgetResourceWithLink = WidgetResource.withLinks(widgetResponse, links());
+        return response.body(widgetResourceWithLink);
     }
 
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
@@ -76,35 +149,54 @@ public class WidgetController {
     ) {
         WidgetDto saved = service.save(convertFromRequest(request));
         WidgetResponse widgetResponse = convertToResponse(saved);
-        WidgetResource widgetResourceWithLink = WidgetResource.withLinks(
-                widgetResponse,
-                linkToGetOne(widgetResponse.getUuid()),
-                linkToGetAll(),
-                linkToUpdate(widgetResponse.getUuid()),
-                linkToDelete(widgetResponse.getUuid())
-        );
+        WidgetResource widgetResourceWithLink = WidgetResource.withLinks(widgetResponse, links());
         return new ResponseEntity<>(widgetResourceWithLink, HttpStatus.CREATED);
     }
 
+    @PostMapping(path = "/bulk", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<WidgetResources> createAll(
+            @Valid @RequestBody WidgetBulkRequest request
+    ) {
+        List<WidgetDto> saved = service.saveAll(request.getWidgets().stream()
+                .map(WidgetController::convertFromRequest)
+                .collect(Collectors.toList()));
+        List<WidgetResponse> widgetResponses = saved.stream()
+                .map(WidgetController::convertToResponse)
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(WidgetResources.withLink(widgetResponses, links()), HttpStatus.CREATED);
+    }
+
+    @PostMapping(path = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<WidgetResources> applyAll(
+            @Valid @RequestBody WidgetBatchRequest request
+    ) {
+        List<WidgetDto> affected;
+        try {
+            affected = service.applyAll(request.getOperations().stream()
+                    .map(WidgetController::convertFromRequest)
+                    .collect(Collectors.toList()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+        List<WidgetResponse> widgetResponses = affected.stream()
+                .map(WidgetController::convertToResponse)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(WidgetResources.withLink(widgetResponses, links()));
+    }
+
     @PutMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<WidgetResource> update(
             @PathVariable UUID id,
             @Valid @RequestBody WidgetRequest request
     ) {
-        WidgetDto current = service.findById(id);
-        if (current == null) {
+        WidgetDto updated;
+        try {
+            updated = service.update(id, convertFromRequest(request));
+        } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
         }
-
-        WidgetDto updated = service.update(id, convertFromRequest(request));
         WidgetResponse widgetResponse = convertToResponse(updated);
-        WidgetResource widgetResourceWithLink = WidgetResource.withLinks(
-                widgetResponse,
-                linkToGetOne(id),
-                linkToGetAll(),
-                linkToUpdate(id),
-                linkToDelete(id)
-        );
+        WidgetResource widgetResourceWithLink = WidgetResource.withLinks(widgetResponse, links());
         return ResponseEntity.ok(widgetResourceWithLink);
     }
 
@@ -112,35 +204,38 @@ public class WidgetController {
     public ResponseEntity<WidgetResource> delete(
             @PathVariable UUID id
     ) {
-        WidgetDto current = service.findById(id);
-        if (current == null) {
+        WidgetDto deleted;
+        try {
+            deleted = service.delete(id);
+        } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
         }
-
-        WidgetDto deleted = service.delete(id);
         WidgetResponse widgetResponse = convertToResponse(deleted);
-        WidgetResource widgetResourceWithLink = WidgetResource.withLink(widgetResponse, linkToGetAll());
+        WidgetResource widgetResourceWithLink = WidgetResource.withLink(widgetResponse, links());
         return ResponseEntity.ok(widgetResourceWithLink);
     }
 
-    private ControllerLinkBuilder linkToGetOne(UUID id) {
-        return linkTo(methodOn(getClass()).getOne(id));
-    }
-
-    private ControllerLinkBuilder linkToGetAll() {
-        return linkTo(methodOn(getClass()).getAll(null, null));
+    // the only link resolved through the request, everything else is concatenated to it
+    private WidgetLinks links() {
+        return new WidgetLinks(linkTo(getClass()).toUri().toString());
     }
 
-    private ControllerLinkBuilder linkToCreate() {
-        return linkTo(methodOn(getClass()).create(null));
+    // a view without links does not even resolve them
+    private WidgetLinks linksOf(WidgetView view) {
+        return view.isLinks()
+                ? links()
+                : null;
     }
 
-    private ControllerLinkBuilder linkToUpdate(UUID id) {
-        return linkTo(methodOn(getClass()).update(id, null));
+    private static String etagOf(Object version) {
+        return "\"" + version + "\"";
     }
 
-    private ControllerLinkBuilder linkToDelete(UUID id) {
-        return linkTo(methodOn(getClass()).delete(id));
+    private static void assertViewportIsValid(Filter filter) {
+        assertFilterIsValid(filter);
+        if (!filter.isFilled()) {
+            throw new IllegalArgumentException("All filter fields must be completed to subscribe");
+        }
     }
 
     private static WidgetResponse convertToResponse(WidgetDto dto) {
@@ -167,10 +262,29 @@ public class WidgetController {
         );
     }
 
+    private static WidgetOperationDto convertFromRequest(WidgetOperationRequest request) {
+        return new WidgetOperationDto(
+                request.getType(),
+                request.getId(),
+                request.getWidget() != null
+                        ? convertFromRequest(request.getWidget())
+                        : null
+        );
+    }
+
+    private static WidgetView convertFromProjection(Projection projection) {
+        return projection != null
+                ? WidgetView.of(projection.getFields(), projection.getLinks())
+                : WidgetView.FULL;
+    }
+
     private static PageableDto convertFromPageable(Pageable pageable) {
         return new PageableDto(
                 pageable.getPage(),
-                pageable.getSize()
+                pageable.getSize(),
+                pageable.getCursor() != null
+                        ? Cursor.decode(pageable.getCursor())
+                        : null
         );
     }
 
@@ -200,4 +314,20 @@ public class WidgetController {
             throw new IllegalArgumentException("All filter fields must be completed simultaneously");
         }
     }
+
+    // events go out named after their type with the widget as its JSON response
+    private static final class WidgetEventEmitter extends SseEmitter implements WidgetListener {
+        @Override
+        public void onEvent(WidgetEventDto event) throws IOException {
+            send(event()
+                    .name(event.getType().name().toLowerCase(Locale.ROOT))
+                    .data(convertToResponse(event.getWidget()), MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void onOverflow() throws IOException {
+            send(event().name("overflow").data(""));
+            complete();
+        }
+    }
 }
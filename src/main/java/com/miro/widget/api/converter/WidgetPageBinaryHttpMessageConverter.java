@@ -0,0 +1,97 @@
+package com.miro.widget.api.converter;
+
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.Page;
+import com.miro.widget.api.model.response.WidgetLinkRelType;
+import com.miro.widget.api.model.response.WidgetLinks;
+import com.miro.widget.api.model.response.WidgetPageResponse;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a page of widgets as fixed-width big-endian records, so clients read it without parsing.
+ * The body is a header of page number, page size, total items and item count, followed by one record
+ * per widget: id bits, x and y coordinates, z-index, width, height and modification time in epoch
+ * milliseconds, a long each. A missing z-index or modification time is written as zero.
+ * Page links go to the Link header, unless the view has none; the fields of a view make no difference.
+ */
+public class WidgetPageBinaryHttpMessageConverter extends AbstractHttpMessageConverter<WidgetPageResponse> {
+    public static final MediaType APPLICATION_WIDGET_PAGE = MediaType.parseMediaType("application/x-widget-page");
+
+    private static final int HEADER_SIZE = 4 * Long.BYTES;
+    private static final int RECORD_SIZE = 8 * Long.BYTES;
+
+    public WidgetPageBinaryHttpMessageConverter() {
+        super(APPLICATION_WIDGET_PAGE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return WidgetPageResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected WidgetPageResponse readInternal(Class<? extends WidgetPageResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Widget pages can not be read", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(WidgetPageResponse response, MediaType contentType) {
+        return (long) HEADER_SIZE + (long) response.getPage().getItemCount() * RECORD_SIZE;
+    }
+
+    @Override
+    protected void writeInternal(WidgetPageResponse response, HttpOutputMessage outputMessage) throws IOException {
+        Page<WidgetDto> page = response.getPage();
+        if (response.getView().isLinks()) {
+            addLinks(outputMessage.getHeaders(), page, response.getLinks());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + page.getItemCount() * RECORD_SIZE)
+                .putLong(page.getNumber())
+                .putLong(page.getSize())
+                .putLong(page.getTotalItems())
+                .putLong(page.getItemCount());
+        for (WidgetDto widget : page.getItems()) {
+            buffer.putLong(widget.getId().getMostSignificantBits())
+                    .putLong(widget.getId().getLeastSignificantBits())
+                    .putLong(widget.getXCoordinate())
+                    .putLong(widget.getYCoordinate())
+                    .putLong(widget.getZIndex() != null ? widget.getZIndex() : 0)
+                    .putLong(widget.getWidth())
+                    .putLong(widget.getHeight())
+                    .putLong(widget.getModifiedAt() != null ? widget.getModifiedAt().getTime() : 0);
+        }
+        outputMessage.getBody().write(buffer.array());
+    }
+
+    // the same links the JSON page has, except the template of a widget link
+    private static void addLinks(HttpHeaders headers, Page<WidgetDto> page, WidgetLinks links) {
+        headers.add(HttpHeaders.LINK, link(links.page(page.getNumber(), page.getSize(), page.getCursor()), Link.REL_SELF));
+        headers.add(HttpHeaders.LINK, link(links.widgets(), WidgetLinkRelType.CREATE_WIDGET.getTitle()));
+        // a cursor only leads forward
+        if (page.getNumber() > 1 && page.getCursor() == null) {
+            headers.add(HttpHeaders.LINK, link(links.page(page.getNumber() - 1, page.getSize(), null), Link.REL_PREVIOUS));
+        }
+        if (page.getNextCursor() != null) {
+            headers.add(HttpHeaders.LINK, link(links.page(page.getNumber() + 1, page.getSize(), page.getNextCursor()), Link.REL_NEXT));
+        }
+    }
+
+    private static String link(String href, String rel) {
+        return "<" + href + ">;rel=\"" + rel + "\"";
+    }
+}
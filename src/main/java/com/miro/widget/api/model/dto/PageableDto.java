@@ -1,5 +1,6 @@
 package com.miro.widget.api.model.dto;
 
+import com.miro.widget.api.model.entity.Cursor;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,4 +12,11 @@ public class PageableDto {
     private long page;
 
     private long size;
+
+    // when set, the page starts right after it instead of skipping the previous pages
+    private Cursor cursor;
+
+    public PageableDto(long page, long size) {
+        this(page, size, null);
+    }
 }
@@ -0,0 +1,14 @@
+package com.miro.widget.api.model.dto;
+
+import com.miro.widget.api.model.entity.WidgetEventType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class WidgetEventDto {
+    private WidgetEventType type;
+
+    // the widget as it is now, or as it was before it left the viewport
+    private WidgetDto widget;
+}
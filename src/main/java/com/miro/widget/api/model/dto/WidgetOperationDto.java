@@ -0,0 +1,19 @@
+package com.miro.widget.api.model.dto;
+
+import com.miro.widget.api.model.entity.OperationType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WidgetOperationDto {
+    private OperationType type;
+
+    private UUID id;
+
+    private WidgetDto widget;
+}
@@ -0,0 +1,49 @@
+package com.miro.widget.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in z-order right after the widget with the z-index and id, passed around as an opaque string.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class Cursor {
+    private static final int SIZE = 3 * Long.BYTES;
+
+    private final long zIndex;
+
+    private final UUID id;
+
+    public static Cursor after(Widget widget) {
+        return new Cursor(widget.getZIndex(), widget.getId());
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE)
+                .putLong(zIndex)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static Cursor decode(String value) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            bytes = null;
+        }
+        if (bytes == null || bytes.length != SIZE) {
+            throw new IllegalArgumentException("Param `cursor` is malformed");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new Cursor(buffer.getLong(), new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
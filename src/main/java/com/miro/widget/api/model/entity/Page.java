@@ -25,6 +25,11 @@ public class Page<T> {
     @NonNull
     private long totalItems;
 
+    private Cursor cursor;
+
+    // set when there may be more items after this page
+    private Cursor nextCursor;
+
     public long getAvailableCount() {
         return size == 0
                 ? 0
@@ -36,14 +41,18 @@ public class Page<T> {
     }
 
     public static <T> Page<T> createEmptyPage(PageableDto meta, long totalItemsCount) {
-        return new Page<T>(Collections.emptyList(), meta.getPage(), meta.getSize(), totalItemsCount);
+        return new Page<T>(Collections.emptyList(), meta.getPage(), meta.getSize(), totalItemsCount, meta.getCursor(), null);
     }
 
     public static <T> Page<T> createPage(Collection<T> items, PageableDto meta, long totalItemsCount) {
-        return new Page<T>(items, meta.getPage(), meta.getSize(), totalItemsCount);
+        return createPage(items, meta, totalItemsCount, null);
+    }
+
+    public static <T> Page<T> createPage(Collection<T> items, PageableDto meta, long totalItemsCount, Cursor nextCursor) {
+        return new Page<T>(items, meta.getPage(), meta.getSize(), totalItemsCount, meta.getCursor(), nextCursor);
     }
 
-    public static <T> Page<T> createPageBy(Page other, Collection<T> items) {
-        return new Page<T>(items, other.number, other.size, other.totalItems);
+    public static <T> Page<T> createPageBy(Page<?> other, Collection<T> items) {
+        return new Page<T>(items, other.number, other.size, other.totalItems, other.cursor, other.nextCursor);
     }
 }
@@ -20,11 +20,15 @@ public class Widget extends Rectangle {
     private Date modifiedAt;
 
     public Widget(UUID id, long xCoordinate, long yCoordinate, Long zIndex, long width, long height) {
+        this(id, xCoordinate, yCoordinate, zIndex, width, height, Date.from(Instant.now()));
+    }
+
+    public Widget(UUID id, long xCoordinate, long yCoordinate, Long zIndex, long width, long height, Date modifiedAt) {
         super(xCoordinate, yCoordinate, width, height);
 
         this.id = id;
         this.zIndex = zIndex;
-        this.modifiedAt = Date.from(Instant.now());
+        this.modifiedAt = modifiedAt;
     }
 
     public void incrementZIndex() {
@@ -0,0 +1,7 @@
+package com.miro.widget.api.model.entity;
+
+public enum WidgetEventType {
+    ENTER,
+    UPDATE,
+    LEAVE
+}
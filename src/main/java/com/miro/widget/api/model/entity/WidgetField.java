@@ -0,0 +1,40 @@
+package com.miro.widget.api.model.entity;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum WidgetField {
+    ID("id", "id"),
+
+    X_COORDINATE("xCoordinate", "xСoordinate"),
+
+    Y_COORDINATE("yCoordinate", "yСoordinate"),
+
+    Z_INDEX("zIndex", "zIndex"),
+
+    WIDTH("width", "width"),
+
+    HEIGHT("height", "height"),
+
+    MODIFIED_AT("modifiedAt", "modifiedAt");
+
+    // name in the `fields` param
+    @NonNull
+    private final String title;
+
+    // name in a widget response, spelled as it always was
+    @NonNull
+    private final String property;
+
+    public static WidgetField of(String name) {
+        for (WidgetField field : values()) {
+            if (field.title.equals(name) || field.property.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
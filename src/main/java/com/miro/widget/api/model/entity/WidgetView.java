@@ -0,0 +1,64 @@
+package com.miro.widget.api.model.entity;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Widget fields a response carries and whether it carries links at all.
+ * Anything but the full view is written with the selected fields only, in their declaration order.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class WidgetView {
+    public static final WidgetView FULL = new WidgetView(Collections.unmodifiableSet(EnumSet.allOf(WidgetField.class)), true);
+
+    private final Set<WidgetField> fields;
+
+    private final boolean links;
+
+    public boolean isFull() {
+        return this == FULL;
+    }
+
+    // query params selecting the fields, for links to other pages in the same view
+    public String toQuery() {
+        if (fields.size() == WidgetField.values().length) {
+            return "";
+        }
+        StringJoiner titles = new StringJoiner(",", "&fields=", "");
+        fields.forEach(field -> titles.add(field.getTitle()));
+        return titles.toString();
+    }
+
+    public static WidgetView of(String fields, String links) {
+        if (fields == null && links == null) {
+            return FULL;
+        }
+
+        Set<WidgetField> selected = EnumSet.allOf(WidgetField.class);
+        if (fields != null) {
+            selected.clear();
+            for (String name : fields.split(",")) {
+                WidgetField field = WidgetField.of(name.trim());
+                if (field == null) {
+                    throw new IllegalArgumentException(String.format("Param `fields` has unknown field `%s`", name.trim()));
+                }
+                selected.add(field);
+            }
+        }
+        if (links != null && !links.equals("all") && !links.equals("none")) {
+            throw new IllegalArgumentException("Param `links` must be `all` or `none`");
+        }
+        // every field with links is the full view however it was asked for, so it has one shape
+        boolean withLinks = !"none".equals(links);
+        return selected.size() == WidgetField.values().length && withLinks
+                ? FULL
+                : new WidgetView(Collections.unmodifiableSet(selected), withLinks);
+    }
+}
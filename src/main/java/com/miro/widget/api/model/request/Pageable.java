@@ -22,4 +22,8 @@ public class Pageable {
     @Max(value = 500, message = "Field `size` must be less than 500")
     @JsonProperty(value = "size")
     private long size = 10;
+
+    // opaque position returned in the `next` link
+    @JsonProperty(value = "cursor")
+    private String cursor;
 }
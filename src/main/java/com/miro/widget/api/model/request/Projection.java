@@ -0,0 +1,21 @@
+package com.miro.widget.api.model.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class Projection {
+    // comma separated widget fields, all of them when not set
+    @JsonProperty(value = "fields")
+    private String fields;
+
+    // `all` or `none`
+    @JsonProperty(value = "links")
+    private String links;
+}
@@ -0,0 +1,22 @@
+package com.miro.widget.api.model.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WidgetBatchRequest {
+    @Valid
+    @NotNull(message = "Field `operations` must be set")
+    @JsonProperty(value = "operations")
+    private List<WidgetOperationRequest> operations;
+}
@@ -0,0 +1,29 @@
+package com.miro.widget.api.model.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.miro.widget.api.model.entity.OperationType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WidgetOperationRequest {
+    @NotNull(message = "Field `type` must be set")
+    @JsonProperty(value = "type")
+    private OperationType type;
+
+    @JsonProperty(value = "id")
+    private UUID id;
+
+    @Valid
+    @JsonProperty(value = "widget")
+    private WidgetRequest widget;
+}
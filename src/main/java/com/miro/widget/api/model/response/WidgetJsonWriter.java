@@ -0,0 +1,179 @@
+package com.miro.widget.api.model.response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.WidgetField;
+import com.miro.widget.api.model.entity.WidgetView;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Writes widgets and links as JSON tokens for the hand-written serializers, reusing its buffers
+ * for every widget of one response.
+ */
+final class WidgetJsonWriter {
+    // names are encoded once, in the order WidgetResponse is serialized with, getters included
+    static final SerializedString LINKS = new SerializedString("links");
+    private static final SerializedString REL = new SerializedString("rel");
+    private static final SerializedString HREF = new SerializedString("href");
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString X_COORDINATE_GETTER = new SerializedString(WidgetResponse.X_COORDINATE_GETTER);
+    private static final SerializedString Y_COORDINATE_GETTER = new SerializedString(WidgetResponse.Y_COORDINATE_GETTER);
+    private static final SerializedString Z_INDEX_GETTER = new SerializedString(WidgetResponse.Z_INDEX_GETTER);
+    private static final Map<WidgetField, SerializedString> PROPERTIES = new EnumMap<>(WidgetField.class);
+    private static final ZoneRules ZONE_RULES = ZoneId.of(WidgetResponse.MODIFIED_AT_TIME_ZONE).getRules();
+
+    static {
+        for (WidgetField field : WidgetField.values()) {
+            PROPERTIES.put(field, new SerializedString(field.getProperty()));
+        }
+    }
+
+    private final JsonGenerator generator;
+    private final char[] id = new char[36];
+    private final char[] modifiedAt = new char[19];
+    private long modifiedAtSecond = Long.MIN_VALUE;
+
+    WidgetJsonWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    // the shape a WidgetResponse with a single link is serialized in
+    void writeFullWidget(WidgetDto widget, SerializableString href) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(X_COORDINATE_GETTER);
+        generator.writeNumber(widget.getXCoordinate());
+        generator.writeFieldName(Y_COORDINATE_GETTER);
+        generator.writeNumber(widget.getYCoordinate());
+        if (widget.getZIndex() != null) {
+            generator.writeFieldName(Z_INDEX_GETTER);
+            generator.writeNumber(widget.getZIndex());
+        }
+        generator.writeFieldName(LINKS);
+        generator.writeStartArray();
+        writeLink(Link.REL_SELF, href, HttpMethod.GET);
+        generator.writeEndArray();
+        writeFields(widget, WidgetView.FULL.getFields());
+        generator.writeEndObject();
+    }
+
+    // fields without a value are left out, like WidgetResponse does
+    void writeFields(WidgetDto widget, Set<WidgetField> fields) throws IOException {
+        for (WidgetField field : fields) {
+            switch (field) {
+                case ID:
+                    if (widget.getId() != null) {
+                        generator.writeFieldName(PROPERTIES.get(field));
+                        generator.writeString(id, 0, format(widget.getId()));
+                    }
+                    break;
+                case X_COORDINATE:
+                    generator.writeFieldName(PROPERTIES.get(field));
+                    generator.writeNumber(widget.getXCoordinate());
+                    break;
+                case Y_COORDINATE:
+                    generator.writeFieldName(PROPERTIES.get(field));
+                    generator.writeNumber(widget.getYCoordinate());
+                    break;
+                case Z_INDEX:
+                    if (widget.getZIndex() != null) {
+                        generator.writeFieldName(PROPERTIES.get(field));
+                        generator.writeNumber(widget.getZIndex());
+                    }
+                    break;
+                case WIDTH:
+                    generator.writeFieldName(PROPERTIES.get(field));
+                    generator.writeNumber(widget.getWidth());
+                    break;
+                case HEIGHT:
+                    generator.writeFieldName(PROPERTIES.get(field));
+                    generator.writeNumber(widget.getHeight());
+                    break;
+                case MODIFIED_AT:
+                    if (widget.getModifiedAt() != null) {
+                        generator.writeFieldName(PROPERTIES.get(field));
+                        generator.writeString(modifiedAt, 0, format(widget.getModifiedAt()));
+                    }
+                    break;
+            }
+        }
+    }
+
+    void writeLink(String rel, String href, HttpMethod type) throws IOException {
+        writeLink(rel, new SerializedString(href), type);
+    }
+
+    void writeLink(String rel, SerializableString href, HttpMethod type) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(REL);
+        generator.writeString(rel);
+        generator.writeFieldName(HREF);
+        generator.writeString(href);
+        generator.writeFieldName(TYPE);
+        generator.writeString(type.name());
+        generator.writeEndObject();
+    }
+
+    // the same text as UUID.toString, written into the buffer instead of a new string
+    private int format(UUID uuid) {
+        formatHex(uuid.getMostSignificantBits() >>> 32, 0, 8);
+        id[8] = '-';
+        formatHex(uuid.getMostSignificantBits() >>> 16, 9, 4);
+        id[13] = '-';
+        formatHex(uuid.getMostSignificantBits(), 14, 4);
+        id[18] = '-';
+        formatHex(uuid.getLeastSignificantBits() >>> 48, 19, 4);
+        id[23] = '-';
+        formatHex(uuid.getLeastSignificantBits(), 24, 12);
+        return id.length;
+    }
+
+    // formats as WidgetResponse.MODIFIED_AT_PATTERN in its zone; widgets shifted by the same change share
+    // the modification time, so the text of the last second is kept and reused
+    private int format(Date date) {
+        long epochSecond = Math.floorDiv(date.getTime(), 1000);
+        if (epochSecond != modifiedAtSecond) {
+            LocalDateTime local = LocalDateTime.ofEpochSecond(epochSecond, 0, ZONE_RULES.getOffset(Instant.ofEpochSecond(epochSecond)));
+            formatDigits(local.getYear(), 0, 4);
+            modifiedAt[4] = '-';
+            formatDigits(local.getMonthValue(), 5, 2);
+            modifiedAt[7] = '-';
+            formatDigits(local.getDayOfMonth(), 8, 2);
+            modifiedAt[10] = ' ';
+            formatDigits(local.getHour(), 11, 2);
+            modifiedAt[13] = ':';
+            formatDigits(local.getMinute(), 14, 2);
+            modifiedAt[16] = ':';
+            formatDigits(local.getSecond(), 17, 2);
+            modifiedAtSecond = epochSecond;
+        }
+        return modifiedAt.length;
+    }
+
+    private void formatHex(long value, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            id[i] = Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        }
+    }
+
+    private void formatDigits(int value, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            modifiedAt[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -4,57 +4,60 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import org.springframework.hateoas.Link;
-import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.http.HttpMethod;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 public class WidgetLink extends Link {
+    private static final long serialVersionUID = 1L;
+
     @JsonProperty
     private String type;
 
     public WidgetLink(Link link) {
-        super(link.getHref(), link.getRel());
+        this(link.getHref(), link.getRel(), link.getType());
+    }
+
+    public WidgetLink(String href, String rel, String type) {
+        super(href, rel);
+
+        this.type = type;
+    }
 
-        this.type = link.getType();
+    // links are immutable, so a link that is already a widget link is kept as it is
+    public static Link of(Link link) {
+        return link instanceof WidgetLink
+                ? link
+                : new WidgetLink(link);
     }
 
-    public static <T> Link widgetLink(ControllerLinkBuilder builder, boolean isSelf) {
-        Link link = builder
-                .withRel(isSelf
+    public static Link widgetLink(String href, boolean isSelf) {
+        return new WidgetLink(
+                href,
+                isSelf
                         ? Link.REL_SELF
-                        : WidgetLinkRelType.WIDGET.getTitle())
-                .withType(HttpMethod.GET.name());
-        return new WidgetLink(link);
+                        : WidgetLinkRelType.WIDGET.getTitle(),
+                HttpMethod.GET.name());
     }
 
-    public static <T> Link widgetsLink(ControllerLinkBuilder builder, boolean isSelf) {
-        Link link = builder
-                .withRel(isSelf
+    public static Link widgetsLink(String href, boolean isSelf) {
+        return new WidgetLink(
+                href,
+                isSelf
                         ? Link.REL_SELF
-                        : WidgetLinkRelType.WIDGETS.getTitle())
-                .withType(HttpMethod.GET.name());
-        return new WidgetLink(link);
+                        : WidgetLinkRelType.WIDGETS.getTitle(),
+                HttpMethod.GET.name());
     }
 
-    public static <T> Link createWidgetLink(ControllerLinkBuilder builder) {
-        Link link = builder
-                .withRel(WidgetLinkRelType.CREATE_WIDGET.getTitle())
-                .withType(HttpMethod.POST.name());
-        return new WidgetLink(link);
+    public static Link createWidgetLink(String href) {
+        return new WidgetLink(href, WidgetLinkRelType.CREATE_WIDGET.getTitle(), HttpMethod.POST.name());
     }
 
-    public static <T> Link updateWidgetLink(ControllerLinkBuilder builder) {
-        Link link = builder
-                .withRel(WidgetLinkRelType.UPDATE_WIDGET.getTitle())
-                .withType(HttpMethod.PUT.name());
-        return new WidgetLink(link);
+    public static Link updateWidgetLink(String href) {
+        return new WidgetLink(href, WidgetLinkRelType.UPDATE_WIDGET.getTitle(), HttpMethod.PUT.name());
     }
 
-    public static <T> Link deleteWidgetLink(ControllerLinkBuilder builder) {
-        Link link = builder
-                .withRel(WidgetLinkRelType.DELETE_WIDGET.getTitle())
-                .withType(HttpMethod.DELETE.name());
-        return new WidgetLink(link);
+    public static Link deleteWidgetLink(String href) {
+        return new WidgetLink(href, WidgetLinkRelType.DELETE_WIDGET.getTitle(), HttpMethod.DELETE.name());
     }
-}
\ No newline at end of file
+}
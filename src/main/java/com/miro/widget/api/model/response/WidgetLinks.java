@@ -0,0 +1,37 @@
+package com.miro.widget.api.model.response;
+
+import com.miro.widget.api.model.entity.Cursor;
+
+import java.util.UUID;
+
+/**
+ * Hrefs of the widget resources, resolved from the base URI of a request once
+ * and filled in with plain string concatenation for every widget and page.
+ */
+public class WidgetLinks {
+    private final String widgetsHref;
+    private final String widgetTemplateHref;
+
+    public WidgetLinks(String widgetsHref) {
+        this.widgetsHref = widgetsHref;
+        this.widgetTemplateHref = widgetsHref + "/{id}";
+    }
+
+    public String widgets() {
+        return widgetsHref;
+    }
+
+    // without an id the href is the template of a widget href
+    public String widget(UUID id) {
+        return id != null
+                ? widgetsHref + "/" + id
+                : widgetTemplateHref;
+    }
+
+    public String page(long number, long size, Cursor cursor) {
+        String href = widgetsHref + "?page=" + number + "&size=" + size;
+        return cursor != null
+                ? href + "&cursor=" + cursor.encode()
+                : href;
+    }
+}
@@ -0,0 +1,117 @@
+package com.miro.widget.api.model.response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.Page;
+import com.miro.widget.api.model.entity.WidgetView;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+
+import static com.miro.widget.api.model.response.WidgetJsonWriter.LINKS;
+
+/**
+ * Page of widgets written straight to JSON tokens in the shape of the paged resources,
+ * without a response object and links for every widget and without reflection.
+ * Without links the next cursor goes to the page metadata, where a client can still find it.
+ */
+@Getter
+@AllArgsConstructor
+@JsonSerialize(using = WidgetPageResponse.Serializer.class)
+public class WidgetPageResponse {
+    private final Page<WidgetDto> page;
+
+    private final WidgetLinks links;
+
+    private final WidgetView view;
+
+    public WidgetPageResponse(Page<WidgetDto> page, WidgetLinks links) {
+        this(page, links, WidgetView.FULL);
+    }
+
+    public static class Serializer extends StdSerializer<WidgetPageResponse> {
+        private static final long serialVersionUID = 1L;
+        private static final SerializedString CONTENT = new SerializedString("content");
+        private static final SerializedString PAGE = new SerializedString("page");
+        private static final SerializedString SIZE = new SerializedString("size");
+        private static final SerializedString TOTAL_ELEMENTS = new SerializedString("totalElements");
+        private static final SerializedString TOTAL_PAGES = new SerializedString("totalPages");
+        private static final SerializedString NUMBER = new SerializedString("number");
+        private static final SerializedString NEXT_CURSOR = new SerializedString("nextCursor");
+
+        public Serializer() {
+            super(WidgetPageResponse.class);
+        }
+
+        @Override
+        public void serialize(WidgetPageResponse value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            Page<WidgetDto> page = value.getPage();
+            WidgetLinks links = value.getLinks();
+            WidgetView view = value.getView();
+            WidgetJsonWriter writer = new WidgetJsonWriter(generator);
+
+            generator.writeStartObject();
+            if (view.isLinks()) {
+                String query = view.toQuery();
+                generator.writeFieldName(LINKS);
+                generator.writeStartArray();
+                writer.writeLink(Link.REL_SELF, links.page(page.getNumber(), page.getSize(), page.getCursor()) + query, HttpMethod.GET);
+                writer.writeLink(WidgetLinkRelType.CREATE_WIDGET.getTitle(), links.widgets(), HttpMethod.POST);
+                // a cursor only leads forward
+                if (page.getNumber() > 1 && page.getCursor() == null) {
+                    writer.writeLink(Link.REL_PREVIOUS, links.page(page.getNumber() - 1, page.getSize(), null) + query, HttpMethod.GET);
+                }
+                if (page.getNextCursor() != null) {
+                    writer.writeLink(Link.REL_NEXT, links.page(page.getNumber() + 1, page.getSize(), page.getNextCursor()) + query, HttpMethod.GET);
+                }
+                generator.writeEndArray();
+            }
+
+            generator.writeFieldName(CONTENT);
+            generator.writeStartArray();
+            SerializedString itemHref = view.isLinks()
+                    ? new SerializedString(links.widget(null))
+                    : null;
+            for (WidgetDto widget : page.getItems()) {
+                if (view.isFull()) {
+                    writer.writeFullWidget(widget, itemHref);
+                    continue;
+                }
+                generator.writeStartObject();
+                writer.writeFields(widget, view.getFields());
+                if (view.isLinks()) {
+                    generator.writeFieldName(LINKS);
+                    generator.writeStartArray();
+                    writer.writeLink(Link.REL_SELF, itemHref, HttpMethod.GET);
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeFieldName(PAGE);
+            generator.writeStartObject();
+            generator.writeFieldName(SIZE);
+            generator.writeNumber(page.getItemCount());
+            generator.writeFieldName(TOTAL_ELEMENTS);
+            generator.writeNumber(page.getTotalItems());
+            generator.writeFieldName(TOTAL_PAGES);
+            generator.writeNumber(page.getAvailableCount());
+            generator.writeFieldName(NUMBER);
+            generator.writeNumber(page.getNumber());
+            if (!view.isLinks() && page.getNextCursor() != null) {
+                generator.writeFieldName(NEXT_CURSOR);
+                generator.writeString(page.getNextCursor().encode());
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+}
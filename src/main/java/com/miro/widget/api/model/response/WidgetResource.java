@@ -2,7 +2,6 @@ package com.miro.widget.api.model.response;
 
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.Resource;
-import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 
 import java.util.Arrays;
 
@@ -16,32 +15,30 @@ public class WidgetResource extends Resource<WidgetResponse> {
 
     @Override
     public void add(Link link) {
-        super.add(new WidgetLink(link));
+        super.add(WidgetLink.of(link));
     }
 
-    public static <T> WidgetResource withLink(
+    public static WidgetResource withLink(
             WidgetResponse response,
-            ControllerLinkBuilder methodGetAll
+            WidgetLinks links
     ) {
         return new WidgetResource(
                 response,
-                widgetsLink(methodGetAll, false)
+                widgetsLink(links.widgets(), false)
         );
     }
 
-    public static <T> WidgetResource withLinks(
+    public static WidgetResource withLinks(
             WidgetResponse response,
-            ControllerLinkBuilder methodGetOne,
-            ControllerLinkBuilder methodGetAll,
-            ControllerLinkBuilder methodUpdate,
-            ControllerLinkBuilder methodDelete
+            WidgetLinks links
     ) {
+        String widgetHref = links.widget(response.getUuid());
         return new WidgetResource(
                 response,
-                widgetLink(methodGetOne, true),
-                updateWidgetLink(methodUpdate),
-                deleteWidgetLink(methodDelete),
-                widgetsLink(methodGetAll, false)
+                widgetLink(widgetHref, true),
+                updateWidgetLink(widgetHref),
+                deleteWidgetLink(widgetHref),
+                widgetsLink(links.widgets(), false)
         );
     }
-}
\ No newline at end of file
+}
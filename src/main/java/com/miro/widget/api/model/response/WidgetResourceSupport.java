@@ -7,6 +7,6 @@ public class WidgetResourceSupport extends ResourceSupport {
 
     @Override
     public void add(Link link) {
-        super.add(new WidgetLink(link));
+        super.add(WidgetLink.of(link));
     }
 }
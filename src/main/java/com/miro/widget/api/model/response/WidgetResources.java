@@ -0,0 +1,30 @@
+package com.miro.widget.api.model.response;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
+
+import java.util.List;
+
+import static com.miro.widget.api.model.response.WidgetLink.widgetsLink;
+
+public class WidgetResources extends Resources<WidgetResponse> {
+
+    public WidgetResources(List<WidgetResponse> content, Link... links) {
+        super(content, links);
+    }
+
+    @Override
+    public void add(Link link) {
+        super.add(WidgetLink.of(link));
+    }
+
+    public static WidgetResources withLink(
+            List<WidgetResponse> responses,
+            WidgetLinks links
+    ) {
+        return new WidgetResources(
+                responses,
+                widgetsLink(links.widgets(), false)
+        );
+    }
+}
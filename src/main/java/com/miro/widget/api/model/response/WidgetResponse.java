@@ -3,6 +3,7 @@ package com.miro.widget.api.model.response;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -12,9 +13,18 @@ import java.util.UUID;
 
 @Getter
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonPropertyOrder({WidgetResponse.X_COORDINATE_GETTER, WidgetResponse.Y_COORDINATE_GETTER,
+        WidgetResponse.Z_INDEX_GETTER, "links"})
 @NoArgsConstructor
 @AllArgsConstructor
 public class WidgetResponse extends WidgetResourceSupport {
+    static final String MODIFIED_AT_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    static final String MODIFIED_AT_TIME_ZONE = "Asia/Yekaterinburg";
+
+    // the getters below have always been serialized next to the fields, under the names Jackson gives them
+    static final String X_COORDINATE_GETTER = "xcoordinate";
+    static final String Y_COORDINATE_GETTER = "ycoordinate";
+    static final String Z_INDEX_GETTER = "zindex";
 
     @JsonProperty(value = "id")
     private UUID uuid;
@@ -35,6 +45,21 @@ public class WidgetResponse extends WidgetResourceSupport {
     private long height;
 
     @JsonProperty(value = "modifiedAt")
-    @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss", timezone = "Asia/Yekaterinburg")
+    @JsonFormat(pattern = MODIFIED_AT_PATTERN, timezone = MODIFIED_AT_TIME_ZONE)
     private Date modifiedAt;
+
+    @JsonProperty(X_COORDINATE_GETTER)
+    public long getXCoordinate() {
+        return xCoordinate;
+    }
+
+    @JsonProperty(Y_COORDINATE_GETTER)
+    public long getYCoordinate() {
+        return yCoordinate;
+    }
+
+    @JsonProperty(Z_INDEX_GETTER)
+    public Long getZIndex() {
+        return zIndex;
+    }
 }
@@ -0,0 +1,58 @@
+package com.miro.widget.api.model.response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.WidgetView;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpMethod;
+
+import java.io.IOException;
+
+import static com.miro.widget.api.model.response.WidgetJsonWriter.LINKS;
+
+/**
+ * Single widget with the fields of a view only, written straight to JSON tokens,
+ * followed by the links of a widget resource unless the view has none.
+ */
+@Getter
+@AllArgsConstructor
+@JsonSerialize(using = WidgetViewResponse.Serializer.class)
+public class WidgetViewResponse {
+    private final WidgetDto widget;
+
+    private final WidgetLinks links;
+
+    private final WidgetView view;
+
+    public static class Serializer extends StdSerializer<WidgetViewResponse> {
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(WidgetViewResponse.class);
+        }
+
+        @Override
+        public void serialize(WidgetViewResponse value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            WidgetJsonWriter writer = new WidgetJsonWriter(generator);
+
+            generator.writeStartObject();
+            writer.writeFields(value.getWidget(), value.getView().getFields());
+            if (value.getView().isLinks()) {
+                String widgetHref = value.getLinks().widget(value.getWidget().getId());
+                generator.writeFieldName(LINKS);
+                generator.writeStartArray();
+                writer.writeLink(Link.REL_SELF, widgetHref, HttpMethod.GET);
+                writer.writeLink(WidgetLinkRelType.UPDATE_WIDGET.getTitle(), widgetHref, HttpMethod.PUT);
+                writer.writeLink(WidgetLinkRelType.DELETE_WIDGET.getTitle(), widgetHref, HttpMethod.DELETE);
+                writer.writeLink(WidgetLinkRelType.WIDGETS.getTitle(), value.getLinks().widgets(), HttpMethod.GET);
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+}
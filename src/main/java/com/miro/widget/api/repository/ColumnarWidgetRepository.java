@@ -0,0 +1,339 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.repository.index.UuidSlotMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps widgets in primitive columns indexed by slot instead of object graphs.
+ * Z-order is an array of slots sorted by z-index; area queries scan it in z-order.
+ * The layout trades write and area query cost for compact memory and cache-friendly scans:
+ * saving or removing a widget moves the tail of the z-order array, O(n), and area queries
+ * and counts scan the whole board, O(n), as there is no spatial index. It suits boards that
+ * are read in pages far more often than they are written or queried by area.
+ */
+@Component
+@ConditionalOnProperty(name = "widget.repository.type", havingValue = "columnar")
+public class ColumnarWidgetRepository implements WidgetRepository {
+    private static final Comparator<Widget> DEFAULT_COMPARATOR =
+            Comparator.comparing(Widget::getZIndex)
+                .thenComparing(Widget::getId);
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final UuidSlotMap slotsById = new UuidSlotMap();
+
+    private long[] idMostBits;
+    private long[] idLeastBits;
+    private long[] xCoordinates;
+    private long[] yCoordinates;
+    private long[] widths;
+    private long[] heights;
+    private long[] zIndexes;
+    private long[] modifiedAts;
+    private int slotCount;
+
+    private int[] freeSlots;
+    private int freeSlotCount;
+
+    // slots sorted by z-index
+    private int[] slotsByZIndex;
+    private int size;
+
+    public ColumnarWidgetRepository() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public long count() {
+        return size;
+    }
+
+    @Override
+    public long countInArea(Point bottomLeft, Point upperRight) {
+        long result = 0;
+        for (int position = 0; position < size; position++) {
+            if (isInside(slotsByZIndex[position], bottomLeft, upperRight)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Long findHighestZIndex() {
+        return size == 0
+                ? null
+                : zIndexes[slotsByZIndex[size - 1]];
+    }
+
+    @Override
+    public Long findLeastZIndexGreaterThanOrEqualTo(long index) {
+        int position = lowerBound(index);
+        return position < size
+                ? zIndexes[slotsByZIndex[position]]
+                : null;
+    }
+
+    @Override
+    public Widget findById(UUID uuid) {
+        int slot = slotsById.get(uuid);
+        return slot != UuidSlotMap.NO_SLOT
+                ? widgetAt(slot)
+                : null;
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex() {
+        return findAllSortByZIndex(0, size);
+    }
+
+    @Override
+    public void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+        for (int position = 0; position < size; position++) {
+            consumer.accept(widgetAt(slotsByZIndex[position]));
+        }
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex(long skip, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        long end = Math.min(size, skip + Math.min(take, size));
+        for (long position = skip; position < end; position++) {
+            result.add(widgetAt(slotsByZIndex[(int) position]));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        long skipped = 0;
+        for (int position = 0; position < size && result.size() < take; position++) {
+            int slot = slotsByZIndex[position];
+            if (!isInside(slot, bottomLeft, upperRight)) {
+                continue;
+            }
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                result.add(widgetAt(slot));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        for (int position = positionAfter(zIndex, id); position < size && result.size() < take; position++) {
+            result.add(widgetAt(slotsByZIndex[position]));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        for (int position = positionAfter(zIndex, id); position < size && result.size() < take; position++) {
+            int slot = slotsByZIndex[position];
+            if (isInside(slot, bottomLeft, upperRight)) {
+                result.add(widgetAt(slot));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index) {
+        NavigableSet<Widget> result = new TreeSet<>(DEFAULT_COMPARATOR);
+        for (int position = lowerBound(index); position < size; position++) {
+            result.add(widgetAt(slotsByZIndex[position]));
+        }
+        return result;
+    }
+
+    @Override
+    public void shiftTailZIndexesAt(long zIndex, Long excludeIndex, Date modifiedAt) {
+        long expected = zIndex;
+        for (int position = lowerBound(zIndex); position < size; position++, expected++) {
+            int slot = slotsByZIndex[position];
+            if (zIndexes[slot] != expected
+                    || (excludeIndex != null && excludeIndex == expected)) {
+                break;
+            }
+            zIndexes[slot]++;
+            modifiedAts[slot] = modifiedAt.getTime();
+        }
+    }
+
+    @Override
+    public void saveOrUpdate(Widget widget) {
+        int previous = slotsById.remove(widget.getId());
+        if (previous != UuidSlotMap.NO_SLOT) {
+            removeSlot(previous);
+        }
+
+        int slot = allocateSlot();
+        idMostBits[slot] = widget.getId().getMostSignificantBits();
+        idLeastBits[slot] = widget.getId().getLeastSignificantBits();
+        xCoordinates[slot] = widget.getXCoordinate();
+        yCoordinates[slot] = widget.getYCoordinate();
+        widths[slot] = widget.getWidth();
+        heights[slot] = widget.getHeight();
+        zIndexes[slot] = widget.getZIndex();
+        modifiedAts[slot] = widget.getModifiedAt().getTime();
+
+        int position = upperBound(widget.getZIndex());
+        System.arraycopy(slotsByZIndex, position, slotsByZIndex, position + 1, size - position);
+        slotsByZIndex[position] = slot;
+        size++;
+        slotsById.put(widget.getId(), slot);
+    }
+
+    @Override
+    public void saveOrUpdate(Collection<Widget> widgets) {
+        widgets.forEach(this::saveOrUpdate);
+    }
+
+    @Override
+    public Widget remove(Widget widget) {
+        int slot = slotsById.remove(widget.getId());
+        if (slot == UuidSlotMap.NO_SLOT) {
+            return null;
+        }
+        Widget removed = widgetAt(slot);
+        removeSlot(slot);
+        return removed;
+    }
+
+    @Override
+    public void removeAll() {
+        slotsById.clear();
+        // the columns keep the capacity they have grown to, every slot is written again before it is read
+        slotCount = 0;
+        freeSlotCount = 0;
+        size = 0;
+    }
+
+    private Widget widgetAt(int slot) {
+        return new Widget(
+                new UUID(idMostBits[slot], idLeastBits[slot]),
+                xCoordinates[slot],
+                yCoordinates[slot],
+                zIndexes[slot],
+                widths[slot],
+                heights[slot],
+                new Date(modifiedAts[slot])
+        );
+    }
+
+    // same arithmetic as Rectangle uses for its corner points
+    private boolean isInside(int slot, Point bottomLeft, Point upperRight) {
+        long halfWidth = widths[slot] / 2;
+        long halfHeight = heights[slot] / 2;
+        return xCoordinates[slot] - halfWidth >= bottomLeft.getXCoordinate()
+                && yCoordinates[slot] - halfHeight >= bottomLeft.getYCoordinate()
+                && xCoordinates[slot] + halfWidth <= upperRight.getXCoordinate()
+                && yCoordinates[slot] + halfHeight <= upperRight.getYCoordinate();
+    }
+
+    private void removeSlot(int slot) {
+        int position = lowerBound(zIndexes[slot]);
+        while (slotsByZIndex[position] != slot) {
+            position++;
+        }
+        System.arraycopy(slotsByZIndex, position + 1, slotsByZIndex, position, size - position - 1);
+        size--;
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (slotCount == zIndexes.length) {
+            grow(zIndexes.length * 2);
+        }
+        return slotCount++;
+    }
+
+    // position right after the widget if it still has the z-index, otherwise after the whole z-index
+    private int positionAfter(long zIndex, UUID id) {
+        int slot = slotsById.get(id);
+        int end = upperBound(zIndex);
+        if (slot != UuidSlotMap.NO_SLOT && zIndexes[slot] == zIndex) {
+            for (int position = lowerBound(zIndex); position < end; position++) {
+                if (slotsByZIndex[position] == slot) {
+                    return position + 1;
+                }
+            }
+        }
+        return end;
+    }
+
+    // first position with z-index greater than or equal to the given one
+    private int lowerBound(long zIndex) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zIndexes[slotsByZIndex[middle]] < zIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // first position with z-index greater than the given one
+    private int upperBound(long zIndex) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zIndexes[slotsByZIndex[middle]] <= zIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void grow(int capacity) {
+        idMostBits = Arrays.copyOf(idMostBits, capacity);
+        idLeastBits = Arrays.copyOf(idLeastBits, capacity);
+        xCoordinates = Arrays.copyOf(xCoordinates, capacity);
+        yCoordinates = Arrays.copyOf(yCoordinates, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        zIndexes = Arrays.copyOf(zIndexes, capacity);
+        modifiedAts = Arrays.copyOf(modifiedAts, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        slotsByZIndex = Arrays.copyOf(slotsByZIndex, capacity);
+    }
+
+    private void allocate(int capacity) {
+        idMostBits = new long[capacity];
+        idLeastBits = new long[capacity];
+        xCoordinates = new long[capacity];
+        yCoordinates = new long[capacity];
+        widths = new long[capacity];
+        heights = new long[capacity];
+        zIndexes = new long[capacity];
+        modifiedAts = new long[capacity];
+        freeSlots = new int[capacity];
+        slotsByZIndex = new int[capacity];
+        slotCount = 0;
+        freeSlotCount = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,324 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.repository.page.BPlusTree;
+import com.miro.widget.api.repository.page.BufferPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps widgets in pages of a file, so only the pages in the buffer pool take heap.
+ * Widgets are records of a B+tree ordered by z-index and insertion sequence, whose inner entries
+ * also serve area queries with the bounding boxes of their subtrees. A second B+tree maps ids
+ * to z-order keys.
+ */
+@Component
+@ConditionalOnProperty(name = "widget.repository.type", havingValue = "disk")
+public class DiskWidgetRepository implements WidgetRepository, Closeable {
+    public static final int DEFAULT_PAGE_SIZE = 8192;
+
+    private static final Comparator<Widget> DEFAULT_COMPARATOR =
+            Comparator.comparing(Widget::getZIndex)
+                .thenComparing(Widget::getId);
+
+    // z-order record: key of z-index and sequence, then id, rectangle and modification time
+    private static final int Z_INDEX = 0;
+    private static final int SEQUENCE = 1;
+    private static final int ID_MOST_BITS = 2;
+    private static final int ID_LEAST_BITS = 3;
+    private static final int X_COORDINATE = 4;
+    private static final int Y_COORDINATE = 5;
+    private static final int WIDTH = 6;
+    private static final int HEIGHT = 7;
+    private static final int MODIFIED_AT = 8;
+    private static final int RECORD_LONGS = 9;
+
+    // id record: key of id bits, then the z-order key
+    private static final int KEY_Z_INDEX = 2;
+    private static final int KEY_SEQUENCE = 3;
+    private static final int ID_RECORD_LONGS = 4;
+
+    private final BufferPool pool;
+    private BPlusTree widgetTreeByZIndex;
+    private BPlusTree keyTreeById;
+    private long nextSequence;
+
+    @Autowired
+    public DiskWidgetRepository(@Value("${widget.repository.disk.path:widgets.pages}") String path,
+                                @Value("${widget.repository.disk.cache-pages:16384}") int cachePages) throws IOException {
+        this(Paths.get(path), DEFAULT_PAGE_SIZE, cachePages);
+    }
+
+    public DiskWidgetRepository(Path path, int pageSize, int cachePages) throws IOException {
+        this.pool = new BufferPool(path, pageSize, cachePages);
+        createTrees();
+    }
+
+    public long cacheHits() {
+        return pool.hits();
+    }
+
+    public long cacheMisses() {
+        return pool.misses();
+    }
+
+    @Override
+    public long count() {
+        return widgetTreeByZIndex.size();
+    }
+
+    @Override
+    public long countInArea(Point bottomLeft, Point upperRight) {
+        return widgetTreeByZIndex.countInArea(new Rectangle(bottomLeft, upperRight));
+    }
+
+    @Override
+    public Long findHighestZIndex() {
+        long[] record = new long[RECORD_LONGS];
+        return widgetTreeByZIndex.last(record)
+                ? record[Z_INDEX]
+                : null;
+    }
+
+    @Override
+    public Long findLeastZIndexGreaterThanOrEqualTo(long index) {
+        Long[] result = new Long[1];
+        widgetTreeByZIndex.forEachFrom(new long[]{index, Long.MIN_VALUE}, record -> {
+            result[0] = record[Z_INDEX];
+            return false;
+        });
+        return result[0];
+    }
+
+    @Override
+    public Widget findById(UUID uuid) {
+        long[] record = findRecord(uuid);
+        return record != null
+                ? widgetOf(record)
+                : null;
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex() {
+        return findAllSortByZIndex(0, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+        widgetTreeByZIndex.forEach(0, Long.MAX_VALUE, record -> {
+            consumer.accept(widgetOf(record));
+            return true;
+        });
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex(long skip, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByZIndex.forEach(skip, take, record -> {
+            result.add(widgetOf(record));
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByZIndex.forEachInArea(new Rectangle(bottomLeft, upperRight), skip, take, record -> {
+            result.add(widgetOf(record));
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        if (take > 0) {
+            widgetTreeByZIndex.forEachFrom(keyAfter(zIndex, id), record -> {
+                result.add(widgetOf(record));
+                return result.size() < take;
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByZIndex.forEachInAreaFrom(keyAfter(zIndex, id), new Rectangle(bottomLeft, upperRight), take, record -> {
+            result.add(widgetOf(record));
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index) {
+        NavigableSet<Widget> result = new TreeSet<>(DEFAULT_COMPARATOR);
+        widgetTreeByZIndex.forEachFrom(new long[]{index, Long.MIN_VALUE}, record -> {
+            result.add(widgetOf(record));
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public void shiftTailZIndexesAt(long zIndex, Long excludeIndex, Date modifiedAt) {
+        long[] from = {zIndex, Long.MIN_VALUE};
+        long[] last = new long[RECORD_LONGS];
+        long[] length = {0};
+        widgetTreeByZIndex.forEachFrom(from, record -> {
+            long expected = zIndex + length[0];
+            if (record[Z_INDEX] != expected
+                    || (excludeIndex != null && excludeIndex == expected)) {
+                return false;
+            }
+            System.arraycopy(record, 0, last, 0, RECORD_LONGS);
+            length[0]++;
+            return true;
+        });
+        if (length[0] == 0) {
+            return;
+        }
+
+        // only the last record of the run can reach the z-index of the record after it,
+        // so it is moved first and the rest of the run is shifted in place, keeping its order
+        widgetTreeByZIndex.delete(last);
+        shift(last, modifiedAt);
+        widgetTreeByZIndex.insert(last);
+        if (length[0] > 1) {
+            long[] shifted = {0};
+            widgetTreeByZIndex.updateFrom(from, record -> {
+                shift(record, modifiedAt);
+                return ++shifted[0] < length[0] - 1;
+            });
+        }
+    }
+
+    @Override
+    public void saveOrUpdate(Widget widget) {
+        long[] idRecord = new long[ID_RECORD_LONGS];
+        boolean exists = keyTreeById.find(idKeyOf(widget.getId()), idRecord);
+        if (exists) {
+            widgetTreeByZIndex.delete(new long[]{idRecord[KEY_Z_INDEX], idRecord[KEY_SEQUENCE]});
+        }
+
+        long[] record = recordOf(widget, nextSequence++);
+        widgetTreeByZIndex.insert(record);
+        if (exists) {
+            keyTreeById.replace(idRecordOf(record));
+        } else {
+            keyTreeById.insert(idRecordOf(record));
+        }
+    }
+
+    @Override
+    public void saveOrUpdate(Collection<Widget> widgets) {
+        widgets.forEach(this::saveOrUpdate);
+    }
+
+    @Override
+    public Widget remove(Widget widget) {
+        long[] record = findRecord(widget.getId());
+        if (record == null) {
+            return null;
+        }
+        widgetTreeByZIndex.delete(record);
+        keyTreeById.delete(idKeyOf(widget.getId()));
+        return widgetOf(record);
+    }
+
+    @Override
+    public void removeAll() {
+        try {
+            pool.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        createTrees();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.close();
+    }
+
+    private void shift(long[] record, Date modifiedAt) {
+        record[Z_INDEX]++;
+        record[MODIFIED_AT] = modifiedAt.getTime();
+        keyTreeById.replace(idRecordOf(record));
+    }
+
+    private void createTrees() {
+        widgetTreeByZIndex = new BPlusTree(pool, RECORD_LONGS, 2, X_COORDINATE);
+        keyTreeById = new BPlusTree(pool, ID_RECORD_LONGS, 2, BPlusTree.NO_BOUNDS);
+    }
+
+    private long[] findRecord(UUID uuid) {
+        long[] idRecord = new long[ID_RECORD_LONGS];
+        if (!keyTreeById.find(idKeyOf(uuid), idRecord)) {
+            return null;
+        }
+        long[] record = new long[RECORD_LONGS];
+        return widgetTreeByZIndex.find(new long[]{idRecord[KEY_Z_INDEX], idRecord[KEY_SEQUENCE]}, record)
+                ? record
+                : null;
+    }
+
+    // z-order key right after the widget if it still has the z-index, otherwise after the whole z-index;
+    // sequences never reach the maximum
+    private long[] keyAfter(long zIndex, UUID id) {
+        long[] idRecord = new long[ID_RECORD_LONGS];
+        return keyTreeById.find(idKeyOf(id), idRecord) && idRecord[KEY_Z_INDEX] == zIndex
+                ? new long[]{zIndex, idRecord[KEY_SEQUENCE] + 1}
+                : new long[]{zIndex, Long.MAX_VALUE};
+    }
+
+    private static long[] idKeyOf(UUID uuid) {
+        return new long[]{uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()};
+    }
+
+    private static long[] idRecordOf(long[] record) {
+        return new long[]{record[ID_MOST_BITS], record[ID_LEAST_BITS], record[Z_INDEX], record[SEQUENCE]};
+    }
+
+    private static long[] recordOf(Widget widget, long sequence) {
+        long[] record = new long[RECORD_LONGS];
+        record[Z_INDEX] = widget.getZIndex();
+        record[SEQUENCE] = sequence;
+        record[ID_MOST_BITS] = widget.getId().getMostSignificantBits();
+        record[ID_LEAST_BITS] = widget.getId().getLeastSignificantBits();
+        record[X_COORDINATE] = widget.getXCoordinate();
+        record[Y_COORDINATE] = widget.getYCoordinate();
+        record[WIDTH] = widget.getWidth();
+        record[HEIGHT] = widget.getHeight();
+        record[MODIFIED_AT] = widget.getModifiedAt().getTime();
+        return record;
+    }
+
+    private static Widget widgetOf(long[] record) {
+        return new Widget(
+                new UUID(record[ID_MOST_BITS], record[ID_LEAST_BITS]),
+                record[X_COORDINATE],
+                record[Y_COORDINATE],
+                record[Z_INDEX],
+                record[WIDTH],
+                record[HEIGHT],
+                new Date(record[MODIFIED_AT])
+        );
+    }
+}
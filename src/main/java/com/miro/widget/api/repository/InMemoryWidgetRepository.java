@@ -4,127 +4,127 @@ import com.miro.widget.api.contract.WidgetRepository;
 import com.miro.widget.api.model.entity.Point;
 import com.miro.widget.api.model.entity.Rectangle;
 import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.repository.index.RTree;
+import com.miro.widget.api.repository.index.ZIndexTree;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Component
+@ConditionalOnProperty(name = "widget.repository.type", havingValue = "in-memory", matchIfMissing = true)
 public class InMemoryWidgetRepository implements WidgetRepository {
     private static final Comparator<Widget> DEFAULT_COMPARATOR =
             Comparator.comparing(Widget::getZIndex)
                 .thenComparing(Widget::getId);
 
-    private Map<UUID, Widget> widgetMapById = new HashMap<>();
-    private NavigableMap<Long, Widget> widgetMapByZIndex = new TreeMap<>();
-    private NavigableMap<Long, NavigableMap<Long, NavigableMap<Long, NavigableMap<Long, Set<Widget>>>>> widgetMapByCoordinates = new TreeMap<>();
+    private Map<UUID, ZIndexTree.Entry> widgetMapById = new HashMap<>();
+    private ZIndexTree widgetTreeByZIndex = new ZIndexTree();
+    private RTree<ZIndexTree.Entry> widgetTreeByCoordinates =
+            new RTree<>(ZIndexTree.Entry::getRectangle, widgetTreeByZIndex::compare);
 
     @Override
     public long count() {
         return widgetMapById.size();
     }
 
+    @Override
+    public long countInArea(Point bottomLeft, Point upperRight) {
+        return widgetTreeByCoordinates.count(new Rectangle(bottomLeft, upperRight));
+    }
+
     @Override
     public Long findHighestZIndex() {
-        return widgetMapByZIndex.size() == 0
-                ? null
-                : widgetMapByZIndex.lastKey();
+        return widgetTreeByZIndex.lastKey();
     }
 
     @Override
     public Long findLeastZIndexGreaterThanOrEqualTo(long index) {
-        return widgetMapByZIndex.ceilingKey(index);
+        return widgetTreeByZIndex.ceilingKey(index);
     }
 
     @Override
     public Widget findById(UUID uuid) {
-        return widgetMapById.get(uuid);
+        ZIndexTree.Entry entry = widgetMapById.get(uuid);
+        return entry != null
+                ? widgetTreeByZIndex.widgetOf(entry)
+                : null;
     }
 
     @Override
     public Set<Widget> findAllSortByZIndex() {
-        return new LinkedHashSet<>(widgetMapByZIndex.values());
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByZIndex.forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+        widgetTreeByZIndex.forEach(consumer);
     }
 
     @Override
     public Set<Widget> findAllSortByZIndex(long skip, long take) {
-        return widgetMapByZIndex.values().stream()
-                .skip(skip)
-                .limit(take)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByZIndex.forEach(skip, take, result::add);
+        return result;
     }
 
     @Override
     public Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take) {
         Rectangle filterRectangle = new Rectangle(bottomLeft, upperRight);
-        Set<Widget> filteredWidgets = searchByRectangleMap(filterRectangle);
-        return filteredWidgets.stream()
-                .skip(skip)
-                .limit(take)
-                .collect(Collectors.toCollection(() -> new TreeSet<>(DEFAULT_COMPARATOR)));
-    }
-
-    private Set<Widget> searchByRectangleMap(Rectangle rectangleFilter) {
-        TreeSet<Widget> result = new TreeSet<>(DEFAULT_COMPARATOR);
-        widgetMapByCoordinates.subMap(
-                rectangleFilter.getBottomLeftPoint().getXCoordinate(), true,
-                rectangleFilter.getUpperRightPoint().getXCoordinate(), true
-        ).forEach((bottomXCoordinate, widgetMultiMapByBottomYCoordinate) -> {
-            widgetMultiMapByBottomYCoordinate.subMap(
-                    rectangleFilter.getBottomLeftPoint().getYCoordinate(), true,
-                    rectangleFilter.getUpperRightPoint().getYCoordinate(), true
-            ).forEach((bottomYCoordinate, widgetMultiMapByUpperXCoordinate) ->
-                    widgetMultiMapByUpperXCoordinate.subMap(
-                            rectangleFilter.getBottomLeftPoint().getXCoordinate(), true,
-                            rectangleFilter.getUpperRightPoint().getXCoordinate(), true
-                    ).forEach((upperXCoordinate, widgetMultiMapByUpperYCoordinate) -> {
-                        widgetMultiMapByUpperYCoordinate.subMap(
-                                rectangleFilter.getBottomLeftPoint().getYCoordinate(), true,
-                                rectangleFilter.getUpperRightPoint().getYCoordinate(), true
-                        ).forEach((k , v) -> result.addAll(v));
-                    }));
-        });
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByCoordinates.search(filterRectangle, skip, take, entry ->
+                result.add(widgetTreeByZIndex.widgetOf(entry)));
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take) {
+        Set<Widget> result = new LinkedHashSet<>();
+        ZIndexTree.Entry entry = findEntry(zIndex, id);
+        if (entry != null) {
+            widgetTreeByZIndex.forEachAfter(entry, take, result::add);
+        } else {
+            widgetTreeByZIndex.forEachGreaterThan(zIndex, take, result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take) {
+        ZIndexTree.Entry after = findEntry(zIndex, id);
+        if (after == null) {
+            after = widgetTreeByZIndex.floorEntry(zIndex);
+        }
+        Set<Widget> result = new LinkedHashSet<>();
+        widgetTreeByCoordinates.searchAfter(new Rectangle(bottomLeft, upperRight), after, take, entry ->
+                result.add(widgetTreeByZIndex.widgetOf(entry)));
         return result;
     }
 
     @Override
     public NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index) {
-        return widgetMapByZIndex.tailMap(index, true).values().stream()
-                .collect(Collectors.toCollection(() -> new TreeSet<>(DEFAULT_COMPARATOR)));
+        NavigableSet<Widget> result = new TreeSet<>(DEFAULT_COMPARATOR);
+        widgetTreeByZIndex.forEachGreaterThanOrEqualTo(index, result::add);
+        return result;
+    }
+
+    @Override
+    public void shiftTailZIndexesAt(long zIndex, Long excludeIndex, Date modifiedAt) {
+        widgetTreeByZIndex.shiftRun(zIndex, excludeIndex, modifiedAt);
     }
 
     @Override
     public void saveOrUpdate(Widget widget) {
-        Widget removed = widgetMapById.put(widget.getId(), widget);
-        widgetMapByZIndex.put(widget.getZIndex(), widget);
+        ZIndexTree.Entry removed = widgetMapById.remove(widget.getId());
         if (removed != null) {
-            removeInRectangleMap(removed);
+            removeFromTrees(removed);
         }
-        addToRectangleMap(widget);
-    }
-
-    private void addToRectangleMap(Widget widget) {
-        widgetMapByCoordinates
-                .putIfAbsent(widget.getBottomLeftPoint().getXCoordinate(), new TreeMap<>());
-        widgetMapByCoordinates
-                .get(widget.getBottomLeftPoint().getXCoordinate())
-                .putIfAbsent(widget.getBottomLeftPoint().getYCoordinate(), new TreeMap<>());
-        widgetMapByCoordinates
-                .get(widget.getBottomLeftPoint().getXCoordinate())
-                .get(widget.getBottomLeftPoint().getYCoordinate())
-                .putIfAbsent(widget.getUpperRightPoint().getXCoordinate(), new TreeMap<>());
-        widgetMapByCoordinates
-                .get(widget.getBottomLeftPoint().getXCoordinate())
-                .get(widget.getBottomLeftPoint().getYCoordinate())
-                .get(widget.getUpperRightPoint().getXCoordinate())
-                .putIfAbsent(widget.getUpperRightPoint().getYCoordinate(), new TreeSet<>(DEFAULT_COMPARATOR));
-
-        widgetMapByCoordinates
-                .get(widget.getBottomLeftPoint().getXCoordinate())
-                .get(widget.getBottomLeftPoint().getYCoordinate())
-                .get(widget.getUpperRightPoint().getXCoordinate())
-                .get(widget.getUpperRightPoint().getYCoordinate())
-                .add(widget);
+        ZIndexTree.Entry entry = widgetTreeByZIndex.insert(widget);
+        widgetTreeByCoordinates.insert(entry);
+        widgetMapById.put(widget.getId(), entry);
     }
 
     @Override
@@ -132,29 +132,44 @@ public class InMemoryWidgetRepository implements WidgetRepository {
         widgets.forEach(this::saveOrUpdate);
     }
 
+    @Override
+    public void bulkLoad(List<Widget> widgets) {
+        List<ZIndexTree.Entry> entries = widgetTreeByZIndex.appendAll(widgets);
+        widgetTreeByCoordinates.load(entries);
+        for (int i = 0; i < entries.size(); i++) {
+            widgetMapById.put(widgets.get(i).getId(), entries.get(i));
+        }
+    }
+
     @Override
     public Widget remove(Widget widget) {
-        Widget removed = widgetMapById.remove(widget.getId());
-        widgetMapByZIndex.remove(widget.getZIndex());
-        if (removed != null) {
-            removeInRectangleMap(removed);
+        ZIndexTree.Entry entry = widgetMapById.remove(widget.getId());
+        if (entry == null) {
+            return null;
         }
+        Widget removed = widgetTreeByZIndex.widgetOf(entry);
+        removeFromTrees(entry);
         return removed;
     }
 
-    private void removeInRectangleMap(Widget widget) {
-        widgetMapByCoordinates
-                .getOrDefault(widget.getBottomLeftPoint().getXCoordinate(), new TreeMap<>())
-                .getOrDefault(widget.getBottomLeftPoint().getYCoordinate(), new TreeMap<>())
-                .getOrDefault(widget.getUpperRightPoint().getXCoordinate(), new TreeMap<>())
-                .getOrDefault(widget.getUpperRightPoint().getYCoordinate(), new TreeSet<>(DEFAULT_COMPARATOR))
-                .remove(widget);
+    // the entry of the widget if it still has the z-index
+    private ZIndexTree.Entry findEntry(long zIndex, UUID id) {
+        ZIndexTree.Entry entry = widgetMapById.get(id);
+        return entry != null && widgetTreeByZIndex.widgetOf(entry).getZIndex() == zIndex
+                ? entry
+                : null;
+    }
+
+    // the spatial index orders entries by their position in the z-index tree, so it goes first
+    private void removeFromTrees(ZIndexTree.Entry entry) {
+        widgetTreeByCoordinates.remove(entry);
+        widgetTreeByZIndex.remove(entry);
     }
 
     @Override
     public void removeAll() {
         widgetMapById.clear();
-        widgetMapByZIndex.clear();
-        widgetMapByCoordinates.clear();
+        widgetTreeByZIndex.clear();
+        widgetTreeByCoordinates.clear();
     }
 }
@@ -0,0 +1,270 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.contract.WidgetRepositoryView;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.repository.journal.WidgetCheckpoint;
+import com.miro.widget.api.repository.journal.WidgetJournal;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Records every change applied to the underlying repository in a {@link WidgetJournal}
+ * and rebuilds the repository from it on creation. Changes become durable on {@link #flush()},
+ * which the service calls once per batch of mutations.
+ * With a {@link WidgetCheckpoint} the repository is first loaded from the latest image and only
+ * the journal written after it is replayed; the journal segments the image covers are deleted. A requested checkpoint is captured on the next flush,
+ * when no mutation is in progress, and written to disk in the background.
+ * A change is journaled before it is applied. A journal that failed to append is not trusted
+ * any more, so every change and flush after it is refused until the repository is reopened.
+ */
+@Log4j2
+public class JournaledWidgetRepository implements WidgetRepository, Closeable {
+    private final WidgetRepository repository;
+    private final WidgetJournal journal;
+    private final WidgetCheckpoint checkpoint;
+    private final ScheduledExecutorService checkpointExecutor;
+    private volatile boolean checkpointRequested;
+    private Future<?> pendingCheckpoint;
+    private IOException journalFailure;
+
+    public JournaledWidgetRepository(WidgetRepository repository, WidgetJournal journal) throws IOException {
+        this(repository, journal, null, 0);
+    }
+
+    public JournaledWidgetRepository(WidgetRepository repository, WidgetJournal journal,
+                                     WidgetCheckpoint checkpoint, long checkpointIntervalMillis) throws IOException {
+        this.repository = repository;
+        this.journal = journal;
+        this.checkpoint = checkpoint;
+
+        long startedAt = System.nanoTime();
+        long journalPosition = 0;
+        if (checkpoint != null) {
+            journalPosition = checkpoint.load(repository);
+            log.info("Loaded {} widgets from checkpoint in {} ms",
+                    repository.count(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+        long records = journal.replay(repository, journalPosition);
+        log.info("Replayed {} journal records into {} widgets in {} ms",
+                records, repository.count(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+        if (checkpoint == null) {
+            this.checkpointExecutor = null;
+            return;
+        }
+        this.checkpointExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "widget-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (checkpointIntervalMillis > 0) {
+            checkpointExecutor.scheduleWithFixedDelay(
+                    this::requestCheckpoint, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void requestCheckpoint() {
+        if (checkpoint == null) {
+            throw new IllegalStateException("Checkpoint is not configured");
+        }
+        checkpointRequested = true;
+    }
+
+    @Override
+    public WidgetRepositoryView snapshot() {
+        return repository.snapshot();
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public long countInArea(Point bottomLeft, Point upperRight) {
+        return repository.countInArea(bottomLeft, upperRight);
+    }
+
+    @Override
+    public Long findHighestZIndex() {
+        return repository.findHighestZIndex();
+    }
+
+    @Override
+    public Long findLeastZIndexGreaterThanOrEqualTo(long index) {
+        return repository.findLeastZIndexGreaterThanOrEqualTo(index);
+    }
+
+    @Override
+    public Widget findById(UUID uuid) {
+        return repository.findById(uuid);
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex() {
+        return repository.findAllSortByZIndex();
+    }
+
+    @Override
+    public void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+        repository.forEachSortByZIndex(consumer);
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex(long skip, long take) {
+        return repository.findAllSortByZIndex(skip, take);
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take) {
+        return repository.findAllInAreaSortByZIndex(bottomLeft, upperRight, skip, take);
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take) {
+        return repository.findAllSortByZIndexAfter(zIndex, id, take);
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take) {
+        return repository.findAllInAreaSortByZIndexAfter(bottomLeft, upperRight, zIndex, id, take);
+    }
+
+    @Override
+    public NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index) {
+        return repository.findAllSortByZIndexGreaterThanOrEqualTo(index);
+    }
+
+    @Override
+    public void shiftTailZIndexesAt(long zIndex, Long excludeIndex, Date modifiedAt) {
+        append(() -> journal.appendShift(zIndex, excludeIndex, modifiedAt));
+        repository.shiftTailZIndexesAt(zIndex, excludeIndex, modifiedAt);
+    }
+
+    @Override
+    public void saveOrUpdate(Widget widget) {
+        append(() -> journal.appendSave(widget));
+        repository.saveOrUpdate(widget);
+    }
+
+    @Override
+    public void saveOrUpdate(Collection<Widget> widgets) {
+        append(() -> {
+            for (Widget widget : widgets) {
+                journal.appendSave(widget);
+            }
+        });
+        repository.saveOrUpdate(widgets);
+    }
+
+    @Override
+    public void bulkLoad(List<Widget> widgets) {
+        append(() -> {
+            for (Widget widget : widgets) {
+                journal.appendSave(widget);
+            }
+        });
+        repository.bulkLoad(widgets);
+    }
+
+    @Override
+    public Widget remove(Widget widget) {
+        if (repository.findById(widget.getId()) == null) {
+            return null;
+        }
+        append(() -> journal.appendRemove(widget.getId()));
+        return repository.remove(widget);
+    }
+
+    @Override
+    public void removeAll() {
+        append(journal::appendRemoveAll);
+        repository.removeAll();
+    }
+
+    @Override
+    public void flush() {
+        assertJournalIsIntact();
+        journal.sync();
+        repository.flush();
+        if (checkpointRequested && (pendingCheckpoint == null || pendingCheckpoint.isDone())) {
+            checkpointRequested = false;
+            pendingCheckpoint = startCheckpoint();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdown();
+            try {
+                checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+        if (repository instanceof Closeable) {
+            ((Closeable) repository).close();
+        }
+    }
+
+    private void append(JournalAppend append) {
+        assertJournalIsIntact();
+        try {
+            append.run();
+        } catch (IOException e) {
+            journalFailure = e;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void assertJournalIsIntact() {
+        if (journalFailure != null) {
+            throw new IllegalStateException("Journal failed to append, changes are refused", journalFailure);
+        }
+    }
+
+    // the image starts a journal segment of its own, so once it is written every segment before it goes
+    private Future<?> startCheckpoint() {
+        long journalPosition;
+        try {
+            journalPosition = journal.startSegment();
+        } catch (IOException e) {
+            journalFailure = e;
+            throw new UncheckedIOException(e);
+        }
+        WidgetRepositoryView snapshot = repository.snapshot();
+        // without a snapshot the state is packed here, blocking writers for the packing but not for the disk write
+        long[] records = snapshot == null
+                ? WidgetCheckpoint.pack(repository)
+                : null;
+        return checkpointExecutor.submit(() -> {
+            long startedAt = System.nanoTime();
+            try {
+                long[] image = records != null
+                        ? records
+                        : WidgetCheckpoint.pack(snapshot);
+                checkpoint.write(image, journalPosition);
+                int deleted = journal.deleteSegmentsBefore(journalPosition);
+                log.info("Wrote checkpoint at journal position {} and deleted {} journal segments in {} ms",
+                        journalPosition, deleted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            } catch (IOException | RuntimeException e) {
+                log.error("Checkpoint failed", e);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface JournalAppend {
+        void run() throws IOException;
+    }
+}
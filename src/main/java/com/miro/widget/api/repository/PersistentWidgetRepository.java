@@ -0,0 +1,255 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.contract.WidgetRepositoryView;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.repository.index.HashTrie;
+import com.miro.widget.api.repository.index.PersistentZIndexTree;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps widgets in immutable structures and publishes every write as a new {@link Snapshot},
+ * so readers can take the current snapshot and work with it without any locking.
+ * Widgets by id live in a hash trie, z-order and area queries are served by one persistent treap.
+ * Shifting a run of z-indexes is lazy in the treap but rewrites every shifted widget in the trie.
+ * The treap is ordered by z-index, not by place, so area queries cost up to O(n) on boards whose
+ * widgets are spread evenly through the z-order; see {@link PersistentZIndexTree}.
+ */
+@Component
+@ConditionalOnProperty(name = "widget.repository.type", havingValue = "persistent")
+public class PersistentWidgetRepository implements WidgetRepository {
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    @Override
+    public WidgetRepositoryView snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public long count() {
+        return snapshot.count();
+    }
+
+    @Override
+    public long countInArea(Point bottomLeft, Point upperRight) {
+        return snapshot.countInArea(bottomLeft, upperRight);
+    }
+
+    @Override
+    public Long findHighestZIndex() {
+        return snapshot.findHighestZIndex();
+    }
+
+    @Override
+    public Long findLeastZIndexGreaterThanOrEqualTo(long index) {
+        return snapshot.findLeastZIndexGreaterThanOrEqualTo(index);
+    }
+
+    @Override
+    public Widget findById(UUID uuid) {
+        return snapshot.findById(uuid);
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex() {
+        return snapshot.findAllSortByZIndex();
+    }
+
+    @Override
+    public void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+        snapshot.forEachSortByZIndex(consumer);
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndex(long skip, long take) {
+        return snapshot.findAllSortByZIndex(skip, take);
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take) {
+        return snapshot.findAllInAreaSortByZIndex(bottomLeft, upperRight, skip, take);
+    }
+
+    @Override
+    public Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take) {
+        return snapshot.findAllSortByZIndexAfter(zIndex, id, take);
+    }
+
+    @Override
+    public Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take) {
+        return snapshot.findAllInAreaSortByZIndexAfter(bottomLeft, upperRight, zIndex, id, take);
+    }
+
+    @Override
+    public NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index) {
+        return snapshot.findAllSortByZIndexGreaterThanOrEqualTo(index);
+    }
+
+    @Override
+    public void shiftTailZIndexesAt(long zIndex, Long excludeIndex, Date modifiedAt) {
+        snapshot = snapshot.withShiftedRun(zIndex, excludeIndex, modifiedAt);
+    }
+
+    @Override
+    public void saveOrUpdate(Widget widget) {
+        snapshot = snapshot.with(widget);
+    }
+
+    @Override
+    public void saveOrUpdate(Collection<Widget> widgets) {
+        Snapshot updated = snapshot;
+        for (Widget widget : widgets) {
+            updated = updated.with(widget);
+        }
+        snapshot = updated;
+    }
+
+    @Override
+    public void bulkLoad(List<Widget> widgets) {
+        snapshot = snapshot.withAppended(widgets);
+    }
+
+    @Override
+    public Widget remove(Widget widget) {
+        Snapshot current = snapshot;
+        Widget removed = current.findById(widget.getId());
+        if (removed == null) {
+            return null;
+        }
+        snapshot = current.without(removed);
+        return removed;
+    }
+
+    @Override
+    public void removeAll() {
+        snapshot = Snapshot.EMPTY;
+    }
+
+    public static final class Snapshot implements WidgetRepositoryView {
+        private static final Comparator<Widget> DEFAULT_COMPARATOR =
+                Comparator.comparing(Widget::getZIndex)
+                    .thenComparing(Widget::getId);
+
+        private static final Snapshot EMPTY = new Snapshot(HashTrie.empty(), PersistentZIndexTree.empty());
+
+        private final HashTrie<UUID, Widget> widgetTrieById;
+        private final PersistentZIndexTree widgetTreeByZIndex;
+
+        private Snapshot(HashTrie<UUID, Widget> widgetTrieById, PersistentZIndexTree widgetTreeByZIndex) {
+            this.widgetTrieById = widgetTrieById;
+            this.widgetTreeByZIndex = widgetTreeByZIndex;
+        }
+
+        @Override
+        public long count() {
+            return widgetTrieById.size();
+        }
+
+        @Override
+        public long countInArea(Point bottomLeft, Point upperRight) {
+            return widgetTreeByZIndex.countInArea(new Rectangle(bottomLeft, upperRight));
+        }
+
+        @Override
+        public Long findHighestZIndex() {
+            return widgetTreeByZIndex.lastKey();
+        }
+
+        @Override
+        public Long findLeastZIndexGreaterThanOrEqualTo(long index) {
+            return widgetTreeByZIndex.ceilingKey(index);
+        }
+
+        @Override
+        public Widget findById(UUID uuid) {
+            return widgetTrieById.get(uuid);
+        }
+
+        @Override
+        public Set<Widget> findAllSortByZIndex() {
+            Set<Widget> result = new LinkedHashSet<>();
+            widgetTreeByZIndex.forEach(result::add);
+            return result;
+        }
+
+        @Override
+        public void forEachSortByZIndex(Consumer<? super Widget> consumer) {
+            widgetTreeByZIndex.forEach(consumer);
+        }
+
+        @Override
+        public Set<Widget> findAllSortByZIndex(long skip, long take) {
+            Set<Widget> result = new LinkedHashSet<>();
+            widgetTreeByZIndex.forEach(skip, take, result::add);
+            return result;
+        }
+
+        @Override
+        public Set<Widget> findAllInAreaSortByZIndex(Point bottomLeft, Point upperRight, long skip, long take) {
+            Set<Widget> result = new LinkedHashSet<>();
+            widgetTreeByZIndex.forEachInArea(new Rectangle(bottomLeft, upperRight), skip, take, result::add);
+            return result;
+        }
+
+        // equal z-indexes are ordered by id, so the position after the key does not depend on the widget being there
+        @Override
+        public Set<Widget> findAllSortByZIndexAfter(long zIndex, UUID id, long take) {
+            Set<Widget> result = new LinkedHashSet<>();
+            widgetTreeByZIndex.forEachAfter(zIndex, id, take, result::add);
+            return result;
+        }
+
+        @Override
+        public Set<Widget> findAllInAreaSortByZIndexAfter(Point bottomLeft, Point upperRight, long zIndex, UUID id, long take) {
+            Set<Widget> result = new LinkedHashSet<>();
+            widgetTreeByZIndex.forEachInAreaAfter(new Rectangle(bottomLeft, upperRight), zIndex, id, take, result::add);
+            return result;
+        }
+
+        @Override
+        public NavigableSet<Widget> findAllSortByZIndexGreaterThanOrEqualTo(long index) {
+            NavigableSet<Widget> result = new TreeSet<>(DEFAULT_COMPARATOR);
+            widgetTreeByZIndex.forEachGreaterThanOrEqualTo(index, result::add);
+            return result;
+        }
+
+        private Snapshot with(Widget widget) {
+            Widget previous = widgetTrieById.get(widget.getId());
+            PersistentZIndexTree tree = previous != null
+                    ? widgetTreeByZIndex.remove(previous)
+                    : widgetTreeByZIndex;
+            return new Snapshot(widgetTrieById.put(widget.getId(), widget), tree.insert(widget));
+        }
+
+        private Snapshot withAppended(List<Widget> widgets) {
+            HashTrie<UUID, Widget> trie = widgetTrieById;
+            for (Widget widget : widgets) {
+                trie = trie.put(widget.getId(), widget);
+            }
+            return new Snapshot(trie, widgetTreeByZIndex.appendAll(widgets));
+        }
+
+        private Snapshot without(Widget widget) {
+            return new Snapshot(widgetTrieById.remove(widget.getId()), widgetTreeByZIndex.remove(widget));
+        }
+
+        private Snapshot withShiftedRun(long zIndex, Long excludeIndex, Date modifiedAt) {
+            List<Widget> shifted = new ArrayList<>();
+            PersistentZIndexTree tree = widgetTreeByZIndex.shiftRun(zIndex, excludeIndex, modifiedAt, shifted::add);
+            if (shifted.isEmpty()) {
+                return this;
+            }
+            HashTrie<UUID, Widget> trie = widgetTrieById;
+            for (Widget widget : shifted) {
+                trie = trie.put(widget.getId(), widget);
+            }
+            return new Snapshot(trie, tree);
+        }
+    }
+}
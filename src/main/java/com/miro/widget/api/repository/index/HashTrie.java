@@ -0,0 +1,276 @@
+package com.miro.widget.api.repository.index;
+
+import java.util.Objects;
+
+/**
+ * Immutable hash array mapped trie. Every update copies only the path from the root
+ * to the changed slot and returns a new trie, so earlier versions stay readable.
+ */
+public final class HashTrie<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final HashTrie<?, ?> EMPTY = new HashTrie<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> HashTrie<K, V> empty() {
+        return (HashTrie<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Leaf leaf = root.find(hash(key), key, 0);
+        return leaf != null
+                ? (V) leaf.value
+                : null;
+    }
+
+    public HashTrie<K, V> put(K key, V value) {
+        Leaf leaf = new Leaf(hash(key), key, value);
+        Node updated = root.put(leaf, 0);
+        if (updated == root) {
+            return this;
+        }
+        return new HashTrie<>(updated, root.find(leaf.hash, key, 0) == null ? size + 1 : size);
+    }
+
+    public HashTrie<K, V> remove(K key) {
+        Node updated = root.remove(hash(key), key, 0);
+        return updated == root
+                ? this
+                : new HashTrie<>(updated, size - 1);
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static Node merge(Leaf first, Leaf second, int shift) {
+        if (shift >= Integer.SIZE) {
+            return new CollisionNode(new Leaf[]{first, second});
+        }
+        int firstIndex = (first.hash >>> shift) & MASK;
+        int secondIndex = (second.hash >>> shift) & MASK;
+        if (firstIndex == secondIndex) {
+            return new BitmapNode(1 << firstIndex, new Object[]{merge(first, second, shift + BITS)});
+        }
+        return firstIndex < secondIndex
+                ? new BitmapNode((1 << firstIndex) | (1 << secondIndex), new Object[]{first, second})
+                : new BitmapNode((1 << firstIndex) | (1 << secondIndex), new Object[]{second, first});
+    }
+
+    private static final class Leaf {
+        private final int hash;
+        private final Object key;
+        private final Object value;
+
+        private Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        private boolean matches(int hash, Object key) {
+            return this.hash == hash && Objects.equals(this.key, key);
+        }
+    }
+
+    private abstract static class Node {
+        abstract Leaf find(int hash, Object key, int shift);
+
+        // returns this node if nothing changed
+        abstract Node put(Leaf leaf, int shift);
+
+        // returns this node if the key is absent
+        abstract Node remove(int hash, Object key, int shift);
+
+        // the only entry of a node that can be inlined into its parent, or null
+        abstract Leaf single();
+    }
+
+    private static final class BitmapNode extends Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        // each slot holds either a Leaf or a child Node
+        private final Object[] slots;
+
+        private BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        Leaf find(int hash, Object key, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[indexOf(bit)];
+            if (slot instanceof Leaf) {
+                return ((Leaf) slot).matches(hash, key)
+                        ? (Leaf) slot
+                        : null;
+            }
+            return ((Node) slot).find(hash, key, shift + BITS);
+        }
+
+        @Override
+        Node put(Leaf leaf, int shift) {
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int index = indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] updated = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, updated, 0, index);
+                updated[index] = leaf;
+                System.arraycopy(slots, index, updated, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, updated);
+            }
+
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Leaf) {
+                Leaf existing = (Leaf) slot;
+                if (existing.matches(leaf.hash, leaf.key)) {
+                    if (existing.value == leaf.value) {
+                        return this;
+                    }
+                    replacement = leaf;
+                } else {
+                    replacement = merge(existing, leaf, shift + BITS);
+                }
+            } else {
+                Node child = (Node) slot;
+                replacement = child.put(leaf, shift + BITS);
+                if (replacement == child) {
+                    return this;
+                }
+            }
+            return withSlot(index, replacement);
+        }
+
+        @Override
+        Node remove(int hash, Object key, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = indexOf(bit);
+            Object slot = slots[index];
+            if (slot instanceof Leaf) {
+                if (!((Leaf) slot).matches(hash, key)) {
+                    return this;
+                }
+                return withoutSlot(index, bit);
+            }
+
+            Node child = (Node) slot;
+            Node updated = child.remove(hash, key, shift + BITS);
+            if (updated == child) {
+                return this;
+            }
+            Leaf single = updated.single();
+            return withSlot(index, single != null ? single : updated);
+        }
+
+        @Override
+        Leaf single() {
+            return slots.length == 1 && slots[0] instanceof Leaf
+                    ? (Leaf) slots[0]
+                    : null;
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode withSlot(int index, Object slot) {
+            Object[] updated = slots.clone();
+            updated[index] = slot;
+            return new BitmapNode(bitmap, updated);
+        }
+
+        private BitmapNode withoutSlot(int index, int bit) {
+            if (slots.length == 1) {
+                return EMPTY;
+            }
+            Object[] updated = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, updated, 0, index);
+            System.arraycopy(slots, index + 1, updated, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, updated);
+        }
+    }
+
+    // leaves whose full hashes are equal
+    private static final class CollisionNode extends Node {
+        private final Leaf[] leaves;
+
+        private CollisionNode(Leaf[] leaves) {
+            this.leaves = leaves;
+        }
+
+        @Override
+        Leaf find(int hash, Object key, int shift) {
+            for (Leaf leaf : leaves) {
+                if (leaf.matches(hash, key)) {
+                    return leaf;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node put(Leaf leaf, int shift) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].matches(leaf.hash, leaf.key)) {
+                    if (leaves[i].value == leaf.value) {
+                        return this;
+                    }
+                    Leaf[] updated = leaves.clone();
+                    updated[i] = leaf;
+                    return new CollisionNode(updated);
+                }
+            }
+            Leaf[] updated = new Leaf[leaves.length + 1];
+            System.arraycopy(leaves, 0, updated, 0, leaves.length);
+            updated[leaves.length] = leaf;
+            return new CollisionNode(updated);
+        }
+
+        @Override
+        Node remove(int hash, Object key, int shift) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].matches(hash, key)) {
+                    Leaf[] updated = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, updated, 0, i);
+                    System.arraycopy(leaves, i + 1, updated, i, leaves.length - i - 1);
+                    return new CollisionNode(updated);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        Leaf single() {
+            return leaves.length == 1
+                    ? leaves[0]
+                    : null;
+        }
+    }
+}
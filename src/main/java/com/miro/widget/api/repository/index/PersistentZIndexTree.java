@@ -0,0 +1,522 @@
+package com.miro.widget.api.repository.index;
+
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Immutable treap of widgets ordered by z-index, then id. Updates copy the touched paths and return
+ * a new tree, so any version can be read without locking while later versions are being built.
+ * Every node keeps the size and the bounding box of its subtree: pages are found by rank,
+ * and area queries skip subtrees whose box misses the area or lies inside it entirely.
+ * The boxes only help as far as z-order follows place: where neighbours in z-order are far apart
+ * on the board, subtree boxes cover most of it and area queries and counts visit up to all n nodes,
+ * unlike the R-tree of the in-memory repository. One tree serving pages and areas keeps a snapshot
+ * a single root to publish; a persistent R-tree next to it would double the path copying of every write.
+ * Shifting a run of z-indexes is kept as a pending offset on a subtree, as in {@link ZIndexTree}.
+ */
+public final class PersistentZIndexTree {
+    private static final PersistentZIndexTree EMPTY = new PersistentZIndexTree(null);
+
+    private final Node root;
+
+    private PersistentZIndexTree(Node root) {
+        this.root = root;
+    }
+
+    public static PersistentZIndexTree empty() {
+        return EMPTY;
+    }
+
+    public long size() {
+        return size(root);
+    }
+
+    public Long lastKey() {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        long shift = 0;
+        while (node.right != null) {
+            shift += node.shift;
+            node = node.right;
+        }
+        return node.widget.getZIndex() + shift;
+    }
+
+    public Long ceilingKey(long zIndex) {
+        Long result = null;
+        long shift = 0;
+        Node node = root;
+        while (node != null) {
+            long key = node.widget.getZIndex() + shift;
+            shift += node.shift;
+            if (key >= zIndex) {
+                result = key;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    public PersistentZIndexTree insert(Widget widget) {
+        Node[] parts = split(root, widget.getZIndex(), widget.getId());
+        return new PersistentZIndexTree(merge(merge(parts[0], new Node(widget)), parts[1]));
+    }
+
+    /**
+     * Appends widgets with strictly increasing z-indexes above the last one. Their treap is shaped
+     * in one pass over the list, built bottom-up and merged in at once.
+     */
+    public PersistentZIndexTree appendAll(List<Widget> widgets) {
+        ZIndexTree.assertIsAppendable(widgets, lastKey());
+        if (widgets.isEmpty()) {
+            return this;
+        }
+        int[] priorities = new int[widgets.size()];
+        int[] lefts = new int[widgets.size()];
+        int[] rights = new int[widgets.size()];
+        Arrays.fill(lefts, -1);
+        Arrays.fill(rights, -1);
+        // right spine of the treap shaped so far
+        int[] spine = new int[widgets.size()];
+        int top = 0;
+        for (int i = 0; i < widgets.size(); i++) {
+            priorities[i] = priorityOf(widgets.get(i).getId());
+            int popped = -1;
+            while (top > 0 && priorities[spine[top - 1]] < priorities[i]) {
+                popped = spine[--top];
+            }
+            lefts[i] = popped;
+            if (top > 0) {
+                rights[spine[top - 1]] = i;
+            }
+            spine[top++] = i;
+        }
+        return new PersistentZIndexTree(merge(root, build(widgets, priorities, lefts, rights, spine[0])));
+    }
+
+    // the widget must carry its current z-index
+    public PersistentZIndexTree remove(Widget widget) {
+        Node[] parts = split(root, widget.getZIndex(), widget.getId());
+        Node[] tail = splitAt(parts[1], 1);
+        if (tail[0] == null || !tail[0].widget.getId().equals(widget.getId())) {
+            return this;
+        }
+        return new PersistentZIndexTree(merge(parts[0], tail[1]));
+    }
+
+    /**
+     * Increments z-indexes of the contiguous run of widgets starting exactly at {@code zIndex},
+     * stopping before {@code excludeIndex} if it falls into the run. Shifted widgets are passed to
+     * {@code shifted} with their new z-index.
+     */
+    public PersistentZIndexTree shiftRun(long zIndex, Long excludeIndex, Date modifiedAt, Consumer<? super Widget> shifted) {
+        long first = countLess(zIndex);
+        Run run = new Run(zIndex, excludeIndex);
+        forEach(root, 0, null, new Visit(first, Long.MAX_VALUE, run));
+        if (run.length == 0) {
+            return this;
+        }
+
+        Node[] parts = splitAt(root, first);
+        Node[] tail = splitAt(parts[1], run.length);
+        Node middle = tail[0].apply(1, modifiedAt);
+        forEach(middle, 0, null, new Visit(0, Long.MAX_VALUE, widget -> {
+            shifted.accept(widget);
+            return true;
+        }));
+        return new PersistentZIndexTree(merge(merge(parts[0], middle), tail[1]));
+    }
+
+    public long countInArea(Rectangle area) {
+        return countInArea(root, new Area(area));
+    }
+
+    public void forEach(Consumer<? super Widget> consumer) {
+        forEach(0, Long.MAX_VALUE, consumer);
+    }
+
+    public void forEach(long skip, long take, Consumer<? super Widget> consumer) {
+        if (take > 0) {
+            forEach(root, 0, null, new Visit(skip, take, consumer));
+        }
+    }
+
+    public void forEachInArea(Rectangle area, long skip, long take, Consumer<? super Widget> consumer) {
+        if (take > 0) {
+            forEachInArea(root, 0, null, new Area(area), new Visit(skip, take, consumer));
+        }
+    }
+
+    public void forEachGreaterThanOrEqualTo(long zIndex, Consumer<? super Widget> consumer) {
+        forEach(countLess(zIndex), Long.MAX_VALUE, consumer);
+    }
+
+    // widgets ordered after the given key, which does not have to be in the tree
+    public void forEachAfter(long zIndex, UUID id, long take, Consumer<? super Widget> consumer) {
+        forEach(countNotAfter(zIndex, id), take, consumer);
+    }
+
+    // the tail is split off along one path, so the area walk does not have to skip the head
+    public void forEachInAreaAfter(Rectangle area, long zIndex, UUID id, long take, Consumer<? super Widget> consumer) {
+        if (take > 0) {
+            Node tail = splitAt(root, countNotAfter(zIndex, id))[1];
+            forEachInArea(tail, 0, null, new Area(area), new Visit(0, take, consumer));
+        }
+    }
+
+    private long countNotAfter(long zIndex, UUID id) {
+        long count = 0;
+        long shift = 0;
+        Node node = root;
+        while (node != null) {
+            long key = node.widget.getZIndex() + shift;
+            shift += node.shift;
+            if (key < zIndex || (key == zIndex && node.widget.getId().compareTo(id) <= 0)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private long countLess(long zIndex) {
+        long count = 0;
+        long shift = 0;
+        Node node = root;
+        while (node != null) {
+            long key = node.widget.getZIndex() + shift;
+            shift += node.shift;
+            if (key < zIndex) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private static long countInArea(Node node, Area area) {
+        if (node == null || !area.isIntersects(node)) {
+            return 0;
+        }
+        if (area.isContains(node)) {
+            return node.size;
+        }
+        return countInArea(node.left, area)
+                + (area.isContains(node.widget) ? 1 : 0)
+                + countInArea(node.right, area);
+    }
+
+    private static boolean forEach(Node node, long shift, Date shiftedAt, Visit visit) {
+        if (node == null) {
+            return true;
+        }
+        if (visit.skip >= node.size) {
+            visit.skip -= node.size;
+            return true;
+        }
+        long childShift = shift + node.shift;
+        Date childShiftedAt = latest(shiftedAt, node.shiftedAt);
+        return forEach(node.left, childShift, childShiftedAt, visit)
+                && visit.offer(resolve(node, shift, shiftedAt))
+                && forEach(node.right, childShift, childShiftedAt, visit);
+    }
+
+    private static boolean forEachInArea(Node node, long shift, Date shiftedAt, Area area, Visit visit) {
+        if (node == null || !area.isIntersects(node)) {
+            return true;
+        }
+        if (visit.skip >= node.size && area.isContains(node)) {
+            visit.skip -= node.size;
+            return true;
+        }
+        long childShift = shift + node.shift;
+        Date childShiftedAt = latest(shiftedAt, node.shiftedAt);
+        return forEachInArea(node.left, childShift, childShiftedAt, area, visit)
+                && (!area.isContains(node.widget) || visit.offer(resolve(node, shift, shiftedAt)))
+                && forEachInArea(node.right, childShift, childShiftedAt, area, visit);
+    }
+
+    private static Node build(List<Widget> widgets, int[] priorities, int[] lefts, int[] rights, int index) {
+        if (index < 0) {
+            return null;
+        }
+        return new Node(
+                widgets.get(index),
+                priorities[index],
+                build(widgets, priorities, lefts, rights, lefts[index]),
+                build(widgets, priorities, lefts, rights, rights[index]),
+                0,
+                null
+        );
+    }
+
+    // splits into widgets ordered before the given key and the rest
+    private static Node[] split(Node node, long zIndex, UUID id) {
+        if (node == null) {
+            return new Node[2];
+        }
+        node = node.push();
+        Node[] parts;
+        int comparison = Long.compare(node.widget.getZIndex(), zIndex);
+        if (comparison < 0 || (comparison == 0 && node.widget.getId().compareTo(id) < 0)) {
+            parts = split(node.right, zIndex, id);
+            parts[0] = node.with(node.left, parts[0]);
+        } else {
+            parts = split(node.left, zIndex, id);
+            parts[1] = node.with(parts[1], node.right);
+        }
+        return parts;
+    }
+
+    // splits into the first count widgets and the rest
+    private static Node[] splitAt(Node node, long count) {
+        if (node == null) {
+            return new Node[2];
+        }
+        node = node.push();
+        Node[] parts;
+        long leftSize = size(node.left);
+        if (count <= leftSize) {
+            parts = splitAt(node.left, count);
+            parts[1] = node.with(parts[1], node.right);
+        } else {
+            parts = splitAt(node.right, count - leftSize - 1);
+            parts[0] = node.with(node.left, parts[0]);
+        }
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left = left.push();
+            return left.with(left.left, merge(left.right, right));
+        }
+        right = right.push();
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    private static Widget resolve(Node node, long shift, Date shiftedAt) {
+        Widget widget = node.widget;
+        Date modifiedAt = latest(widget.getModifiedAt(), shiftedAt);
+        if (shift == 0 && modifiedAt == widget.getModifiedAt()) {
+            return widget;
+        }
+        return new Widget(
+                widget.getId(),
+                widget.getXCoordinate(),
+                widget.getYCoordinate(),
+                widget.getZIndex() + shift,
+                widget.getWidth(),
+                widget.getHeight(),
+                modifiedAt
+        );
+    }
+
+    private static Date latest(Date first, Date second) {
+        if (first == null) {
+            return second;
+        }
+        return second != null && second.after(first)
+                ? second
+                : first;
+    }
+
+    private static long size(Node node) {
+        return node == null
+                ? 0
+                : node.size;
+    }
+
+    private static int priorityOf(UUID id) {
+        long hash = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private static final class Node {
+        // carries its own current z-index and modifiedAt
+        private final Widget widget;
+        private final int priority;
+        private final Node left;
+        private final Node right;
+        // offset and timestamp not yet pushed down to children
+        private final long shift;
+        private final Date shiftedAt;
+        private final long size;
+        private final long minX;
+        private final long minY;
+        private final long maxX;
+        private final long maxY;
+
+        private Node(Widget widget) {
+            this(widget, priorityOf(widget.getId()), null, null, 0, null);
+        }
+
+        private Node(Widget widget, int priority, Node left, Node right, long shift, Date shiftedAt) {
+            this.widget = widget;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.shift = shift;
+            this.shiftedAt = shiftedAt;
+            this.size = 1 + PersistentZIndexTree.size(left) + PersistentZIndexTree.size(right);
+
+            long minX = widget.getBottomLeftPoint().getXCoordinate();
+            long minY = widget.getBottomLeftPoint().getYCoordinate();
+            long maxX = widget.getUpperRightPoint().getXCoordinate();
+            long maxY = widget.getUpperRightPoint().getYCoordinate();
+            for (Node child : new Node[]{left, right}) {
+                if (child != null) {
+                    minX = Math.min(minX, child.minX);
+                    minY = Math.min(minY, child.minY);
+                    maxX = Math.max(maxX, child.maxX);
+                    maxY = Math.max(maxY, child.maxY);
+                }
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        private Node with(Node left, Node right) {
+            return new Node(widget, priority, left, right, shift, shiftedAt);
+        }
+
+        private Node apply(long shift, Date shiftedAt) {
+            return new Node(
+                    resolve(this, shift, shiftedAt),
+                    priority,
+                    left,
+                    right,
+                    this.shift + shift,
+                    latest(this.shiftedAt, shiftedAt)
+            );
+        }
+
+        private Node push() {
+            if (shift == 0) {
+                return this;
+            }
+            return new Node(
+                    widget,
+                    priority,
+                    left != null ? left.apply(shift, shiftedAt) : null,
+                    right != null ? right.apply(shift, shiftedAt) : null,
+                    0,
+                    null
+            );
+        }
+    }
+
+    private static final class Area {
+        private final long minX;
+        private final long minY;
+        private final long maxX;
+        private final long maxY;
+
+        private Area(Rectangle area) {
+            this.minX = area.getBottomLeftPoint().getXCoordinate();
+            this.minY = area.getBottomLeftPoint().getYCoordinate();
+            this.maxX = area.getUpperRightPoint().getXCoordinate();
+            this.maxY = area.getUpperRightPoint().getYCoordinate();
+        }
+
+        private boolean isIntersects(Node node) {
+            return node.minX <= maxX
+                    && node.minY <= maxY
+                    && node.maxX >= minX
+                    && node.maxY >= minY;
+        }
+
+        private boolean isContains(Node node) {
+            return node.minX >= minX
+                    && node.minY >= minY
+                    && node.maxX <= maxX
+                    && node.maxY <= maxY;
+        }
+
+        private boolean isContains(Widget widget) {
+            return widget.getBottomLeftPoint().getXCoordinate() >= minX
+                    && widget.getBottomLeftPoint().getYCoordinate() >= minY
+                    && widget.getUpperRightPoint().getXCoordinate() <= maxX
+                    && widget.getUpperRightPoint().getYCoordinate() <= maxY;
+        }
+    }
+
+    private interface Visitor {
+        boolean accept(Widget widget);
+    }
+
+    private static final class Visit {
+        private final Visitor visitor;
+        private long skip;
+        private long remaining;
+
+        private Visit(long skip, long take, Consumer<? super Widget> consumer) {
+            this(skip, take, widget -> {
+                consumer.accept(widget);
+                return true;
+            });
+        }
+
+        private Visit(long skip, long take, Visitor visitor) {
+            this.skip = skip;
+            this.remaining = take;
+            this.visitor = visitor;
+        }
+
+        private boolean offer(Widget widget) {
+            if (skip > 0) {
+                skip--;
+                return true;
+            }
+            return visitor.accept(widget) && --remaining > 0;
+        }
+    }
+
+    // accepts widgets while their z-indexes go on one by one from the run start
+    private static final class Run implements Visitor {
+        private final Long excludeIndex;
+        private long expected;
+        private long length;
+
+        private Run(long zIndex, Long excludeIndex) {
+            this.expected = zIndex;
+            this.excludeIndex = excludeIndex;
+        }
+
+        @Override
+        public boolean accept(Widget widget) {
+            if (widget.getZIndex() != expected
+                    || (excludeIndex != null && excludeIndex == expected)) {
+                return false;
+            }
+            expected++;
+            length++;
+            return true;
+        }
+    }
+}
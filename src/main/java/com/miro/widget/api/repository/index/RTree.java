@@ -0,0 +1,728 @@
+package com.miro.widget.api.repository.index;
+
+import com.miro.widget.api.model.entity.Rectangle;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Guttman R-tree with quadratic node splitting.
+ * Area queries return elements whose rectangle lies inside the query area, borders inclusive,
+ * or with {@link #searchIntersecting} every element sharing at least a point with it.
+ * Every node also tracks the least and the greatest element of its subtree by {@code order},
+ * so ordered queries can run best-first, stop after the requested page and skip subtrees
+ * lying entirely before a given element.
+ */
+public class RTree<T> {
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private final Function<? super T, ? extends Rectangle> rectangleOf;
+    private final Comparator<? super T> order;
+    private Node root = new Node(true);
+    private int size;
+
+    public RTree(Function<? super T, ? extends Rectangle> rectangleOf, Comparator<? super T> order) {
+        this.rectangleOf = rectangleOf;
+        this.order = order;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int nodeCount() {
+        return nodeCount(root);
+    }
+
+    public void clear() {
+        root = new Node(true);
+        size = 0;
+    }
+
+    public void insert(T element) {
+        Rectangle rectangle = rectangleOf.apply(element);
+        long minX = rectangle.getBottomLeftPoint().getXCoordinate();
+        long minY = rectangle.getBottomLeftPoint().getYCoordinate();
+        long maxX = rectangle.getUpperRightPoint().getXCoordinate();
+        long maxY = rectangle.getUpperRightPoint().getYCoordinate();
+
+        Node leaf = chooseLeaf(minX, minY, maxX, maxY);
+        leaf.addElement(element, minX, minY, maxX, maxY);
+        size++;
+        adjustTree(leaf);
+    }
+
+    /**
+     * Adds many elements at once. Unless the tree is larger than the batch, the whole tree is rebuilt
+     * bottom-up with Sort-Tile-Recursive packing: entries are sorted into vertical slices by x,
+     * every slice by y, and cut into full nodes, level by level up to the root.
+     */
+    public void load(List<? extends T> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        if (elements.size() < size) {
+            elements.forEach(this::insert);
+            return;
+        }
+        List<Object> all = new ArrayList<>(size + elements.size());
+        collectElements(root, all);
+        all.addAll(elements);
+
+        Object[] entries = all.toArray();
+        long[] bounds = new long[entries.length * 4];
+        for (int i = 0; i < entries.length; i++) {
+            Rectangle rectangle = rectangleOf.apply(RTree.<T>entryOf(entries[i]));
+            bounds[i * 4] = rectangle.getBottomLeftPoint().getXCoordinate();
+            bounds[i * 4 + 1] = rectangle.getBottomLeftPoint().getYCoordinate();
+            bounds[i * 4 + 2] = rectangle.getUpperRightPoint().getXCoordinate();
+            bounds[i * 4 + 3] = rectangle.getUpperRightPoint().getYCoordinate();
+        }
+
+        boolean leaf = true;
+        do {
+            List<Node> nodes = pack(entries, bounds, leaf);
+            entries = nodes.toArray();
+            bounds = new long[entries.length * 4];
+            for (int i = 0; i < entries.length; i++) {
+                Node node = nodes.get(i);
+                bounds[i * 4] = node.minX;
+                bounds[i * 4 + 1] = node.minY;
+                bounds[i * 4 + 2] = node.maxX;
+                bounds[i * 4 + 3] = node.maxY;
+            }
+            leaf = false;
+        } while (entries.length > 1);
+
+        root = entryOf(entries[0]);
+        root.parent = null;
+        size = all.size();
+    }
+
+    public boolean remove(T element) {
+        Rectangle rectangle = rectangleOf.apply(element);
+        long minX = rectangle.getBottomLeftPoint().getXCoordinate();
+        long minY = rectangle.getBottomLeftPoint().getYCoordinate();
+        long maxX = rectangle.getUpperRightPoint().getXCoordinate();
+        long maxY = rectangle.getUpperRightPoint().getYCoordinate();
+
+        Node leaf = findLeaf(root, element, minX, minY, maxX, maxY);
+        if (leaf == null) {
+            return false;
+        }
+        leaf.removeAt(leaf.indexOf(element));
+        size--;
+        condenseTree(leaf);
+        return true;
+    }
+
+    public long count(Rectangle area) {
+        return count(
+                root,
+                area.getBottomLeftPoint().getXCoordinate(),
+                area.getBottomLeftPoint().getYCoordinate(),
+                area.getUpperRightPoint().getXCoordinate(),
+                area.getUpperRightPoint().getYCoordinate()
+        );
+    }
+
+    public void search(Rectangle area, Consumer<? super T> consumer) {
+        search(
+                root,
+                area.getBottomLeftPoint().getXCoordinate(),
+                area.getBottomLeftPoint().getYCoordinate(),
+                area.getUpperRightPoint().getXCoordinate(),
+                area.getUpperRightPoint().getYCoordinate(),
+                consumer
+        );
+    }
+
+    public void searchIntersecting(Rectangle area, Consumer<? super T> consumer) {
+        searchIntersecting(
+                root,
+                area.getBottomLeftPoint().getXCoordinate(),
+                area.getBottomLeftPoint().getYCoordinate(),
+                area.getUpperRightPoint().getXCoordinate(),
+                area.getUpperRightPoint().getYCoordinate(),
+                consumer
+        );
+    }
+
+    public void search(Rectangle area, long skip, long take, Consumer<? super T> consumer) {
+        search(area, null, skip, take, consumer);
+    }
+
+    // elements ordered after the given one, or from the first one if it is null
+    public void searchAfter(Rectangle area, T after, long take, Consumer<? super T> consumer) {
+        search(area, after, 0, take, consumer);
+    }
+
+    private void search(Rectangle area, T after, long skip, long take, Consumer<? super T> consumer) {
+        long minX = area.getBottomLeftPoint().getXCoordinate();
+        long minY = area.getBottomLeftPoint().getYCoordinate();
+        long maxX = area.getUpperRightPoint().getXCoordinate();
+        long maxY = area.getUpperRightPoint().getYCoordinate();
+        if (take <= 0 || root.count == 0 || !root.isIntersects(minX, minY, maxX, maxY)) {
+            return;
+        }
+
+        PriorityQueue<Object> queue = new PriorityQueue<>((f, s) -> order.compare(leastOf(f), leastOf(s)));
+        queue.add(root);
+        long skipped = 0;
+        long taken = 0;
+        while (!queue.isEmpty()) {
+            Object next = queue.poll();
+            if (!(next instanceof RTree.Node)) {
+                if (skipped < skip) {
+                    skipped++;
+                } else {
+                    consumer.accept(RTree.<T>entryOf(next));
+                    if (++taken == take) {
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            Node node = entryOf(next);
+            for (int i = 0; i < node.count; i++) {
+                if ((node.leaf
+                        ? node.isEntryInside(i, minX, minY, maxX, maxY)
+                        : node.isEntryIntersects(i, minX, minY, maxX, maxY))
+                        && (after == null || order.compare(greatestOf(node.entries[i]), after) > 0)) {
+                    queue.add(node.entries[i]);
+                }
+            }
+        }
+    }
+
+    private T leastOf(Object entry) {
+        if (entry instanceof RTree.Node) {
+            return RTree.<Node>entryOf(entry).least;
+        }
+        return entryOf(entry);
+    }
+
+    private T greatestOf(Object entry) {
+        if (entry instanceof RTree.Node) {
+            return RTree.<Node>entryOf(entry).greatest;
+        }
+        return entryOf(entry);
+    }
+
+    // subtrees lying inside the area contribute their size without being descended into
+    private long count(Node node, long minX, long minY, long maxX, long maxY) {
+        if (node.isInside(minX, minY, maxX, maxY)) {
+            return node.size;
+        }
+        long result = 0;
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                if (node.isEntryInside(i, minX, minY, maxX, maxY)) {
+                    result++;
+                }
+            } else if (node.isEntryIntersects(i, minX, minY, maxX, maxY)) {
+                result += count(node.child(i), minX, minY, maxX, maxY);
+            }
+        }
+        return result;
+    }
+
+    private void search(Node node, long minX, long minY, long maxX, long maxY, Consumer<? super T> consumer) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                if (node.isEntryInside(i, minX, minY, maxX, maxY)) {
+                    consumer.accept(node.element(i));
+                }
+            } else if (node.isEntryIntersects(i, minX, minY, maxX, maxY)) {
+                search(node.child(i), minX, minY, maxX, maxY, consumer);
+            }
+        }
+    }
+
+    private void searchIntersecting(Node node, long minX, long minY, long maxX, long maxY, Consumer<? super T> consumer) {
+        for (int i = 0; i < node.count; i++) {
+            if (!node.isEntryIntersects(i, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (node.leaf) {
+                consumer.accept(node.element(i));
+            } else {
+                searchIntersecting(node.child(i), minX, minY, maxX, maxY, consumer);
+            }
+        }
+    }
+
+    private Node chooseLeaf(long minX, long minY, long maxX, long maxY) {
+        Node node = root;
+        while (!node.leaf) {
+            int bestIndex = 0;
+            double bestEnlargement = Double.MAX_VALUE;
+            double bestArea = Double.MAX_VALUE;
+            for (int i = 0; i < node.count; i++) {
+                double area = node.entryArea(i);
+                double enlargement = node.entryUnionArea(i, minX, minY, maxX, maxY) - area;
+                if (enlargement < bestEnlargement
+                        || (enlargement == bestEnlargement && area < bestArea)) {
+                    bestIndex = i;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = node.child(bestIndex);
+        }
+        return node;
+    }
+
+    private Node findLeaf(Node node, T element, long minX, long minY, long maxX, long maxY) {
+        if (node.leaf) {
+            return node.indexOf(element) >= 0
+                    ? node
+                    : null;
+        }
+        for (int i = 0; i < node.count; i++) {
+            if (node.isEntryContains(i, minX, minY, maxX, maxY)) {
+                Node leaf = findLeaf(node.child(i), element, minX, minY, maxX, maxY);
+                if (leaf != null) {
+                    return leaf;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void adjustTree(Node node) {
+        while (node != null) {
+            Node sibling = node.count > MAX_ENTRIES
+                    ? split(node)
+                    : null;
+            node.recalculateBounds();
+
+            if (sibling != null) {
+                if (node == root) {
+                    Node newRoot = new Node(false);
+                    newRoot.addChild(node);
+                    newRoot.addChild(sibling);
+                    newRoot.recalculateBounds();
+                    root = newRoot;
+                    return;
+                }
+                node.parent.addChild(sibling);
+            }
+            node = node.parent;
+        }
+    }
+
+    // underfull nodes are unlinked right away and their elements reinserted, so no empty nodes survive a removal;
+    // the orphan list is only allocated when a node actually underflows
+    private void condenseTree(Node node) {
+        List<T> orphans = null;
+        while (node != root) {
+            Node parent = node.parent;
+            if (node.count < MIN_ENTRIES) {
+                parent.removeAt(parent.indexOf(node));
+                if (orphans == null) {
+                    orphans = new ArrayList<>();
+                }
+                collectElements(node, orphans);
+            } else {
+                node.recalculateBounds();
+            }
+            node = parent;
+        }
+        root.recalculateBounds();
+
+        while (!root.leaf && root.count == 1) {
+            root = root.child(0);
+            root.parent = null;
+        }
+        if (!root.leaf && root.count == 0) {
+            root = new Node(true);
+        }
+
+        if (orphans != null) {
+            size -= orphans.size();
+            orphans.forEach(this::insert);
+        }
+    }
+
+    private int nodeCount(Node node) {
+        int result = 1;
+        if (!node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                result += nodeCount(node.child(i));
+            }
+        }
+        return result;
+    }
+
+    private void collectElements(Node node, List<? super T> result) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                result.add(node.element(i));
+            } else {
+                collectElements(node.child(i), result);
+            }
+        }
+    }
+
+    // one level of Sort-Tile-Recursive packing; node sizes within a slice differ by one at most
+    private List<Node> pack(Object[] entries, long[] bounds, boolean leaf) {
+        int nodeCount = (entries.length + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = (entries.length + sliceCount - 1) / sliceCount;
+        long[] xCenters = new long[entries.length];
+        long[] yCenters = new long[entries.length];
+        int[] sorted = new int[entries.length];
+        for (int i = 0; i < sorted.length; i++) {
+            xCenters[i] = bounds[i * 4] / 2 + bounds[i * 4 + 2] / 2;
+            yCenters[i] = bounds[i * 4 + 1] / 2 + bounds[i * 4 + 3] / 2;
+            sorted[i] = i;
+        }
+        int[] buffer = new int[sorted.length];
+        sortByKey(sorted, 0, sorted.length, xCenters, buffer);
+
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int sliceStart = 0; sliceStart < sorted.length; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(sorted.length, sliceStart + sliceSize);
+            sortByKey(sorted, sliceStart, sliceEnd, yCenters, buffer);
+            int sliceLength = sliceEnd - sliceStart;
+            int groups = (sliceLength + MAX_ENTRIES - 1) / MAX_ENTRIES;
+            int position = sliceStart;
+            for (int group = 0; group < groups; group++) {
+                int groupSize = sliceLength / groups + (group < sliceLength % groups ? 1 : 0);
+                Node node = new Node(leaf);
+                for (int end = position + groupSize; position < end; position++) {
+                    node.addEntry(entries[sorted[position]], bounds, sorted[position]);
+                }
+                node.recalculateBounds();
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    // stable merge sort of the indices in [from, to) by their keys, without boxing them
+    private static void sortByKey(int[] indices, int from, int to, long[] keys, int[] buffer) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortByKey(indices, from, middle, keys, buffer);
+        sortByKey(indices, middle, to, keys, buffer);
+        if (keys[indices[middle - 1]] <= keys[indices[middle]]) {
+            return;
+        }
+        System.arraycopy(indices, from, buffer, from, to - from);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            indices[i] = right >= to || (left < middle && keys[buffer[left]] <= keys[buffer[right]])
+                    ? buffer[left++]
+                    : buffer[right++];
+        }
+    }
+
+    private Node split(Node node) {
+        int total = node.count;
+        Object[] entries = node.entries.clone();
+        long[] bounds = new long[total * 4];
+        for (int i = 0; i < total; i++) {
+            bounds[i * 4] = node.entryMinX(i);
+            bounds[i * 4 + 1] = node.entryMinY(i);
+            bounds[i * 4 + 2] = node.entryMaxX(i);
+            bounds[i * 4 + 3] = node.entryMaxY(i);
+        }
+
+        int firstSeed = 0;
+        int secondSeed = 1;
+        double worstWaste = -Double.MAX_VALUE;
+        for (int i = 0; i < total; i++) {
+            for (int j = i + 1; j < total; j++) {
+                double waste = unionArea(bounds, i, bounds[j * 4], bounds[j * 4 + 1], bounds[j * 4 + 2], bounds[j * 4 + 3])
+                        - area(bounds, i)
+                        - area(bounds, j);
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    firstSeed = i;
+                    secondSeed = j;
+                }
+            }
+        }
+
+        node.clearEntries();
+        Node sibling = new Node(node.leaf);
+        node.addEntry(entries[firstSeed], bounds, firstSeed);
+        sibling.addEntry(entries[secondSeed], bounds, secondSeed);
+        node.recalculateBounds();
+        sibling.recalculateBounds();
+
+        boolean[] assigned = new boolean[total];
+        assigned[firstSeed] = true;
+        assigned[secondSeed] = true;
+        int remaining = total - 2;
+
+        while (remaining > 0) {
+            if (node.count + remaining == MIN_ENTRIES || sibling.count + remaining == MIN_ENTRIES) {
+                Node target = node.count + remaining == MIN_ENTRIES
+                        ? node
+                        : sibling;
+                for (int i = 0; i < total; i++) {
+                    if (!assigned[i]) {
+                        target.addEntry(entries[i], bounds, i);
+                        assigned[i] = true;
+                    }
+                }
+                break;
+            }
+
+            int next = -1;
+            double nextPreference = -1;
+            double nextNodeEnlargement = 0;
+            double nextSiblingEnlargement = 0;
+            for (int i = 0; i < total; i++) {
+                if (assigned[i]) {
+                    continue;
+                }
+                double nodeEnlargement = node.unionArea(bounds, i) - node.area();
+                double siblingEnlargement = sibling.unionArea(bounds, i) - sibling.area();
+                double preference = Math.abs(nodeEnlargement - siblingEnlargement);
+                if (preference > nextPreference) {
+                    next = i;
+                    nextPreference = preference;
+                    nextNodeEnlargement = nodeEnlargement;
+                    nextSiblingEnlargement = siblingEnlargement;
+                }
+            }
+
+            Node target;
+            if (nextNodeEnlargement != nextSiblingEnlargement) {
+                target = nextNodeEnlargement < nextSiblingEnlargement ? node : sibling;
+            } else if (node.area() != sibling.area()) {
+                target = node.area() < sibling.area() ? node : sibling;
+            } else {
+                target = node.count <= sibling.count ? node : sibling;
+            }
+            target.addEntry(entries[next], bounds, next);
+            target.recalculateBounds();
+            assigned[next] = true;
+            remaining--;
+        }
+
+        node.recalculateBounds();
+        sibling.recalculateBounds();
+        return sibling;
+    }
+
+    // entries of a leaf are elements and entries of other nodes are child nodes, cast only here
+    @SuppressWarnings("unchecked")
+    private static <E> E entryOf(Object entry) {
+        return (E) entry;
+    }
+
+    private static double area(long[] bounds, int i) {
+        return area(bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]);
+    }
+
+    private static double unionArea(long[] bounds, int i, long minX, long minY, long maxX, long maxY) {
+        return area(
+                Math.min(bounds[i * 4], minX),
+                Math.min(bounds[i * 4 + 1], minY),
+                Math.max(bounds[i * 4 + 2], maxX),
+                Math.max(bounds[i * 4 + 3], maxY)
+        );
+    }
+
+    private static double area(long minX, long minY, long maxX, long maxY) {
+        return ((double) maxX - (double) minX) * ((double) maxY - (double) minY);
+    }
+
+    private final class Node {
+        private final boolean leaf;
+        private final Object[] entries = new Object[MAX_ENTRIES + 1];
+        // bounds of leaf elements, four longs per entry; child nodes keep their own bounds
+        private final long[] elementBounds;
+        private int count;
+        private Node parent;
+
+        private long minX = Long.MAX_VALUE;
+        private long minY = Long.MAX_VALUE;
+        private long maxX = Long.MIN_VALUE;
+        private long maxY = Long.MIN_VALUE;
+        private T least;
+        private T greatest;
+        // number of elements in the subtree
+        private long size;
+
+        private Node(boolean leaf) {
+            this.leaf = leaf;
+            this.elementBounds = leaf
+                    ? new long[(MAX_ENTRIES + 1) * 4]
+                    : null;
+        }
+
+        private Node child(int i) {
+            return entryOf(entries[i]);
+        }
+
+        private T element(int i) {
+            return entryOf(entries[i]);
+        }
+
+        private void addElement(Object element, long minX, long minY, long maxX, long maxY) {
+            entries[count] = element;
+            elementBounds[count * 4] = minX;
+            elementBounds[count * 4 + 1] = minY;
+            elementBounds[count * 4 + 2] = maxX;
+            elementBounds[count * 4 + 3] = maxY;
+            count++;
+        }
+
+        private void addChild(Node child) {
+            entries[count++] = child;
+            child.parent = this;
+        }
+
+        private void addEntry(Object entry, long[] bounds, int i) {
+            if (leaf) {
+                addElement(entry, bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]);
+            } else {
+                addChild(entryOf(entry));
+            }
+        }
+
+        private void removeAt(int index) {
+            int tail = count - index - 1;
+            System.arraycopy(entries, index + 1, entries, index, tail);
+            if (leaf) {
+                System.arraycopy(elementBounds, (index + 1) * 4, elementBounds, index * 4, tail * 4);
+            }
+            entries[--count] = null;
+        }
+
+        private void clearEntries() {
+            for (int i = 0; i < count; i++) {
+                entries[i] = null;
+            }
+            count = 0;
+        }
+
+        private int indexOf(Object entry) {
+            for (int i = 0; i < count; i++) {
+                if (entries[i] == entry || (leaf && Objects.equals(entries[i], entry))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void recalculateBounds() {
+            minX = Long.MAX_VALUE;
+            minY = Long.MAX_VALUE;
+            maxX = Long.MIN_VALUE;
+            maxY = Long.MIN_VALUE;
+            least = null;
+            greatest = null;
+            size = leaf ? count : 0;
+            for (int i = 0; i < count; i++) {
+                if (!leaf) {
+                    size += child(i).size;
+                }
+                minX = Math.min(minX, entryMinX(i));
+                minY = Math.min(minY, entryMinY(i));
+                maxX = Math.max(maxX, entryMaxX(i));
+                maxY = Math.max(maxY, entryMaxY(i));
+
+                T entryLeast = leastOf(entries[i]);
+                if (i == 0 || order.compare(entryLeast, leastOf(this)) < 0) {
+                    least = entryLeast;
+                }
+                T entryGreatest = greatestOf(entries[i]);
+                if (i == 0 || order.compare(entryGreatest, greatestOf(this)) > 0) {
+                    greatest = entryGreatest;
+                }
+            }
+        }
+
+        private long entryMinX(int i) {
+            return leaf ? elementBounds[i * 4] : child(i).minX;
+        }
+
+        private long entryMinY(int i) {
+            return leaf ? elementBounds[i * 4 + 1] : child(i).minY;
+        }
+
+        private long entryMaxX(int i) {
+            return leaf ? elementBounds[i * 4 + 2] : child(i).maxX;
+        }
+
+        private long entryMaxY(int i) {
+            return leaf ? elementBounds[i * 4 + 3] : child(i).maxY;
+        }
+
+        private boolean isIntersects(long minX, long minY, long maxX, long maxY) {
+            return this.minX <= maxX
+                    && this.minY <= maxY
+                    && this.maxX >= minX
+                    && this.maxY >= minY;
+        }
+
+        private boolean isInside(long minX, long minY, long maxX, long maxY) {
+            return count > 0
+                    && this.minX >= minX
+                    && this.minY >= minY
+                    && this.maxX <= maxX
+                    && this.maxY <= maxY;
+        }
+
+        private boolean isEntryInside(int i, long minX, long minY, long maxX, long maxY) {
+            return entryMinX(i) >= minX
+                    && entryMinY(i) >= minY
+                    && entryMaxX(i) <= maxX
+                    && entryMaxY(i) <= maxY;
+        }
+
+        private boolean isEntryContains(int i, long minX, long minY, long maxX, long maxY) {
+            return entryMinX(i) <= minX
+                    && entryMinY(i) <= minY
+                    && entryMaxX(i) >= maxX
+                    && entryMaxY(i) >= maxY;
+        }
+
+        private boolean isEntryIntersects(int i, long minX, long minY, long maxX, long maxY) {
+            return entryMinX(i) <= maxX
+                    && entryMinY(i) <= maxY
+                    && entryMaxX(i) >= minX
+                    && entryMaxY(i) >= minY;
+        }
+
+        private double entryArea(int i) {
+            return RTree.area(entryMinX(i), entryMinY(i), entryMaxX(i), entryMaxY(i));
+        }
+
+        private double entryUnionArea(int i, long minX, long minY, long maxX, long maxY) {
+            return RTree.area(
+                    Math.min(entryMinX(i), minX),
+                    Math.min(entryMinY(i), minY),
+                    Math.max(entryMaxX(i), maxX),
+                    Math.max(entryMaxY(i), maxY)
+            );
+        }
+
+        private double area() {
+            return count == 0
+                    ? 0
+                    : RTree.area(minX, minY, maxX, maxY);
+        }
+
+        private double unionArea(long[] bounds, int i) {
+            return count == 0
+                    ? RTree.area(bounds, i)
+                    : RTree.unionArea(bounds, i, minX, minY, maxX, maxY);
+        }
+    }
+}
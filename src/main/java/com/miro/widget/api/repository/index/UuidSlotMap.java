@@ -0,0 +1,137 @@
+package com.miro.widget.api.repository.index;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Open-addressing hash map from UUID, kept as two primitive longs, to an int slot.
+ * Linear probing with backward-shift deletion, so no tombstones are left behind.
+ */
+public class UuidSlotMap {
+    public static final int NO_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    public UuidSlotMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // keeps the capacity the table has grown to
+    public void clear() {
+        Arrays.fill(slots, NO_SLOT);
+        size = 0;
+    }
+
+    public int get(UUID uuid) {
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return index < 0
+                ? NO_SLOT
+                : slots[index];
+    }
+
+    public int put(UUID uuid, int slot) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        int index = indexOf(most, least);
+        if (index >= 0) {
+            int previous = slots[index];
+            slots[index] = slot;
+            return previous;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        insert(most, least, slot);
+        size++;
+        return NO_SLOT;
+    }
+
+    public int remove(UUID uuid) {
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (index < 0) {
+            return NO_SLOT;
+        }
+        int removed = slots[index];
+        shiftBackFrom(index);
+        size--;
+        return removed;
+    }
+
+    private int indexOf(long most, long least) {
+        for (int index = hash(most, least) & mask; slots[index] != NO_SLOT; index = (index + 1) & mask) {
+            if (mostBits[index] == most && leastBits[index] == least) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long most, long least, int slot) {
+        int index = hash(most, least) & mask;
+        while (slots[index] != NO_SLOT) {
+            index = (index + 1) & mask;
+        }
+        mostBits[index] = most;
+        leastBits[index] = least;
+        slots[index] = slot;
+    }
+
+    private void shiftBackFrom(int hole) {
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            if (slots[index] == NO_SLOT) {
+                break;
+            }
+            int home = hash(mostBits[index], leastBits[index]) & mask;
+            boolean isBetween = hole <= index
+                    ? hole < home && home <= index
+                    : hole < home || home <= index;
+            if (!isBetween) {
+                mostBits[hole] = mostBits[index];
+                leastBits[hole] = leastBits[index];
+                slots[hole] = slots[index];
+                hole = index;
+            }
+        }
+        slots[hole] = NO_SLOT;
+    }
+
+    private void resize(int capacity) {
+        long[] oldMostBits = mostBits;
+        long[] oldLeastBits = leastBits;
+        int[] oldSlots = slots;
+        allocate(capacity);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != NO_SLOT) {
+                insert(oldMostBits[i], oldLeastBits[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, NO_SLOT);
+        mask = capacity - 1;
+    }
+
+    private static int hash(long most, long least) {
+        long hash = most * 0x9E3779B97F4A7C15L ^ least;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+}
@@ -0,0 +1,421 @@
+package com.miro.widget.api.repository.index;
+
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Implicit treap of widgets ordered by z-index. Every node keeps the size of its subtree,
+ * so positional access (page by skip/take) costs O(log n) plus the page size.
+ * Shifting a contiguous run of z-indexes is recorded as a pending offset on a subtree
+ * and pushed down lazily, so "insert at z and shift the tail" costs O(log n) too.
+ */
+public class ZIndexTree {
+    private final Random random = new Random();
+    private Entry root;
+
+    public long size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    public Long lastKey() {
+        Entry entry = root;
+        if (entry == null) {
+            return null;
+        }
+        long shift = 0;
+        while (entry.right != null) {
+            shift += entry.shift;
+            entry = entry.right;
+        }
+        return entry.zIndex + shift;
+    }
+
+    public Long ceilingKey(long zIndex) {
+        Long result = null;
+        long shift = 0;
+        Entry entry = root;
+        while (entry != null) {
+            long key = entry.zIndex + shift;
+            shift += entry.shift;
+            if (key >= zIndex) {
+                result = key;
+                entry = entry.left;
+            } else {
+                entry = entry.right;
+            }
+        }
+        return result;
+    }
+
+    // the last entry with z-index less than or equal to the given one
+    public Entry floorEntry(long zIndex) {
+        Entry result = null;
+        long shift = 0;
+        Entry entry = root;
+        while (entry != null) {
+            long key = entry.zIndex + shift;
+            shift += entry.shift;
+            if (key <= zIndex) {
+                result = entry;
+                entry = entry.right;
+            } else {
+                entry = entry.left;
+            }
+        }
+        return result;
+    }
+
+    public Entry insert(Widget widget) {
+        Entry entry = new Entry(widget, random.nextInt());
+        Entry[] parts = splitAt(root, countKeys(widget.getZIndex(), true));
+        setRoot(merge(merge(parts[0], entry), parts[1]));
+        return entry;
+    }
+
+    /**
+     * Appends widgets with strictly increasing z-indexes above the last one. The appended widgets
+     * are built into a treap in one pass over the list and merged in at once.
+     */
+    public List<Entry> appendAll(List<Widget> widgets) {
+        assertIsAppendable(widgets, lastKey());
+        List<Entry> entries = new ArrayList<>(widgets.size());
+        // right spine of the treap built so far
+        Entry[] spine = new Entry[widgets.size()];
+        int top = 0;
+        for (Widget widget : widgets) {
+            Entry entry = new Entry(widget, random.nextInt());
+            Entry popped = null;
+            while (top > 0 && spine[top - 1].priority < entry.priority) {
+                popped = spine[--top];
+            }
+            entry.setLeft(popped);
+            if (top > 0) {
+                spine[top - 1].setRight(entry);
+            }
+            spine[top++] = entry;
+            entries.add(entry);
+        }
+        if (top > 0) {
+            updateSizes(spine[0]);
+            setRoot(merge(root, spine[0]));
+        }
+        return entries;
+    }
+
+    public void remove(Entry entry) {
+        Entry[] parts = splitAt(root, rankOf(entry));
+        Entry[] tail = splitAt(parts[1], 1);
+        setRoot(merge(parts[0], tail[1]));
+        entry.parent = null;
+    }
+
+    /**
+     * Increments z-indexes of the contiguous run of widgets starting exactly at {@code zIndex},
+     * stopping before {@code excludeIndex} if it falls into the run.
+     */
+    public long shiftRun(long zIndex, Long excludeIndex, Date modifiedAt) {
+        long first = countKeys(zIndex, false);
+        long last = lastRankInRun(zIndex - first);
+        if (excludeIndex != null && excludeIndex >= zIndex) {
+            last = Math.min(last, first + (excludeIndex - zIndex) - 1);
+        }
+        if (last < first) {
+            return 0;
+        }
+
+        Entry[] parts = splitAt(root, first);
+        Entry[] tail = splitAt(parts[1], last - first + 1);
+        tail[0].apply(1, modifiedAt);
+        setRoot(merge(merge(parts[0], tail[0]), tail[1]));
+        return last - first + 1;
+    }
+
+    public Widget widgetOf(Entry entry) {
+        long shift = 0;
+        Date shiftedAt = null;
+        for (Entry parent = entry.parent; parent != null; parent = parent.parent) {
+            shift += parent.shift;
+            shiftedAt = latest(shiftedAt, parent.shiftedAt);
+        }
+        return resolve(entry, shift, shiftedAt);
+    }
+
+    public int compare(Entry first, Entry second) {
+        return first == second
+                ? 0
+                : Long.compare(rankOf(first), rankOf(second));
+    }
+
+    public void forEach(Consumer<? super Widget> consumer) {
+        forEach(0, Long.MAX_VALUE, consumer);
+    }
+
+    public void forEach(long skip, long take, Consumer<? super Widget> consumer) {
+        if (take > 0) {
+            forEach(root, 0, null, skip, new Visit(take, consumer));
+        }
+    }
+
+    public void forEachGreaterThanOrEqualTo(long zIndex, Consumer<? super Widget> consumer) {
+        forEach(countKeys(zIndex, false), Long.MAX_VALUE, consumer);
+    }
+
+    public void forEachGreaterThan(long zIndex, long take, Consumer<? super Widget> consumer) {
+        forEach(countKeys(zIndex, true), take, consumer);
+    }
+
+    public void forEachAfter(Entry entry, long take, Consumer<? super Widget> consumer) {
+        forEach(rankOf(entry) + 1, take, consumer);
+    }
+
+    private boolean forEach(Entry entry, long shift, Date shiftedAt, long skip, Visit visit) {
+        if (entry == null) {
+            return true;
+        }
+        long leftSize = size(entry.left);
+        long childShift = shift + entry.shift;
+        Date childShiftedAt = latest(shiftedAt, entry.shiftedAt);
+
+        if (skip < leftSize && !forEach(entry.left, childShift, childShiftedAt, skip, visit)) {
+            return false;
+        }
+        if (skip <= leftSize && !visit.accept(resolve(entry, shift, shiftedAt))) {
+            return false;
+        }
+        return forEach(entry.right, childShift, childShiftedAt, Math.max(0, skip - leftSize - 1), visit);
+    }
+
+    // number of widgets with z-index less than (or equal to, if inclusive) the given one
+    private long countKeys(long zIndex, boolean inclusive) {
+        long count = 0;
+        long shift = 0;
+        Entry entry = root;
+        while (entry != null) {
+            long key = entry.zIndex + shift;
+            shift += entry.shift;
+            if (key < zIndex || (inclusive && key == zIndex)) {
+                count += size(entry.left) + 1;
+                entry = entry.right;
+            } else {
+                entry = entry.left;
+            }
+        }
+        return count;
+    }
+
+    // z-index minus rank is constant along a run of consecutive z-indexes and never decreases,
+    // so the run ends at the last rank where it still equals the value at the run start
+    private long lastRankInRun(long zIndexMinusRank) {
+        long result = -1;
+        long rankBase = 0;
+        long shift = 0;
+        Entry entry = root;
+        while (entry != null) {
+            long rank = rankBase + size(entry.left);
+            long key = entry.zIndex + shift;
+            shift += entry.shift;
+            if (key - rank <= zIndexMinusRank) {
+                result = rank;
+                rankBase = rank + 1;
+                entry = entry.right;
+            } else {
+                entry = entry.left;
+            }
+        }
+        return result;
+    }
+
+    static void assertIsAppendable(List<Widget> widgets, Long lastKey) {
+        Long previous = lastKey;
+        for (Widget widget : widgets) {
+            if (previous != null && widget.getZIndex() <= previous) {
+                throw new IllegalArgumentException("Appended widgets must have increasing z-indexes above the last one");
+            }
+            previous = widget.getZIndex();
+        }
+    }
+
+    private static long updateSizes(Entry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        entry.size = 1 + updateSizes(entry.left) + updateSizes(entry.right);
+        return entry.size;
+    }
+
+    private void setRoot(Entry entry) {
+        root = entry;
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    private static long rankOf(Entry entry) {
+        long rank = size(entry.left);
+        for (Entry child = entry, parent = entry.parent; parent != null; child = parent, parent = parent.parent) {
+            if (parent.right == child) {
+                rank += size(parent.left) + 1;
+            }
+        }
+        return rank;
+    }
+
+    // splits into the first count widgets and the rest
+    private static Entry[] splitAt(Entry entry, long count) {
+        if (entry == null) {
+            return new Entry[2];
+        }
+        entry.push();
+        Entry[] parts;
+        long leftSize = size(entry.left);
+        if (count <= leftSize) {
+            parts = splitAt(entry.left, count);
+            entry.setLeft(parts[1]);
+            parts[1] = entry;
+        } else {
+            parts = splitAt(entry.right, count - leftSize - 1);
+            entry.setRight(parts[0]);
+            parts[0] = entry;
+        }
+        entry.update();
+        return parts;
+    }
+
+    private static Entry merge(Entry left, Entry right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.push();
+            left.setRight(merge(left.right, right));
+            left.update();
+            return left;
+        }
+        right.push();
+        right.setLeft(merge(left, right.left));
+        right.update();
+        return right;
+    }
+
+    private static Widget resolve(Entry entry, long shift, Date shiftedAt) {
+        long zIndex = entry.zIndex + shift;
+        Date modifiedAt = latest(entry.modifiedAt, shiftedAt);
+        Widget widget = entry.widget;
+        if (zIndex == widget.getZIndex() && modifiedAt == widget.getModifiedAt()) {
+            return widget;
+        }
+        return new Widget(
+                widget.getId(),
+                widget.getXCoordinate(),
+                widget.getYCoordinate(),
+                zIndex,
+                widget.getWidth(),
+                widget.getHeight(),
+                modifiedAt
+        );
+    }
+
+    private static Date latest(Date first, Date second) {
+        if (first == null) {
+            return second;
+        }
+        return second != null && second.after(first)
+                ? second
+                : first;
+    }
+
+    private static long size(Entry entry) {
+        return entry == null
+                ? 0
+                : entry.size;
+    }
+
+    public static final class Entry {
+        private final Widget widget;
+        private final int priority;
+        private long zIndex;
+        private Date modifiedAt;
+        // offset and timestamp not yet pushed down to children
+        private long shift;
+        private Date shiftedAt;
+        private long size = 1;
+        private Entry left;
+        private Entry right;
+        private Entry parent;
+
+        private Entry(Widget widget, int priority) {
+            this.widget = widget;
+            this.priority = priority;
+            this.zIndex = widget.getZIndex();
+            this.modifiedAt = widget.getModifiedAt();
+        }
+
+        public Rectangle getRectangle() {
+            return widget;
+        }
+
+        private void apply(long shift, Date shiftedAt) {
+            this.zIndex += shift;
+            this.modifiedAt = latest(this.modifiedAt, shiftedAt);
+            this.shift += shift;
+            this.shiftedAt = latest(this.shiftedAt, shiftedAt);
+        }
+
+        private void push() {
+            if (shift == 0) {
+                return;
+            }
+            if (left != null) {
+                left.apply(shift, shiftedAt);
+            }
+            if (right != null) {
+                right.apply(shift, shiftedAt);
+            }
+            shift = 0;
+            shiftedAt = null;
+        }
+
+        private void setLeft(Entry entry) {
+            left = entry;
+            if (entry != null) {
+                entry.parent = this;
+            }
+        }
+
+        private void setRight(Entry entry) {
+            right = entry;
+            if (entry != null) {
+                entry.parent = this;
+            }
+        }
+
+        private void update() {
+            size = 1 + ZIndexTree.size(left) + ZIndexTree.size(right);
+        }
+    }
+
+    private static final class Visit {
+        private final Consumer<? super Widget> consumer;
+        private long remaining;
+
+        private Visit(long take, Consumer<? super Widget> consumer) {
+            this.remaining = take;
+            this.consumer = consumer;
+        }
+
+        private boolean accept(Widget widget) {
+            consumer.accept(widget);
+            return --remaining > 0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.miro.widget.api.repository.journal;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.contract.WidgetRepositoryView;
+import com.miro.widget.api.model.entity.Widget;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Binary image of the whole repository: a header with the record count and the journal position
+ * the image corresponds to, followed by fixed-width widget records in z-order.
+ * An image is written to a temporary file and moved over the previous one, so a crash
+ * during a write leaves the previous image intact.
+ */
+public class WidgetCheckpoint {
+    private static final int MAGIC = 0x57494447;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int RECORD_LONGS = 8;
+    private static final int RECORD_SIZE = RECORD_LONGS * 8;
+    private static final int WRITE_BUFFER_SIZE = 1024 * RECORD_SIZE;
+
+    private final Path path;
+
+    public WidgetCheckpoint(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Packs the widgets of the repository into records ready to be written, so the caller can release
+     * its view of the repository before the file is touched. Widgets are visited one by one,
+     * nothing but the records is held for the whole board.
+     */
+    public static long[] pack(WidgetRepositoryView repository) {
+        long[] records = new long[Math.toIntExact(repository.count() * RECORD_LONGS)];
+        int[] offset = new int[1];
+        repository.forEachSortByZIndex(widget -> {
+            records[offset[0]++] = widget.getId().getMostSignificantBits();
+            records[offset[0]++] = widget.getId().getLeastSignificantBits();
+            records[offset[0]++] = widget.getXCoordinate();
+            records[offset[0]++] = widget.getYCoordinate();
+            records[offset[0]++] = widget.getZIndex();
+            records[offset[0]++] = widget.getWidth();
+            records[offset[0]++] = widget.getHeight();
+            records[offset[0]++] = widget.getModifiedAt().getTime();
+        });
+        return records;
+    }
+
+    public void write(long[] records, long journalPosition) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(records.length / RECORD_LONGS)
+                    .putLong(journalPosition);
+            for (long value : records) {
+                if (!buffer.hasRemaining()) {
+                    drain(buffer, channel);
+                }
+                buffer.putLong(value);
+            }
+            drain(buffer, channel);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the image into an empty repository.
+     * Returns the journal position to replay from, zero if there is no image yet.
+     */
+    public long load(WidgetRepository repository) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (image.remaining() < HEADER_SIZE || image.getInt() != MAGIC || image.getInt() != VERSION) {
+                throw new IllegalStateException(String.format("File `%s` is not a widget checkpoint", path));
+            }
+            long count = image.getLong();
+            long journalPosition = image.getLong();
+            if (image.remaining() != count * RECORD_SIZE) {
+                throw new IllegalStateException(String.format("Checkpoint `%s` is truncated", path));
+            }
+            List<Widget> widgets = new ArrayList<>((int) count);
+            boolean increasing = true;
+            for (long i = 0; i < count; i++) {
+                widgets.add(new Widget(
+                        new UUID(image.getLong(), image.getLong()),
+                        image.getLong(),
+                        image.getLong(),
+                        image.getLong(),
+                        image.getLong(),
+                        image.getLong(),
+                        new Date(image.getLong())
+                ));
+                increasing &= i == 0 || widgets.get((int) i - 1).getZIndex() < widgets.get((int) i).getZIndex();
+            }
+            // equal z-indexes can not be bulk loaded, records are in z-order anyway
+            if (increasing) {
+                repository.bulkLoad(widgets);
+            } else {
+                repository.saveOrUpdate(widgets);
+            }
+            return journalPosition;
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
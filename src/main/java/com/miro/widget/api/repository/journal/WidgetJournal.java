@@ -0,0 +1,311 @@
+package com.miro.widget.api.repository.journal;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.model.entity.Widget;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only binary log of repository changes, written through memory-mapped regions.
+ * Every region is a segment file of its own next to the journal path, named after the path
+ * and the region number, so positions run through all segments and the ones a checkpoint
+ * has covered can be deleted.
+ * A record is its payload length, the CRC32 of the payload and the payload itself.
+ * Records never cross a region border: a length of -1 sends the reader to the next region,
+ * a length of zero ends the log. A record with a wrong checksum is a torn write and ends the log too.
+ * Appends are only guaranteed to be on disk after {@link #sync()}.
+ */
+public class WidgetJournal implements Closeable {
+    public static final int DEFAULT_REGION_SIZE = 16 * 1024 * 1024;
+
+    private static final byte SAVE = 1;
+    private static final byte REMOVE = 2;
+    private static final byte REMOVE_ALL = 3;
+    private static final byte SHIFT = 4;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 1 + 8 * 8;
+    private static final int REGION_END = -1;
+
+    private final Path path;
+    private final int regionSize;
+    private final CRC32 checksum = new CRC32();
+    private final ByteBuffer payload = ByteBuffer.allocate(MAX_PAYLOAD_SIZE);
+    private MappedByteBuffer region;
+    private long regionStart;
+    private boolean dirty;
+
+    public WidgetJournal(Path path) throws IOException {
+        this(path, DEFAULT_REGION_SIZE);
+    }
+
+    public WidgetJournal(Path path, int regionSize) throws IOException {
+        if (regionSize < HEADER_SIZE + MAX_PAYLOAD_SIZE + 4) {
+            throw new IllegalArgumentException("Param `regionSize` is too small for a record");
+        }
+        this.path = path;
+        this.regionSize = regionSize;
+        splitSingleFile();
+    }
+
+    public static Path segmentOf(Path path, long number) {
+        return path.resolveSibling(path.getFileName() + "." + number);
+    }
+
+    public long replay(WidgetRepository repository) throws IOException {
+        return replay(repository, 0);
+    }
+
+    /**
+     * Applies every intact record starting at {@code fromPosition} to the repository and positions
+     * the journal right after the last one. Must be called once before anything is appended.
+     */
+    public long replay(WidgetRepository repository, long fromPosition) throws IOException {
+        long records = 0;
+        mapRegion(fromPosition - fromPosition % regionSize);
+        region.position((int) (fromPosition % regionSize));
+        while (true) {
+            if (region.remaining() < HEADER_SIZE) {
+                mapRegion(regionStart + regionSize);
+                continue;
+            }
+            int start = region.position();
+            int length = region.getInt();
+            if (length == REGION_END) {
+                mapRegion(regionStart + regionSize);
+                continue;
+            }
+            if (length <= 0 || length > MAX_PAYLOAD_SIZE || length > region.remaining() - 4) {
+                region.position(start);
+                break;
+            }
+            int expectedChecksum = region.getInt();
+            payload.clear();
+            region.get(payload.array(), 0, length);
+            payload.limit(length);
+            if (checksumOf(payload) != expectedChecksum) {
+                region.position(start);
+                break;
+            }
+            apply(payload, repository);
+            records++;
+        }
+        // whatever follows the last intact record is garbage from a torn write
+        region.putInt(region.position(), 0);
+        dirty = true;
+        return records;
+    }
+
+    public void appendSave(Widget widget) throws IOException {
+        payload.clear();
+        payload.put(SAVE)
+                .putLong(widget.getId().getMostSignificantBits())
+                .putLong(widget.getId().getLeastSignificantBits())
+                .putLong(widget.getXCoordinate())
+                .putLong(widget.getYCoordinate())
+                .putLong(widget.getZIndex())
+                .putLong(widget.getWidth())
+                .putLong(widget.getHeight())
+                .putLong(widget.getModifiedAt().getTime());
+        append();
+    }
+
+    public void appendRemove(UUID uuid) throws IOException {
+        payload.clear();
+        payload.put(REMOVE)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits());
+        append();
+    }
+
+    public void appendRemoveAll() throws IOException {
+        payload.clear();
+        payload.put(REMOVE_ALL);
+        append();
+    }
+
+    public void appendShift(long zIndex, Long excludeIndex, Date modifiedAt) throws IOException {
+        payload.clear();
+        payload.put(SHIFT)
+                .putLong(zIndex)
+                .put((byte) (excludeIndex != null ? 1 : 0))
+                .putLong(excludeIndex != null ? excludeIndex : 0)
+                .putLong(modifiedAt.getTime());
+        append();
+    }
+
+    // position right after the last appended record, a checkpoint resumes replay from it
+    public long position() {
+        return regionStart + region.position();
+    }
+
+    /**
+     * Ends the current region, unless nothing was appended to it, so the records after
+     * the returned position go to a segment of their own.
+     */
+    public long startSegment() throws IOException {
+        if (region.position() > 0) {
+            region.putInt(REGION_END);
+            region.force();
+            mapRegion(regionStart + regionSize);
+        }
+        return position();
+    }
+
+    /**
+     * Deletes the segments lying entirely before the position. Safe to call from another thread
+     * than the appending one, as long as the position is not ahead of the appended records.
+     * Returns the number of deleted segments.
+     */
+    public int deleteSegmentsBefore(long position) throws IOException {
+        long firstKept = position / regionSize;
+        String prefix = path.getFileName() + ".";
+        int deleted = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory(), prefix + "*")) {
+            for (Path segment : segments) {
+                String number = segment.getFileName().toString().substring(prefix.length());
+                if (isNumber(number) && Long.parseLong(number) < firstKept) {
+                    Files.delete(segment);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    public void sync() {
+        if (dirty) {
+            region.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (region != null) {
+            sync();
+        }
+    }
+
+    private void append() throws IOException {
+        if (region == null) {
+            throw new IllegalStateException("Journal must be replayed before appending");
+        }
+        payload.flip();
+        int length = payload.remaining();
+        // keep room for the end marker of the region
+        if (region.remaining() < HEADER_SIZE + length + 4) {
+            region.putInt(REGION_END);
+            region.force();
+            mapRegion(regionStart + regionSize);
+        }
+        int start = region.position();
+        region.position(start + 4);
+        region.putInt(checksumOf(payload));
+        region.put(payload);
+        region.putInt(0);
+        region.position(region.position() - 4);
+        // the length goes last, so a reader never sees a complete-looking record with a missing body
+        region.putInt(start, length);
+        dirty = true;
+    }
+
+    private int checksumOf(ByteBuffer buffer) {
+        checksum.reset();
+        checksum.update(buffer.array(), buffer.position(), buffer.remaining());
+        return (int) checksum.getValue();
+    }
+
+    // the mapping outlives the channel, so no file stays open between regions
+    private void mapRegion(long start) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentOf(path, start / regionSize), CREATE, READ, WRITE)) {
+            region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+        }
+        regionStart = start;
+    }
+
+    // a journal written as one file before segments is cut into them, positions stay the same;
+    // the file goes only once all of it was copied, so an interrupted split runs again
+    private void splitSingleFile() throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try (FileChannel single = FileChannel.open(path, READ)) {
+            for (long start = 0; start < single.size(); start += regionSize) {
+                Path segmentPath = segmentOf(path, start / regionSize);
+                try (FileChannel segment = FileChannel.open(segmentPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                    long end = Math.min(start + regionSize, single.size());
+                    for (long copied = start; copied < end; ) {
+                        copied += single.transferTo(copied, end - copied, segment);
+                    }
+                    segment.force(true);
+                }
+            }
+        }
+        Files.delete(path);
+    }
+
+    private Path directory() {
+        Path parent = path.toAbsolutePath().getParent();
+        return parent != null ? parent : Paths.get(".");
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void apply(ByteBuffer record, WidgetRepository repository) {
+        byte type = record.get();
+        switch (type) {
+            case SAVE:
+                repository.saveOrUpdate(new Widget(
+                        new UUID(record.getLong(), record.getLong()),
+                        record.getLong(),
+                        record.getLong(),
+                        record.getLong(),
+                        record.getLong(),
+                        record.getLong(),
+                        new Date(record.getLong())
+                ));
+                break;
+            case REMOVE:
+                Widget removed = repository.findById(new UUID(record.getLong(), record.getLong()));
+                if (removed != null) {
+                    repository.remove(removed);
+                }
+                break;
+            case REMOVE_ALL:
+                repository.removeAll();
+                break;
+            case SHIFT:
+                long zIndex = record.getLong();
+                boolean hasExcludeIndex = record.get() != 0;
+                long excludeIndex = record.getLong();
+                repository.shiftTailZIndexesAt(zIndex, hasExcludeIndex ? excludeIndex : null, new Date(record.getLong()));
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unknown journal record type `%d`", type));
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package com.miro.widget.api.repository.page;
+
+import com.miro.widget.api.model.entity.Rectangle;
+
+import java.nio.ByteBuffer;
+import java.util.ConcurrentModificationException;
+
+/**
+ * B+tree of fixed-width records made of longs, stored in pages of a {@link BufferPool}.
+ * Records are ordered by their first {@code keyLongs} values, equal keys keep insertion order.
+ * An entry of an inner page keeps the smallest key, the record count and, for spatial trees,
+ * the bounding box of its subtree: pages are found by rank, and area queries skip subtrees
+ * whose box misses the area or lies inside it entirely.
+ * Spatial records keep the center x, center y, width and height of a rectangle at {@code boundsOffset}.
+ * Pages are not merged when they underflow, only freed once empty.
+ * Writes must come from one thread; reads may run concurrently with each other.
+ */
+public class BPlusTree {
+    public static final int NO_BOUNDS = -1;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int LEVEL = 0;
+    private static final int COUNT = 4;
+
+    private final BufferPool pool;
+    private final int recordLongs;
+    private final int keyLongs;
+    private final int boundsOffset;
+    private final int entryLongs;
+    private final int leafCapacity;
+    private final int innerCapacity;
+    private int root;
+    private long size;
+
+    public BPlusTree(BufferPool pool, int recordLongs, int keyLongs, int boundsOffset) {
+        this.pool = pool;
+        this.recordLongs = recordLongs;
+        this.keyLongs = keyLongs;
+        this.boundsOffset = boundsOffset;
+        // key, child page, record count and the optional bounding box
+        this.entryLongs = keyLongs + 2 + (boundsOffset != NO_BOUNDS ? 4 : 0);
+        this.leafCapacity = (pool.pageSize() - HEADER_SIZE) / (recordLongs * 8);
+        this.innerCapacity = (pool.pageSize() - HEADER_SIZE) / (entryLongs * 8);
+        if (leafCapacity < 3 || innerCapacity < 3) {
+            throw new IllegalArgumentException("Param `pageSize` is too small for three records");
+        }
+        this.root = pool.allocate();
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        // the record array is reused between calls, returns false to stop
+        boolean visit(long[] record);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean find(long[] key, long[] record) {
+        int pageId = root;
+        int level = Integer.MAX_VALUE;
+        while (true) {
+            ByteBuffer page = pool.pin(pageId);
+            int pinned = pageId;
+            try {
+                level = checkLevel(page, level);
+                if (level == 0) {
+                    int position = lowerBound(page, key);
+                    if (position == count(page) || compare(page, recordOffset(position), key) != 0) {
+                        return false;
+                    }
+                    read(page, recordOffset(position), record, recordLongs);
+                    return true;
+                }
+                pageId = child(page, childSlot(page, key));
+            } finally {
+                pool.unpin(pinned, false);
+            }
+        }
+    }
+
+    public boolean last(long[] record) {
+        int pageId = root;
+        int level = Integer.MAX_VALUE;
+        while (true) {
+            ByteBuffer page = pool.pin(pageId);
+            int pinned = pageId;
+            try {
+                level = checkLevel(page, level);
+                int count = count(page);
+                if (count == 0) {
+                    return false;
+                }
+                if (level == 0) {
+                    read(page, recordOffset(count - 1), record, recordLongs);
+                    return true;
+                }
+                pageId = child(page, count - 1);
+            } finally {
+                pool.unpin(pinned, false);
+            }
+        }
+    }
+
+    public void insert(long[] record) {
+        int right = insert(root, record);
+        if (right != BufferPool.NO_PAGE) {
+            int left = root;
+            int updated = pool.allocate();
+            ByteBuffer page = pool.pin(updated);
+            try {
+                page.putInt(LEVEL, levelOf(left) + 1);
+                page.putInt(COUNT, 2);
+                write(page, entryOffset(0), summaryOf(left), entryLongs);
+                write(page, entryOffset(1), summaryOf(right), entryLongs);
+            } finally {
+                pool.unpin(updated, true);
+            }
+            root = updated;
+        }
+        size++;
+    }
+
+    public boolean delete(long[] key) {
+        if (!delete(root, key)) {
+            return false;
+        }
+        size--;
+        while (true) {
+            ByteBuffer page = pool.pin(root);
+            int level = page.getInt(LEVEL);
+            int count = count(page);
+            int only = level > 0 && count == 1 ? child(page, 0) : BufferPool.NO_PAGE;
+            if (level > 0 && count == 0) {
+                page.putInt(LEVEL, 0);
+            }
+            pool.unpin(root, level > 0 && count == 0);
+            if (only == BufferPool.NO_PAGE) {
+                return true;
+            }
+            pool.free(root);
+            root = only;
+        }
+    }
+
+    // overwrites the record with the same key
+    public boolean replace(long[] record) {
+        return replace(root, record);
+    }
+
+    public void forEach(long skip, long take, Visitor visitor) {
+        if (take > 0) {
+            forEach(root, Integer.MAX_VALUE, new Scan(skip, take, visitor));
+        }
+    }
+
+    // records with keys greater than or equal to the given one
+    public void forEachFrom(long[] key, Visitor visitor) {
+        forEachFrom(root, Integer.MAX_VALUE, key, new Scan(0, Long.MAX_VALUE, visitor));
+    }
+
+    // records with keys greater than or equal to the given one, written back as the visitor leaves them;
+    // the visitor may change keys only as long as the order of all records stays the same
+    public void updateFrom(long[] key, Visitor visitor) {
+        updateFrom(root, key, new Scan(0, Long.MAX_VALUE, visitor));
+    }
+
+    public long countInArea(Rectangle area) {
+        return countInArea(root, Integer.MAX_VALUE, area);
+    }
+
+    public void forEachInArea(Rectangle area, long skip, long take, Visitor visitor) {
+        if (take > 0) {
+            forEachInArea(root, Integer.MAX_VALUE, null, area, new Scan(skip, take, visitor));
+        }
+    }
+
+    // records inside the area with keys greater than or equal to the given one
+    public void forEachInAreaFrom(long[] key, Rectangle area, long take, Visitor visitor) {
+        if (take > 0) {
+            forEachInArea(root, Integer.MAX_VALUE, key, area, new Scan(0, take, visitor));
+        }
+    }
+
+    private int insert(int pageId, long[] record) {
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            if (page.getInt(LEVEL) == 0) {
+                return insertAt(page, upperBound(page, record), record, recordLongs, leafCapacity);
+            }
+            int slot = childSlot(page, record);
+            int child = child(page, slot);
+            int right = insert(child, record);
+            write(page, entryOffset(slot), summaryOf(child), entryLongs);
+            return right != BufferPool.NO_PAGE
+                    ? insertAt(page, slot + 1, summaryOf(right), entryLongs, innerCapacity)
+                    : BufferPool.NO_PAGE;
+        } finally {
+            pool.unpin(pageId, true);
+        }
+    }
+
+    // returns the new right sibling if the page had to be split
+    private int insertAt(ByteBuffer page, int position, long[] values, int width, int capacity) {
+        int count = count(page);
+        if (count < capacity) {
+            put(page, position, values, width);
+            return BufferPool.NO_PAGE;
+        }
+        int rightId = pool.allocate();
+        ByteBuffer right = pool.pin(rightId);
+        try {
+            int kept = count - count / 2;
+            int bytes = width * 8;
+            System.arraycopy(page.array(), HEADER_SIZE + kept * bytes,
+                    right.array(), HEADER_SIZE, (count - kept) * bytes);
+            right.putInt(LEVEL, page.getInt(LEVEL));
+            right.putInt(COUNT, count - kept);
+            page.putInt(COUNT, kept);
+            if (position <= kept) {
+                put(page, position, values, width);
+            } else {
+                put(right, position - kept, values, width);
+            }
+        } finally {
+            pool.unpin(rightId, true);
+        }
+        return rightId;
+    }
+
+    private void put(ByteBuffer page, int position, long[] values, int width) {
+        int count = count(page);
+        int bytes = width * 8;
+        int offset = HEADER_SIZE + position * bytes;
+        System.arraycopy(page.array(), offset, page.array(), offset + bytes, (count - position) * bytes);
+        write(page, offset, values, width);
+        page.putInt(COUNT, count + 1);
+    }
+
+    private boolean delete(int pageId, long[] key) {
+        ByteBuffer page = pool.pin(pageId);
+        boolean deleted = false;
+        try {
+            if (page.getInt(LEVEL) == 0) {
+                int position = lowerBound(page, key);
+                if (position < count(page) && compare(page, recordOffset(position), key) == 0) {
+                    removeAt(page, position, recordLongs);
+                    deleted = true;
+                }
+                return deleted;
+            }
+            int slot = childSlot(page, key);
+            int child = child(page, slot);
+            deleted = delete(child, key);
+            if (deleted) {
+                long[] summary = summaryOf(child);
+                if (summary[keyLongs + 1] == 0) {
+                    pool.free(child);
+                    removeAt(page, slot, entryLongs);
+                } else {
+                    write(page, entryOffset(slot), summary, entryLongs);
+                }
+            }
+            return deleted;
+        } finally {
+            pool.unpin(pageId, deleted);
+        }
+    }
+
+    private void removeAt(ByteBuffer page, int position, int width) {
+        int count = count(page);
+        int bytes = width * 8;
+        int offset = HEADER_SIZE + position * bytes;
+        System.arraycopy(page.array(), offset + bytes, page.array(), offset, (count - position - 1) * bytes);
+        page.putInt(COUNT, count - 1);
+    }
+
+    private boolean replace(int pageId, long[] record) {
+        ByteBuffer page = pool.pin(pageId);
+        boolean replaced = false;
+        try {
+            if (page.getInt(LEVEL) == 0) {
+                int position = lowerBound(page, record);
+                if (position < count(page) && compare(page, recordOffset(position), record) == 0) {
+                    write(page, recordOffset(position), record, recordLongs);
+                    replaced = true;
+                }
+                return replaced;
+            }
+            int slot = childSlot(page, record);
+            int child = child(page, slot);
+            replaced = replace(child, record);
+            if (replaced && boundsOffset != NO_BOUNDS) {
+                write(page, entryOffset(slot), summaryOf(child), entryLongs);
+            }
+            return replaced;
+        } finally {
+            pool.unpin(pageId, replaced);
+        }
+    }
+
+    private long[] summaryOf(int pageId) {
+        long[] summary = new long[entryLongs];
+        long[] bounds = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            int count = count(page);
+            boolean leaf = page.getInt(LEVEL) == 0;
+            long records = 0;
+            for (int i = 0; i < count; i++) {
+                if (leaf) {
+                    records++;
+                    if (boundsOffset != NO_BOUNDS) {
+                        int offset = recordOffset(i) + boundsOffset * 8;
+                        long halfWidth = page.getLong(offset + 16) / 2;
+                        long halfHeight = page.getLong(offset + 24) / 2;
+                        include(bounds, page.getLong(offset) - halfWidth, page.getLong(offset + 8) - halfHeight,
+                                page.getLong(offset) + halfWidth, page.getLong(offset + 8) + halfHeight);
+                    }
+                } else {
+                    int offset = entryOffset(i);
+                    records += page.getLong(offset + (keyLongs + 1) * 8);
+                    if (boundsOffset != NO_BOUNDS) {
+                        int boxOffset = offset + (keyLongs + 2) * 8;
+                        include(bounds, page.getLong(boxOffset), page.getLong(boxOffset + 8),
+                                page.getLong(boxOffset + 16), page.getLong(boxOffset + 24));
+                    }
+                }
+            }
+            if (count > 0) {
+                read(page, HEADER_SIZE, summary, keyLongs);
+            }
+            summary[keyLongs] = pageId;
+            summary[keyLongs + 1] = records;
+            if (boundsOffset != NO_BOUNDS) {
+                System.arraycopy(bounds, 0, summary, keyLongs + 2, 4);
+            }
+            return summary;
+        } finally {
+            pool.unpin(pageId, false);
+        }
+    }
+
+    private static void include(long[] bounds, long minX, long minY, long maxX, long maxY) {
+        bounds[0] = Math.min(bounds[0], minX);
+        bounds[1] = Math.min(bounds[1], minY);
+        bounds[2] = Math.max(bounds[2], maxX);
+        bounds[3] = Math.max(bounds[3], maxY);
+    }
+
+    private int levelOf(int pageId) {
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            return page.getInt(LEVEL);
+        } finally {
+            pool.unpin(pageId, false);
+        }
+    }
+
+    private void forEach(int pageId, int parentLevel, Scan scan) {
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            int level = checkLevel(page, parentLevel);
+            int count = count(page);
+            for (int i = 0; i < count && !scan.stopped; i++) {
+                if (level == 0) {
+                    scan.offer(page, recordOffset(i));
+                    continue;
+                }
+                long records = page.getLong(entryOffset(i) + (keyLongs + 1) * 8);
+                if (scan.skip >= records) {
+                    scan.skip -= records;
+                } else {
+                    forEach(child(page, i), level, scan);
+                }
+            }
+        } finally {
+            pool.unpin(pageId, false);
+        }
+    }
+
+    private void forEachFrom(int pageId, int parentLevel, long[] key, Scan scan) {
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            int level = checkLevel(page, parentLevel);
+            int count = count(page);
+            if (level == 0) {
+                for (int i = key != null ? lowerBound(page, key) : 0; i < count && !scan.stopped; i++) {
+                    scan.offer(page, recordOffset(i));
+                }
+                return;
+            }
+            int first = key != null ? childSlot(page, key) : 0;
+            for (int i = first; i < count && !scan.stopped; i++) {
+                forEachFrom(child(page, i), level, i == first ? key : null, scan);
+            }
+        } finally {
+            pool.unpin(pageId, false);
+        }
+    }
+
+    // returns whether any record of the page was visited, the smallest key of a subtree may have changed then
+    private boolean updateFrom(int pageId, long[] key, Scan scan) {
+        ByteBuffer page = pool.pin(pageId);
+        boolean updated = false;
+        try {
+            int count = count(page);
+            if (page.getInt(LEVEL) == 0) {
+                for (int i = key != null ? lowerBound(page, key) : 0; i < count && !scan.stopped; i++) {
+                    scan.offer(page, recordOffset(i));
+                    write(page, recordOffset(i), scan.record, recordLongs);
+                    updated = true;
+                }
+                return updated;
+            }
+            int first = key != null ? childSlot(page, key) : 0;
+            for (int i = first; i < count && !scan.stopped; i++) {
+                int child = child(page, i);
+                if (updateFrom(child, i == first ? key : null, scan)) {
+                    write(page, entryOffset(i), summaryOf(child), entryLongs);
+                    updated = true;
+                }
+            }
+            return updated;
+        } finally {
+            pool.unpin(pageId, updated);
+        }
+    }
+
+    private long countInArea(int pageId, int parentLevel, Rectangle area) {
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            int level = checkLevel(page, parentLevel);
+            int count = count(page);
+            long result = 0;
+            for (int i = 0; i < count; i++) {
+                if (level == 0) {
+                    if (isRecordInside(page, recordOffset(i), area)) {
+                        result++;
+                    }
+                    continue;
+                }
+                int offset = entryOffset(i);
+                if (isBoxInside(page, offset, area)) {
+                    result += page.getLong(offset + (keyLongs + 1) * 8);
+                } else if (isBoxIntersecting(page, offset, area)) {
+                    result += countInArea(child(page, i), level, area);
+                }
+            }
+            return result;
+        } finally {
+            pool.unpin(pageId, false);
+        }
+    }
+
+    // only the first child on the path to the key gets the key, everything to its right is past it
+    private void forEachInArea(int pageId, int parentLevel, long[] key, Rectangle area, Scan scan) {
+        ByteBuffer page = pool.pin(pageId);
+        try {
+            int level = checkLevel(page, parentLevel);
+            int count = count(page);
+            if (level == 0) {
+                for (int i = key != null ? lowerBound(page, key) : 0; i < count && !scan.stopped; i++) {
+                    if (isRecordInside(page, recordOffset(i), area)) {
+                        scan.offer(page, recordOffset(i));
+                    }
+                }
+                return;
+            }
+            int first = key != null ? childSlot(page, key) : 0;
+            for (int i = first; i < count && !scan.stopped; i++) {
+                int offset = entryOffset(i);
+                long records = page.getLong(offset + (keyLongs + 1) * 8);
+                if (i == first && key != null) {
+                    forEachInArea(child(page, i), level, key, area, scan);
+                } else if (isBoxInside(page, offset, area) && scan.skip >= records) {
+                    scan.skip -= records;
+                } else if (isBoxIntersecting(page, offset, area)) {
+                    forEachInArea(child(page, i), level, null, area, scan);
+                }
+            }
+        } finally {
+            pool.unpin(pageId, false);
+        }
+    }
+
+    // same arithmetic as Rectangle uses for its corner points
+    private boolean isRecordInside(ByteBuffer page, int offset, Rectangle area) {
+        int boundsStart = offset + boundsOffset * 8;
+        long x = page.getLong(boundsStart);
+        long y = page.getLong(boundsStart + 8);
+        long halfWidth = page.getLong(boundsStart + 16) / 2;
+        long halfHeight = page.getLong(boundsStart + 24) / 2;
+        return x - halfWidth >= area.getBottomLeftPoint().getXCoordinate()
+                && y - halfHeight >= area.getBottomLeftPoint().getYCoordinate()
+                && x + halfWidth <= area.getUpperRightPoint().getXCoordinate()
+                && y + halfHeight <= area.getUpperRightPoint().getYCoordinate();
+    }
+
+    private boolean isBoxInside(ByteBuffer page, int entryOffset, Rectangle area) {
+        int boxOffset = entryOffset + (keyLongs + 2) * 8;
+        return page.getLong(boxOffset) >= area.getBottomLeftPoint().getXCoordinate()
+                && page.getLong(boxOffset + 8) >= area.getBottomLeftPoint().getYCoordinate()
+                && page.getLong(boxOffset + 16) <= area.getUpperRightPoint().getXCoordinate()
+                && page.getLong(boxOffset + 24) <= area.getUpperRightPoint().getYCoordinate();
+    }
+
+    private boolean isBoxIntersecting(ByteBuffer page, int entryOffset, Rectangle area) {
+        int boxOffset = entryOffset + (keyLongs + 2) * 8;
+        return page.getLong(boxOffset) <= area.getUpperRightPoint().getXCoordinate()
+                && page.getLong(boxOffset + 8) <= area.getUpperRightPoint().getYCoordinate()
+                && page.getLong(boxOffset + 16) >= area.getBottomLeftPoint().getXCoordinate()
+                && page.getLong(boxOffset + 24) >= area.getBottomLeftPoint().getYCoordinate();
+    }
+
+    // a level that does not go down means the tree was changed under a reader
+    private static int checkLevel(ByteBuffer page, int parentLevel) {
+        int level = page.getInt(LEVEL);
+        if (level < 0 || level >= parentLevel) {
+            throw new ConcurrentModificationException();
+        }
+        return level;
+    }
+
+    private static int count(ByteBuffer page) {
+        return page.getInt(COUNT);
+    }
+
+    private int child(ByteBuffer page, int slot) {
+        return (int) page.getLong(entryOffset(slot) + keyLongs * 8);
+    }
+
+    // last entry with a key less than or equal to the given one, or the first entry
+    private int childSlot(ByteBuffer page, long[] key) {
+        int low = 1;
+        int high = count(page);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(page, entryOffset(middle), key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    // first record with a key greater than or equal to the given one
+    private int lowerBound(ByteBuffer page, long[] key) {
+        int low = 0;
+        int high = count(page);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(page, recordOffset(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // first record with a key greater than the given one
+    private int upperBound(ByteBuffer page, long[] key) {
+        int low = 0;
+        int high = count(page);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(page, recordOffset(middle), key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(ByteBuffer page, int offset, long[] key) {
+        for (int i = 0; i < keyLongs; i++) {
+            int result = Long.compare(page.getLong(offset + i * 8), key[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private int recordOffset(int position) {
+        return HEADER_SIZE + position * recordLongs * 8;
+    }
+
+    private int entryOffset(int slot) {
+        return HEADER_SIZE + slot * entryLongs * 8;
+    }
+
+    private static void read(ByteBuffer page, int offset, long[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            values[i] = page.getLong(offset + i * 8);
+        }
+    }
+
+    private static void write(ByteBuffer page, int offset, long[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            page.putLong(offset + i * 8, values[i]);
+        }
+    }
+
+    private final class Scan {
+        private final long[] record = new long[recordLongs];
+        private final Visitor visitor;
+        private long skip;
+        private long take;
+        private boolean stopped;
+
+        private Scan(long skip, long take, Visitor visitor) {
+            this.skip = skip;
+            this.take = take;
+            this.visitor = visitor;
+        }
+
+        private void offer(ByteBuffer page, int offset) {
+            if (skip > 0) {
+                skip--;
+                return;
+            }
+            read(page, offset, record, recordLongs);
+            stopped = !visitor.visit(record) || --take == 0;
+        }
+    }
+}
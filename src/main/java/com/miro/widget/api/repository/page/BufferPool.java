@@ -0,0 +1,208 @@
+package com.miro.widget.api.repository.page;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Fixed number of in-memory frames caching pages of one file. A pinned page stays in its frame
+ * until it is unpinned; unpinned pages are evicted with the CLOCK algorithm and written back if dirty.
+ * The file is scratch space: it is truncated on open and nothing is kept across restarts.
+ */
+public class BufferPool implements Closeable {
+    public static final int NO_PAGE = -1;
+
+    private static final int NO_FRAME = -1;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final ByteBuffer[] frames;
+    private final int[] pageOfFrame;
+    private final int[] pinCounts;
+    private final boolean[] dirty;
+    private final boolean[] referenced;
+    private int[] frameOfPage = new int[0];
+    private int[] freePages = new int[0];
+    private int freePageCount;
+    private int pageCount;
+    private int clockHand;
+    private long hits;
+    private long misses;
+
+    public BufferPool(Path path, int pageSize, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Param `capacity` must be greater than zero");
+        }
+        this.channel = FileChannel.open(path, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        this.pageSize = pageSize;
+        this.frames = new ByteBuffer[capacity];
+        this.pageOfFrame = new int[capacity];
+        this.pinCounts = new int[capacity];
+        this.dirty = new boolean[capacity];
+        this.referenced = new boolean[capacity];
+        for (int frame = 0; frame < capacity; frame++) {
+            frames[frame] = ByteBuffer.allocate(pageSize);
+            pageOfFrame[frame] = NO_PAGE;
+        }
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns a zero-filled page that is not in use. The page is not pinned.
+     */
+    public synchronized int allocate() {
+        int pageId;
+        if (freePageCount > 0) {
+            pageId = freePages[--freePageCount];
+        } else {
+            pageId = pageCount++;
+            if (pageId == frameOfPage.length) {
+                frameOfPage = Arrays.copyOf(frameOfPage, Math.max(16, pageId * 2));
+                Arrays.fill(frameOfPage, pageId, frameOfPage.length, NO_FRAME);
+            }
+        }
+        int frame = frameOfPage[pageId];
+        if (frame == NO_FRAME) {
+            frame = claimFrame(pageId);
+        }
+        Arrays.fill(frames[frame].array(), (byte) 0);
+        dirty[frame] = true;
+        referenced[frame] = true;
+        return pageId;
+    }
+
+    // pages are accessed with absolute gets and puts only, the buffer position is never used
+    public synchronized ByteBuffer pin(int pageId) {
+        if (pageId < 0 || pageId >= pageCount) {
+            throw new IllegalStateException(String.format("Page `%d` does not exist", pageId));
+        }
+        int frame = frameOfPage[pageId];
+        if (frame != NO_FRAME) {
+            hits++;
+        } else {
+            misses++;
+            frame = claimFrame(pageId);
+            read(pageId, frames[frame]);
+        }
+        pinCounts[frame]++;
+        referenced[frame] = true;
+        return frames[frame];
+    }
+
+    public synchronized void unpin(int pageId, boolean modified) {
+        int frame = frameOfPage[pageId];
+        pinCounts[frame]--;
+        dirty[frame] |= modified;
+    }
+
+    // the page must be unpinned
+    public synchronized void free(int pageId) {
+        int frame = frameOfPage[pageId];
+        if (frame != NO_FRAME) {
+            frameOfPage[pageId] = NO_FRAME;
+            pageOfFrame[frame] = NO_PAGE;
+            dirty[frame] = false;
+            referenced[frame] = false;
+        }
+        if (freePageCount == freePages.length) {
+            freePages = Arrays.copyOf(freePages, Math.max(16, freePageCount * 2));
+        }
+        freePages[freePageCount++] = pageId;
+    }
+
+    // every page must be unpinned
+    public synchronized void clear() throws IOException {
+        channel.truncate(0);
+        Arrays.fill(pageOfFrame, NO_PAGE);
+        Arrays.fill(pinCounts, 0);
+        Arrays.fill(dirty, false);
+        Arrays.fill(referenced, false);
+        frameOfPage = new int[0];
+        freePageCount = 0;
+        pageCount = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private int claimFrame(int pageId) {
+        int frame = findVictim();
+        int evicted = pageOfFrame[frame];
+        if (evicted != NO_PAGE) {
+            if (dirty[frame]) {
+                write(evicted, frames[frame]);
+                dirty[frame] = false;
+            }
+            frameOfPage[evicted] = NO_FRAME;
+        }
+        pageOfFrame[frame] = pageId;
+        frameOfPage[pageId] = frame;
+        return frame;
+    }
+
+    // two sweeps clear every reference bit, a third one finding nothing means every frame is pinned
+    private int findVictim() {
+        for (int step = 0; step < 3 * frames.length; step++) {
+            int frame = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+            if (pinCounts[frame] > 0) {
+                continue;
+            }
+            if (pageOfFrame[frame] == NO_PAGE || !referenced[frame]) {
+                return frame;
+            }
+            referenced[frame] = false;
+        }
+        throw new IllegalStateException("Every page in the buffer pool is pinned");
+    }
+
+    private void read(int pageId, ByteBuffer frame) {
+        ByteBuffer target = frame.duplicate();
+        target.clear();
+        try {
+            long position = (long) pageId * pageSize;
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position + target.position());
+                if (read < 0) {
+                    // never written back, the rest of the page is zeros
+                    Arrays.fill(frame.array(), target.position(), pageSize, (byte) 0);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(int pageId, ByteBuffer frame) {
+        ByteBuffer source = frame.duplicate();
+        source.clear();
+        try {
+            long position = (long) pageId * pageSize;
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
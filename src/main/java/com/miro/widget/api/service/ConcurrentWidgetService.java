@@ -1,41 +1,97 @@
 package com.miro.widget.api.service;
 
+import com.miro.widget.api.contract.WidgetListener;
 import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.contract.WidgetRepositoryView;
 import com.miro.widget.api.contract.WidgetService;
 import com.miro.widget.api.model.dto.PageableDto;
 import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetOperationDto;
+import com.miro.widget.api.model.entity.Cursor;
 import com.miro.widget.api.model.entity.Filter;
+import com.miro.widget.api.model.entity.OperationType;
 import com.miro.widget.api.model.entity.Page;
 import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Rectangle;
 import com.miro.widget.api.model.entity.Widget;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 
 @Service
-@RequiredArgsConstructor
 public class ConcurrentWidgetService implements WidgetService {
-    @NonNull
+    private static final int QUEUE_CAPACITY = 1024;
+
     private final WidgetRepository repository;
+    private final WidgetPageCache pageCache;
+    private final WidgetSubscriptions subscriptions;
+    private final ConcurrentMap<WidgetPageCache.Key, CompletableFuture<Page<WidgetDto>>> pagesInFlight = new ConcurrentHashMap<>();
     private final StampedLock lock = new StampedLock();
+    private final BlockingQueue<Mutation<?>> mutations = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    // cleared by the writer before it fails what is left in the queue
+    private volatile boolean running;
+    // tells this run of the service from other runs and instances, whose counters start over
+    private final String epoch = Long.toHexString(new SecureRandom().nextLong());
+    private volatile long version;
+    // written by the writer only
+    private long lastModifiedAt;
+    // widgets changed by the current batch, collected by the writer only while anybody listens
+    private List<WidgetSubscriptions.Change> changes;
+
+    public ConcurrentWidgetService(@NonNull WidgetRepository repository) {
+        this(repository, new WidgetPageCache(0), new WidgetSubscriptions(WidgetSubscriptions.DEFAULT_QUEUE_CAPACITY, 1));
+    }
+
+    @Autowired
+    public ConcurrentWidgetService(@NonNull WidgetRepository repository, @NonNull WidgetPageCache pageCache,
+                                   @NonNull WidgetSubscriptions subscriptions) {
+        this.repository = repository;
+        this.pageCache = pageCache;
+        this.subscriptions = subscriptions;
+        this.writer = new Thread(this::applyMutations, "widget-writer");
+        this.writer.setDaemon(true);
+    }
+
+    // started once the service is fully constructed, so the writer never sees it half built
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer.start();
+    }
+
+    @Override
+    public String version() {
+        return epoch + "-" + version;
+    }
 
     @Override
     public WidgetDto findById(UUID uuid) {
-        long stamp = lock.readLock();
-        try {
-            Widget widget = repository.findById(uuid);
-            return widget != null
-                    ? convertFromEntity(widget)
-                    : null;
-        } finally {
-            lock.unlockRead(stamp);
-        }
+        Widget widget = read(source -> source.findById(uuid));
+        return widget != null
+                ? convertFromEntity(widget)
+                : null;
+    }
+
+    @Override
+    public Date findModifiedAt(UUID uuid) {
+        Widget widget = read(source -> source.findById(uuid));
+        return widget != null
+                ? new Date(widget.getModifiedAt().getTime())
+                : null;
     }
 
     @Override
@@ -43,51 +99,92 @@ public class ConcurrentWidgetService implements WidgetService {
         assertPageableIsValid(meta);
         assertFilterIsValid(filter);
 
-        long count;
-        Set<Widget> widgets;
-        long itemsToSkip = (meta.getPage() - 1) * meta.getSize();
-        long stamp = lock.readLock();
+        // the version is taken before the query, so a cached page is never older than its version
+        WidgetPageCache.Key key = WidgetPageCache.Key.of(version, meta, filter);
+        Page<WidgetDto> cached = pageCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // identical queries at the same version wait for the first one instead of running again
+        CompletableFuture<Page<WidgetDto>> flight = new CompletableFuture<>();
+        CompletableFuture<Page<WidgetDto>> running = pagesInFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return join(running);
+        }
         try {
-            count = repository.count();
-            if (filter.isFilled()) {
-                Point bottomLeftPoint = new Point(filter.getBottomLeftX(), filter.getBottomLeftY());
-                Point upperRightPoint = new Point(filter.getUpperRightX(), filter.getUpperRightY());
-                widgets = repository.findAllInAreaSortByZIndex(bottomLeftPoint, upperRightPoint, itemsToSkip,  meta.getSize());
-            } else {
-                widgets = repository.findAllSortByZIndex(itemsToSkip,  meta.getSize());
-            }
+            long itemsToSkip = (meta.getPage() - 1) * meta.getSize();
+            Page<Widget> page = read(source -> findEntityPage(source, meta, filter, itemsToSkip));
+
+            List<WidgetDto> widgetDtoList = page.getItems().stream()
+                    .map(ConcurrentWidgetService::convertFromEntity)
+                    .collect(toList());
+
+            Page<WidgetDto> result = Page.createPageBy(page, widgetDtoList);
+            // cached before the flight is over, so a late query finds it in one place or the other
+            pageCache.put(key, result);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
         } finally {
-            lock.unlockRead(stamp);
+            pagesInFlight.remove(key, flight);
         }
+    }
 
-        if (count <= itemsToSkip) {
-            return Page.createEmptyPage(meta, count);
-        }
-        List<WidgetDto> widgetDtoList = widgets.stream()
+    @Override
+    public List<WidgetDto> findAll() {
+        Set<Widget> widgets = read(WidgetRepositoryView::findAllSortByZIndex);
+        return widgets.stream()
                 .map(ConcurrentWidgetService::convertFromEntity)
                 .collect(toList());
+    }
 
-        return Page.createPage(widgetDtoList, meta, count);
+    @Override
+    public void exportAll(Consumer<WidgetDto> consumer) {
+        WidgetRepositoryView snapshot = repository.snapshot();
+        if (snapshot != null) {
+            snapshot.forEachSortByZIndex(widget -> consumer.accept(convertFromEntity(widget)));
+            return;
+        }
+        // without a snapshot the z-ordered entities are copied under one read lock, so the export still shows
+        // one state of the board; writers wait for the copy only, the consumer and the conversion run after it
+        List<Widget> widgets = read(source -> {
+            List<Widget> result = new ArrayList<>((int) source.count());
+            source.forEachSortByZIndex(result::add);
+            return result;
+        });
+        widgets.forEach(widget -> consumer.accept(convertFromEntity(widget)));
     }
 
     @Override
-    public List<WidgetDto> findAll() {
-        Set<Widget> widgets;
-        long stamp = lock.readLock();
-        try {
-            widgets = repository.findAllSortByZIndex();
-        } finally {
-            lock.unlockRead(stamp);
+    public void subscribe(Filter viewport, WidgetListener listener) {
+        assertViewportIsValid(viewport);
+        if (listener == null) {
+            throw new NullPointerException("Param `listener` must be not null");
         }
-        return widgets.stream()
-                .map(ConcurrentWidgetService::convertFromEntity)
-                .collect(toList());
+
+        subscriptions.subscribe(new Rectangle(
+                new Point(viewport.getBottomLeftX(), viewport.getBottomLeftY()),
+                new Point(viewport.getUpperRightX(), viewport.getUpperRightY())
+        ), listener);
+    }
+
+    @Override
+    public void unsubscribe(WidgetListener listener) {
+        subscriptions.unsubscribe(listener);
     }
 
     @Override
     public WidgetDto save(WidgetDto dto) {
-        long stamp = lock.writeLock();
-        try {
+        return join(saveAsync(dto));
+    }
+
+    @Override
+    public CompletableFuture<WidgetDto> saveAsync(WidgetDto dto) {
+        return submit(() -> {
+            Date modifiedAt = nextModifiedAt();
             if (dto.getZIndex() == null) {
                 Long highestZIndex = repository.findHighestZIndex();
                 dto.setZIndex(highestZIndex != null
@@ -96,92 +193,394 @@ public class ConcurrentWidgetService implements WidgetService {
             }
 
             if (isNeedToShiftTailWidgetsAt(dto.getZIndex())) {
-                repository.saveOrUpdate(
-                        getShiftedTailWidgetsAt(dto.getZIndex()));
+                shiftTailWidgetsAt(dto.getZIndex(), null, modifiedAt);
             }
             dto.setId(UUID.randomUUID());
-            dto.setModifiedAt(Date.from(Instant.now()));
+            dto.setModifiedAt(modifiedAt);
             Widget newest = convertFromDto(dto);
             repository.saveOrUpdate(newest);
+            record(null, newest);
 
             return dto;
-        } finally {
-            lock.unlockWrite(stamp);
-        }
+        });
+    }
+
+    @Override
+    public List<WidgetDto> saveAll(List<WidgetDto> dtos) {
+        // the callers' dtos are left as they are, the saved ones come back in their order;
+        // sorted once outside the writer, widgets without a z-index go on top in their original order
+        List<WidgetDto> saved = dtos.stream()
+                .map(ConcurrentWidgetService::copyOf)
+                .collect(toList());
+        List<WidgetDto> sorted = new ArrayList<>(saved);
+        sorted.sort(Comparator.comparing(WidgetDto::getZIndex, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        // checked up front, a widget refusing its size in the middle of the batch would leave the rest unsaved
+        saved.forEach(ConcurrentWidgetService::assertSizeIsValid);
+
+        return join(submit(() -> {
+            Long highestZIndex = repository.findHighestZIndex();
+            // a batch landing above the whole board is loaded at once, any other is placed widget by widget
+            boolean isAboveBoard = sorted.isEmpty() || highestZIndex == null || sorted.get(0).getZIndex() == null
+                    || sorted.get(0).getZIndex() > highestZIndex;
+            Date modifiedAt = nextModifiedAt();
+            List<Widget> widgets = new ArrayList<>(sorted.size());
+            Long previous = null;
+            for (WidgetDto dto : sorted) {
+                long zIndex;
+                if (dto.getZIndex() != null) {
+                    zIndex = dto.getZIndex();
+                } else {
+                    // widgets placed before may have shifted the top of the board, loaded ones are not on it yet
+                    Long highest = isAboveBoard ? highestZIndex : repository.findHighestZIndex();
+                    zIndex = highest != null ? highest + 1 : 0;
+                }
+                // equal z-indexes within the batch are stacked in their original order
+                if (previous != null && zIndex <= previous) {
+                    zIndex = previous + 1;
+                }
+                previous = zIndex;
+                dto.setZIndex(zIndex);
+                dto.setId(UUID.randomUUID());
+                dto.setModifiedAt(modifiedAt);
+                Widget widget = convertFromDto(dto);
+
+                if (isAboveBoard) {
+                    widgets.add(widget);
+                } else {
+                    if (isNeedToShiftTailWidgetsAt(zIndex)) {
+                        shiftTailWidgetsAt(zIndex, null, modifiedAt);
+                    }
+                    repository.saveOrUpdate(widget);
+                    record(null, widget);
+                }
+            }
+
+            if (isAboveBoard) {
+                repository.bulkLoad(widgets);
+                widgets.forEach(widget -> record(null, widget));
+            }
+            return saved;
+        }));
     }
 
     @Override
     public WidgetDto update(UUID uuid, WidgetDto dto) {
+        return join(updateAsync(uuid, dto));
+    }
+
+    @Override
+    public CompletableFuture<WidgetDto> updateAsync(UUID uuid, WidgetDto dto) {
         assertUpdatedWidgetIsValid(dto);
 
-        long stamp = lock.writeLock();
-        try {
+        return submit(() -> {
             Widget oldest = repository.findById(uuid);
             assertWidgetWasFound(uuid, oldest);
 
+            Date modifiedAt = nextModifiedAt();
             if (isNeedToShiftTailWidgetsAt(dto.getZIndex())) {
-                repository.saveOrUpdate(
-                        getShiftedTailWidgetsAt(dto.getZIndex(), oldest.getZIndex()));
+                shiftTailWidgetsAt(dto.getZIndex(), oldest.getZIndex(), modifiedAt);
             }
             dto.setId(uuid);
-            dto.setModifiedAt(Date.from(Instant.now()));
+            dto.setModifiedAt(modifiedAt);
             Widget newest = convertFromDto(dto);
             repository.remove(oldest);
             repository.saveOrUpdate(newest);
+            record(oldest, newest);
 
             return dto;
-        } finally {
-            lock.unlockWrite(stamp);
-        }
+        });
     }
 
     @Override
     public WidgetDto delete(UUID uuid) {
-        long stamp = lock.writeLock();
-        try {
+        return join(deleteAsync(uuid));
+    }
+
+    @Override
+    public CompletableFuture<WidgetDto> deleteAsync(UUID uuid) {
+        return submit(() -> {
             Widget oldest = repository.findById(uuid);
             assertWidgetWasFound(uuid, oldest);
 
             Widget removed = repository.remove(oldest);
+            record(removed, null);
             return convertFromEntity(removed);
-        } finally {
-            lock.unlockWrite(stamp);
-        }
+        });
+    }
+
+    @Override
+    public List<WidgetDto> applyAll(List<WidgetOperationDto> operations) {
+        assertOperationsAreValid(operations);
+        // the callers' widgets are left as they are, the placed copies come back in their place
+        List<WidgetDto> widgets = operations.stream()
+                .map(operation -> operation.getType() != OperationType.DELETE
+                        ? copyOf(operation.getWidget())
+                        : null)
+                .collect(toList());
+        // widgets are placed in z-order once every updated and deleted widget is out of the way,
+        // so a batch reordering its own widgets shifts nothing; widgets without a z-index go on top
+        List<Integer> placements = IntStream.range(0, operations.size())
+                .filter(index -> widgets.get(index) != null)
+                .boxed()
+                .sorted(Comparator.comparing((Integer index) -> widgets.get(index).getZIndex(),
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(toList());
+
+        return join(submit(() -> {
+            Map<UUID, Widget> existing = new LinkedHashMap<>();
+            for (WidgetOperationDto operation : operations) {
+                if (operation.getType() != OperationType.CREATE) {
+                    Widget widget = repository.findById(operation.getId());
+                    assertWidgetWasFound(operation.getId(), widget);
+                    existing.put(widget.getId(), widget);
+                }
+            }
+
+            // nothing was changed so far; every placed widget was validated before submitting,
+            // so the batch cannot fail halfway below
+            Map<UUID, WidgetDto> removed = new HashMap<>();
+            for (Widget widget : existing.values()) {
+                removed.put(widget.getId(), convertFromEntity(repository.remove(widget)));
+            }
+            for (WidgetOperationDto operation : operations) {
+                if (operation.getType() == OperationType.DELETE) {
+                    record(existing.get(operation.getId()), null);
+                }
+            }
+            Date modifiedAt = nextModifiedAt();
+            Long previous = null;
+            for (int index : placements) {
+                WidgetOperationDto operation = operations.get(index);
+                WidgetDto dto = widgets.get(index);
+                long zIndex;
+                if (dto.getZIndex() != null) {
+                    zIndex = dto.getZIndex();
+                } else {
+                    Long highestZIndex = repository.findHighestZIndex();
+                    zIndex = highestZIndex != null ? highestZIndex + 1 : 0;
+                }
+                // equal z-indexes within the batch are stacked in the order of operations
+                if (previous != null && zIndex <= previous) {
+                    zIndex = previous + 1;
+                }
+                previous = zIndex;
+
+                if (isNeedToShiftTailWidgetsAt(zIndex)) {
+                    shiftTailWidgetsAt(zIndex, null, modifiedAt);
+                }
+                dto.setId(operation.getType() == OperationType.CREATE ? UUID.randomUUID() : operation.getId());
+                dto.setZIndex(zIndex);
+                dto.setModifiedAt(modifiedAt);
+                Widget newest = convertFromDto(dto);
+                repository.saveOrUpdate(newest);
+                record(existing.get(dto.getId()), newest);
+            }
+
+            List<WidgetDto> affected = new ArrayList<>(operations.size());
+            for (int index = 0; index < operations.size(); index++) {
+                affected.add(widgets.get(index) != null
+                        ? widgets.get(index)
+                        : removed.get(operations.get(index).getId()));
+            }
+            return affected;
+        }));
     }
 
     @Override
     public void deleteAll() {
+        join(submit(() -> {
+            if (changes != null) {
+                repository.forEachSortByZIndex(widget -> record(widget, null));
+            }
+            repository.removeAll();
+            return null;
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.interrupt();
+        writer.join();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        if (!running) {
+            throw new IllegalStateException("Widget service is not running");
+        }
+        Mutation<T> mutation = new Mutation<>(operation);
+        try {
+            mutations.put(mutation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mutation.result.completeExceptionally(e);
+        }
+        // the writer stopped meanwhile and may have drained the queue before the mutation got in
+        if (!running) {
+            failQueued();
+        }
+        return mutation.result;
+    }
+
+    // the only thread that changes the repository; it takes everything queued so far, applies it
+    // under one write lock acquisition, flushes the repository once for the whole batch
+    // and only then completes the callers' futures. An exception breaking a batch fails its futures
+    // and the writer goes on with the next one
+    private void applyMutations() {
+        List<Mutation<?>> batch = new ArrayList<>(QUEUE_CAPACITY);
+        try {
+            while (true) {
+                batch.add(mutations.take());
+                mutations.drainTo(batch, QUEUE_CAPACITY - 1);
+                try {
+                    applyBatch(batch);
+                } catch (RuntimeException e) {
+                    // futures completed already keep their outcome
+                    batch.forEach(mutation -> mutation.result.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // shut down or stopped by an error, which goes on to the thread: nobody is left to apply the rest
+            running = false;
+            batch.forEach(Mutation::fail);
+            failQueued();
+        }
+    }
+
+    private void failQueued() {
+        List<Mutation<?>> queued = new ArrayList<>();
+        mutations.drainTo(queued);
+        queued.forEach(Mutation::fail);
+    }
+
+    private void applyBatch(List<Mutation<?>> batch) {
+        changes = subscriptions.isEmpty() ? null : new ArrayList<>();
         long stamp = lock.writeLock();
         try {
-            repository.removeAll();
+            batch.forEach(Mutation::apply);
+            version++;
         } finally {
             lock.unlockWrite(stamp);
         }
+
+        RuntimeException flushFailure = flush();
+        batch.forEach(mutation -> mutation.complete(flushFailure));
+        // readers can see the changes by now; listeners only get them queued here
+        if (changes != null && !changes.isEmpty()) {
+            subscriptions.publish(changes, ConcurrentWidgetService::convertFromEntity);
+        }
     }
 
-    private Set<Widget> getShiftedTailWidgetsAt(Long zIndex) {
-        return getShiftedTailWidgetsAt(zIndex, null);
+    private void record(Widget before, Widget after) {
+        if (changes != null) {
+            changes.add(new WidgetSubscriptions.Change(before, after));
+        }
     }
 
-    private Set<Widget> getShiftedTailWidgetsAt(Long zIndex, Long excludeIndex) {
-        Set<Widget> result = new LinkedHashSet<>();
+    // the shifted widgets are read beforehand only while anybody listens; the run is found the way
+    // the repository finds it: consecutive z-indexes from the given one up to the excluded one
+    private void shiftTailWidgetsAt(long zIndex, Long excludeIndex, Date modifiedAt) {
+        if (changes != null) {
+            long expected = zIndex;
+            for (Widget widget : repository.findAllSortByZIndexGreaterThanOrEqualTo(zIndex)) {
+                if (widget.getZIndex() != expected || (excludeIndex != null && excludeIndex == expected)) {
+                    break;
+                }
+                record(widget, new Widget(widget.getId(), widget.getXCoordinate(), widget.getYCoordinate(),
+                        expected + 1, widget.getWidth(), widget.getHeight(), modifiedAt));
+                expected++;
+            }
+        }
+        repository.shiftTailZIndexesAt(zIndex, excludeIndex, modifiedAt);
+    }
 
-        NavigableSet<Widget> allWithZIndexGreaterThanOrEqualTo = repository.findAllSortByZIndexGreaterThanOrEqualTo(zIndex);
-        for (Widget widget : allWithZIndexGreaterThanOrEqualTo) {
+    // modification times never repeat, so the time a widget was last modified is also its version
+    private Date nextModifiedAt() {
+        lastModifiedAt = Math.max(System.currentTimeMillis(), lastModifiedAt + 1);
+        return new Date(lastModifiedAt);
+    }
 
-            Widget prevWidget = allWithZIndexGreaterThanOrEqualTo.lower(widget);
-            if ((prevWidget != null
-                    && isDistanceGreaterThanOne(widget.getZIndex(), prevWidget.getZIndex())
-            ) || widget.getZIndex().equals(excludeIndex)) {
+    private RuntimeException flush() {
+        try {
+            repository.flush();
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
 
-                break;
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
+        }
+    }
 
-            Widget copy = createCopy(widget);
-            copy.incrementZIndex();
-            result.add(copy);
+    // a repository snapshot needs no locking at all, otherwise readers share the read lock;
+    // the repository structures are not safe to walk while the writer changes them
+    private <T> T read(Function<WidgetRepositoryView, T> reader) {
+        WidgetRepositoryView snapshot = repository.snapshot();
+        if (snapshot != null) {
+            return reader.apply(snapshot);
+        }
+
+        long stamp = lock.readLock();
+        try {
+            return reader.apply(repository);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // with a cursor the page seeks right after it and is full unless the end was reached,
+    // which is all a next page needs to know
+    private static Page<Widget> findEntityPage(WidgetRepositoryView source, PageableDto meta, Filter filter, long itemsToSkip) {
+        Cursor cursor = meta.getCursor();
+        long count;
+        Set<Widget> widgets;
+        if (filter.isFilled()) {
+            Point bottomLeftPoint = new Point(filter.getBottomLeftX(), filter.getBottomLeftY());
+            Point upperRightPoint = new Point(filter.getUpperRightX(), filter.getUpperRightY());
+            count = source.countInArea(bottomLeftPoint, upperRightPoint);
+            if (cursor != null) {
+                widgets = source.findAllInAreaSortByZIndexAfter(bottomLeftPoint, upperRightPoint, cursor.getZIndex(), cursor.getId(), meta.getSize());
+            } else if (count <= itemsToSkip) {
+                return Page.createEmptyPage(meta, count);
+            } else {
+                widgets = source.findAllInAreaSortByZIndex(bottomLeftPoint, upperRightPoint, itemsToSkip,  meta.getSize());
+            }
+        } else {
+            count = source.count();
+            if (cursor != null) {
+                widgets = source.findAllSortByZIndexAfter(cursor.getZIndex(), cursor.getId(), meta.getSize());
+            } else if (count <= itemsToSkip) {
+                return Page.createEmptyPage(meta, count);
+            } else {
+                widgets = source.findAllSortByZIndex(itemsToSkip,  meta.getSize());
+            }
         }
 
+        boolean hasNext = cursor != null
+                ? widgets.size() == meta.getSize()
+                : itemsToSkip + widgets.size() < count;
+        Cursor nextCursor = hasNext && !widgets.isEmpty()
+                ? Cursor.after(last(widgets))
+                : null;
+        return Page.createPage(widgets, meta, count, nextCursor);
+    }
+
+    private static Widget last(Collection<Widget> widgets) {
+        Widget result = null;
+        for (Widget widget : widgets) {
+            result = widget;
+        }
         return result;
     }
 
@@ -191,10 +590,6 @@ public class ConcurrentWidgetService implements WidgetService {
                 && !isDistanceGreaterThanZero(ceilingZIndex, newZIndex);
     }
 
-    private static boolean isDistanceGreaterThanOne(long f, long s) {
-        return getDistance(f, s) > 1;
-    }
-
     private static boolean isDistanceGreaterThanZero(long f, long s) {
         return getDistance(f, s) > 0;
     }
@@ -215,6 +610,45 @@ public class ConcurrentWidgetService implements WidgetService {
         }
     }
 
+    private static void assertOperationsAreValid(List<WidgetOperationDto> operations) {
+        if (operations == null) {
+            throw new NullPointerException("Param `operations` must be not null");
+        }
+        Set<UUID> ids = new HashSet<>();
+        for (WidgetOperationDto operation : operations) {
+            if (operation.getType() == null) {
+                throw new IllegalArgumentException("Field `type` must be not null");
+            }
+            if (operation.getType() != OperationType.DELETE && operation.getWidget() == null) {
+                throw new IllegalArgumentException(String.format("Field `widget` must be not null in `%s` operation", operation.getType()));
+            }
+            if (operation.getType() != OperationType.DELETE) {
+                assertSizeIsValid(operation.getWidget());
+            }
+            if (operation.getType() == OperationType.CREATE) {
+                continue;
+            }
+            if (operation.getId() == null) {
+                throw new IllegalArgumentException(String.format("Field `id` must be not null in `%s` operation", operation.getType()));
+            }
+            if (operation.getType() == OperationType.UPDATE) {
+                assertUpdatedWidgetIsValid(operation.getWidget());
+            }
+            if (!ids.add(operation.getId())) {
+                throw new IllegalArgumentException(String.format("Widget with id `%s` is changed by more than one operation", operation.getId()));
+            }
+        }
+    }
+
+    private static void assertSizeIsValid(WidgetDto dto) {
+        if (dto.getWidth() <= 0) {
+            throw new IllegalArgumentException("Field `width` must be greater than zero");
+        }
+        if (dto.getHeight() <= 0) {
+            throw new IllegalArgumentException("Field `height` must be greater than zero");
+        }
+    }
+
     private static void assertPageableIsValid(PageableDto dto) {
         if (dto == null) {
             throw new NullPointerException("Param `pageableDto` must be not null");
@@ -243,6 +677,13 @@ public class ConcurrentWidgetService implements WidgetService {
         }
     }
 
+    private static void assertViewportIsValid(Filter viewport) {
+        assertFilterIsValid(viewport);
+        if (!viewport.isFilled()) {
+            throw new IllegalArgumentException("All fields of param `viewport` must be set");
+        }
+    }
+
     private static Widget convertFromDto(WidgetDto dto) {
         return new Widget(
                 dto.getId(),
@@ -250,7 +691,20 @@ public class ConcurrentWidgetService implements WidgetService {
                 dto.getYCoordinate(),
                 dto.getZIndex(),
                 dto.getHeight(),
-                dto.getWidth()
+                dto.getWidth(),
+                dto.getModifiedAt()
+        );
+    }
+
+    private static WidgetDto copyOf(WidgetDto dto) {
+        return new WidgetDto(
+                dto.getId(),
+                dto.getXCoordinate(),
+                dto.getYCoordinate(),
+                dto.getZIndex(),
+                dto.getWidth(),
+                dto.getHeight(),
+                dto.getModifiedAt()
         );
     }
 
@@ -266,14 +720,37 @@ public class ConcurrentWidgetService implements WidgetService {
         );
     }
 
-    private static Widget createCopy(Widget self) {
-        return new Widget(
-                self.getId(),
-                self.getXCoordinate(),
-                self.getYCoordinate(),
-                self.getZIndex(),
-                self.getWidth(),
-                self.getHeight()
-        );
+    private static final class Mutation<T> {
+        private final Supplier<T> operation;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException failure;
+
+        private Mutation(Supplier<T> operation) {
+            this.operation = operation;
+        }
+
+        private void apply() {
+            try {
+                value = operation.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        // completed futures keep their outcome
+        private void fail() {
+            result.completeExceptionally(new IllegalStateException("Widget service is shut down"));
+        }
+
+        private void complete(RuntimeException flushFailure) {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else if (flushFailure != null) {
+                result.completeExceptionally(flushFailure);
+            } else {
+                result.complete(value);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+package com.miro.widget.api.service;
+
+import com.miro.widget.api.model.dto.PageableDto;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.Cursor;
+import com.miro.widget.api.model.entity.Filter;
+import com.miro.widget.api.model.entity.Page;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pages of widgets bounded by the number of widgets they hold, evicted least recently used first.
+ * Every key carries the board version the page was read at, so a write makes all cached pages
+ * unreachable at once by bumping the version, and they age out as the least recently used ones.
+ * Reads take no lock: a hit only stamps its entry with the time of access. A put that takes
+ * the cache over capacity evicts the oldest stamped entries down to nine tenths of it in one sweep,
+ * and puts racing with the sweep may overshoot the capacity until it is done.
+ */
+@Component
+@ManagedResource(objectName = "com.miro.widget.api:type=WidgetPageCache")
+public class WidgetPageCache {
+    // rough heap taken by a cached widget with its id, date and the entry around it
+    private static final long ESTIMATED_WIDGET_BYTES = 160;
+
+    private final long capacity;
+    private final ConcurrentMap<Key, Entry> pages = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final ReentrantLock eviction = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public WidgetPageCache(@Value("${widget.service.page-cache.capacity:100000}") long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Param `capacity` must be not negative");
+        }
+        this.capacity = capacity;
+    }
+
+    Page<WidgetDto> get(Key key) {
+        if (capacity == 0) {
+            return null;
+        }
+        Entry entry = pages.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        hits.increment();
+        return entry.page;
+    }
+
+    void put(Key key, Page<WidgetDto> page) {
+        long pageWeight = weightOf(page);
+        if (pageWeight > capacity) {
+            return;
+        }
+        Entry entry = new Entry(page, pageWeight);
+        Entry replaced = pages.put(key, entry);
+        if (weight.addAndGet(pageWeight - (replaced != null ? replaced.weight : 0)) > capacity) {
+            evict();
+        }
+    }
+
+    @ManagedAttribute
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @ManagedAttribute
+    public long getSize() {
+        return pages.size();
+    }
+
+    @ManagedAttribute
+    public long getWeight() {
+        return weight.get();
+    }
+
+    @ManagedAttribute
+    public long getEstimatedBytes() {
+        return weight.get() * ESTIMATED_WIDGET_BYTES;
+    }
+
+    @ManagedAttribute
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long total = hits + misses.sum();
+        return total == 0
+                ? 0
+                : (double) hits / total;
+    }
+
+    @ManagedAttribute
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // one sweep at a time, the others go on and leave the weight to it
+    private void evict() {
+        if (!eviction.tryLock()) {
+            return;
+        }
+        try {
+            if (weight.get() <= capacity) {
+                return;
+            }
+            List<Map.Entry<Key, Entry>> entries = new ArrayList<>(pages.entrySet());
+            entries.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccess));
+            long target = capacity - capacity / 10;
+            for (Map.Entry<Key, Entry> candidate : entries) {
+                if (weight.get() <= target) {
+                    break;
+                }
+                if (pages.remove(candidate.getKey(), candidate.getValue())) {
+                    weight.addAndGet(-candidate.getValue().weight);
+                    evictions.increment();
+                }
+            }
+        } finally {
+            eviction.unlock();
+        }
+    }
+
+    // an empty page still takes an entry
+    private static long weightOf(Page<WidgetDto> page) {
+        return Math.max(1, page.getItemCount());
+    }
+
+    private static final class Entry {
+        private final Page<WidgetDto> page;
+        private final long weight;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(Page<WidgetDto> page, long weight) {
+            this.page = page;
+            this.weight = weight;
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    static final class Key {
+        private final long version;
+        private final long page;
+        private final long size;
+        private final Cursor cursor;
+        private final Long bottomLeftX;
+        private final Long bottomLeftY;
+        private final Long upperRightX;
+        private final Long upperRightY;
+
+        // a partly filled filter selects the whole board, just like an empty one
+        static Key of(long version, PageableDto meta, Filter filter) {
+            return filter.isFilled()
+                    ? new Key(version, meta.getPage(), meta.getSize(), meta.getCursor(),
+                            filter.getBottomLeftX(), filter.getBottomLeftY(), filter.getUpperRightX(), filter.getUpperRightY())
+                    : new Key(version, meta.getPage(), meta.getSize(), meta.getCursor(), null, null, null, null);
+        }
+    }
+}
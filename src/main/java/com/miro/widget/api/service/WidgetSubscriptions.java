@@ -0,0 +1,224 @@
+package com.miro.widget.api.service;
+
+import com.miro.widget.api.contract.WidgetListener;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetEventDto;
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.model.entity.WidgetEventType;
+import com.miro.widget.api.repository.index.RTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Viewports of the listeners subscribed to changes of the board. The viewports are kept in an R-tree,
+ * so a change is matched only against the viewports its old or new rectangle intersects.
+ * Every listener has a bounded queue of its own, drained on the executor one event at a time;
+ * publishing never waits for a listener, and a listener falling a whole queue behind
+ * is unsubscribed and told so.
+ */
+@Component
+public class WidgetSubscriptions {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final int queueCapacity;
+    private final Executor executor;
+    private final RTree<Subscriber> viewports = new RTree<>(subscriber -> subscriber.viewport,
+            Comparator.comparingLong(subscriber -> subscriber.sequence));
+    private final Map<WidgetListener, Subscriber> subscribers = new HashMap<>();
+    private long nextSequence;
+    // read by the writer without locking, so changes are not even collected while nobody listens
+    private volatile boolean empty = true;
+
+    @Autowired
+    public WidgetSubscriptions(@Value("${widget.service.subscriptions.queue-capacity:1024}") int queueCapacity,
+                               @Value("${widget.service.subscriptions.threads:4}") int threads) {
+        this(queueCapacity, createExecutor(threads));
+    }
+
+    public WidgetSubscriptions(int queueCapacity, Executor executor) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Param `queueCapacity` must be greater than 0");
+        }
+        this.queueCapacity = queueCapacity;
+        this.executor = executor;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    synchronized int size() {
+        return subscribers.size();
+    }
+
+    synchronized void subscribe(Rectangle viewport, WidgetListener listener) {
+        if (subscribers.containsKey(listener)) {
+            throw new IllegalArgumentException("Param `listener` is already subscribed");
+        }
+        Subscriber subscriber = new Subscriber(listener, viewport, nextSequence++);
+        subscribers.put(listener, subscriber);
+        viewports.insert(subscriber);
+        empty = false;
+    }
+
+    synchronized void unsubscribe(WidgetListener listener) {
+        Subscriber subscriber = subscribers.get(listener);
+        if (subscriber != null) {
+            subscriber.closed = true;
+            remove(subscriber);
+        }
+    }
+
+    // matches the changes of one batch in their order, the listeners get them later on the executor
+    synchronized void publish(List<Change> changes, Function<Widget, WidgetDto> converter) {
+        List<Subscriber> overflowed = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.before != null) {
+                viewports.searchIntersecting(change.before, subscriber -> {
+                    WidgetEventType type = change.after != null && isIntersects(change.after, subscriber.viewport)
+                            ? WidgetEventType.UPDATE
+                            : WidgetEventType.LEAVE;
+                    offer(subscriber, change.eventOf(type, converter), overflowed);
+                });
+            }
+            if (change.after != null) {
+                viewports.searchIntersecting(change.after, subscriber -> {
+                    if (change.before == null || !isIntersects(change.before, subscriber.viewport)) {
+                        offer(subscriber, change.eventOf(WidgetEventType.ENTER, converter), overflowed);
+                    }
+                });
+            }
+        }
+        // the tree is not changed while it is searched
+        overflowed.forEach(this::remove);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    private static void offer(Subscriber subscriber, WidgetEventDto event, List<Subscriber> overflowed) {
+        if (subscriber.overflowed) {
+            return;
+        }
+        if (!subscriber.events.offer(event)) {
+            subscriber.overflowed = true;
+            subscriber.events.clear();
+            overflowed.add(subscriber);
+        }
+        subscriber.schedule();
+    }
+
+    // a listener subscribed again meanwhile keeps its new subscription
+    private synchronized void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber.listener, subscriber)) {
+            viewports.remove(subscriber);
+            empty = subscribers.isEmpty();
+        }
+    }
+
+    // borders inclusive, just like the R-tree
+    private static boolean isIntersects(Rectangle rectangle, Rectangle viewport) {
+        return rectangle.getBottomLeftPoint().getXCoordinate() <= viewport.getUpperRightPoint().getXCoordinate()
+                && rectangle.getBottomLeftPoint().getYCoordinate() <= viewport.getUpperRightPoint().getYCoordinate()
+                && rectangle.getUpperRightPoint().getXCoordinate() >= viewport.getBottomLeftPoint().getXCoordinate()
+                && rectangle.getUpperRightPoint().getYCoordinate() >= viewport.getBottomLeftPoint().getYCoordinate();
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger number = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "widget-events-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A widget before and after a change, either of them null if the widget was created or deleted.
+     * Its events are created once, however many listeners get them.
+     */
+    static final class Change {
+        private final Widget before;
+        private final Widget after;
+        private final WidgetEventDto[] events = new WidgetEventDto[WidgetEventType.values().length];
+
+        Change(Widget before, Widget after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        private WidgetEventDto eventOf(WidgetEventType type, Function<Widget, WidgetDto> converter) {
+            WidgetEventDto event = events[type.ordinal()];
+            if (event == null) {
+                event = new WidgetEventDto(type, converter.apply(type == WidgetEventType.LEAVE ? before : after));
+                events[type.ordinal()] = event;
+            }
+            return event;
+        }
+    }
+
+    // runs on the executor whenever it has events, never more than once at a time
+    private final class Subscriber implements Runnable {
+        private final WidgetListener listener;
+        private final Rectangle viewport;
+        private final long sequence;
+        private final BlockingQueue<WidgetEventDto> events = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+
+        private Subscriber(WidgetListener listener, Rectangle viewport, long sequence) {
+            this.listener = listener;
+            this.viewport = viewport;
+            this.sequence = sequence;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // shut down, nobody is going to get the events anyway
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                WidgetEventDto event;
+                while (!closed && (event = events.poll()) != null) {
+                    listener.onEvent(event);
+                }
+                if (overflowed && !closed) {
+                    closed = true;
+                    listener.onOverflow();
+                }
+            } catch (IOException | RuntimeException e) {
+                closed = true;
+                remove(this);
+            } finally {
+                scheduled.set(false);
+            }
+            // an event offered after the queue was found empty, but before the flag was cleared
+            if (!closed && (!events.isEmpty() || overflowed)) {
+                schedule();
+            }
+        }
+    }
+}
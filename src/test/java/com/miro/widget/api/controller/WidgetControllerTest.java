@@ -1,30 +1,53 @@
 package com.miro.widget.api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.miro.widget.api.converter.WidgetPageBinaryHttpMessageConverter;
+import com.miro.widget.api.contract.WidgetListener;
 import com.miro.widget.api.contract.WidgetService;
 import com.miro.widget.api.model.dto.PageableDto;
 import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetEventDto;
+import com.miro.widget.api.model.entity.Cursor;
 import com.miro.widget.api.model.entity.Page;
+import com.miro.widget.api.model.entity.WidgetEventType;
+import com.miro.widget.api.model.response.WidgetLink;
+import com.miro.widget.api.model.response.WidgetResponse;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -65,10 +88,216 @@ public class WidgetControllerTest {
                 .andExpect(jsonPath("$.content[0].modifiedAt", is(simpleDateFormat.format(widget.getModifiedAt()))));
     }
 
+    @Test
+    public void getAll_WhenViewIsFull_WriteWidgetsLikeWidgetResponseWithSelfLink() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        doReturn(Page.createPage(Collections.singleton(widget), new PageableDto(1, 1), 1, null))
+                .when(widgetService).findPage(any(), any());
+        WidgetResponse response = new WidgetResponse(widget.getId(), widget.getXCoordinate(), widget.getYCoordinate(),
+                widget.getZIndex(), widget.getWidth(), widget.getHeight(), widget.getModifiedAt());
+        response.add(WidgetLink.widgetLink("http://localhost/api/widgets/{id}", true));
+        JsonNode expected = mapper.readTree(mapper.writeValueAsString(response));
+
+        String body = mockMvc.perform(get("/api/widgets"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode written = mapper.readTree(body).get("content").get(0);
+
+        assertEquals(expected, written);
+        assertEquals(namesOf(expected), namesOf(written));
+    }
+
+    @Test
+    public void getAll_WhenPageIsInTheMiddle_ReturnPageLinksAndItemLinks() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        Cursor next = new Cursor(widget.getZIndex(), widget.getId());
+        Page<WidgetDto> page = Page.createPage(Collections.singleton(widget), new PageableDto(2, 1), 3, next);
+        doReturn(page).when(widgetService).findPage(any(), any());
+
+        mockMvc.perform(get("/api/widgets?page=2&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[0].rel", is("self")))
+                .andExpect(jsonPath("$.links[0].href", is("http://localhost/api/widgets?page=2&size=1")))
+                .andExpect(jsonPath("$.links[1].rel", is("create-widget")))
+                .andExpect(jsonPath("$.links[1].href", is("http://localhost/api/widgets")))
+                .andExpect(jsonPath("$.links[1].type", is("POST")))
+                .andExpect(jsonPath("$.links[2].rel", is("prev")))
+                .andExpect(jsonPath("$.links[2].href", is("http://localhost/api/widgets?page=1&size=1")))
+                .andExpect(jsonPath("$.links[3].rel", is("next")))
+                .andExpect(jsonPath("$.links[3].href", is("http://localhost/api/widgets?page=3&size=1&cursor=" + next.encode())))
+                .andExpect(jsonPath("$.content[0].links[0].href", is("http://localhost/api/widgets/{id}")));
+    }
+
+    @Test
+    public void getAll_WhenAcceptIsCbor_ReturnCborPage() throws Exception {
+        Page<WidgetDto> page = createPage();
+        doReturn(page).when(widgetService).findPage(any(), any());
+        WidgetDto widget = page.getItems().iterator().next();
+
+        MvcResult result = mockMvc.perform(get("/api/widgets")
+                .accept(MediaType.parseMediaType("application/cbor")))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/cbor"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+
+        JsonNode body = new ObjectMapper(new CBORFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertEquals(widget.getId().toString(), body.at("/content/0/id").asText());
+        assertEquals(5L, body.at("/content/0/zIndex").asLong());
+    }
+
+    @Test
+    public void getAll_WhenAcceptIsAnything_ReturnJson() throws Exception {
+        doReturn(createPage()).when(widgetService).findPage(any(), any());
+
+        mockMvc.perform(get("/api/widgets")
+                .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8));
+    }
+
+    @Test
+    public void getAll_WhenAcceptIsWidgetPage_ReturnFixedWidthRecords() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        Cursor next = new Cursor(widget.getZIndex(), widget.getId());
+        Page<WidgetDto> page = Page.createPage(Collections.singleton(widget), new PageableDto(1, 1), 3, next);
+        doReturn(page).when(widgetService).findPage(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/api/widgets?page=1&size=1")
+                .accept(WidgetPageBinaryHttpMessageConverter.APPLICATION_WIDGET_PAGE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WidgetPageBinaryHttpMessageConverter.APPLICATION_WIDGET_PAGE))
+                .andReturn();
+
+        assertTrue(result.getResponse().getHeaders(HttpHeaders.LINK).contains(
+                "<http://localhost/api/widgets?page=2&size=1&cursor=" + next.encode() + ">;rel=\"next\""));
+
+        ByteBuffer body = ByteBuffer.wrap(result.getResponse().getContentAsByteArray());
+        assertEquals(4 * 8 + 8 * 8, body.remaining());
+        assertEquals(1, body.getLong());
+        assertEquals(1, body.getLong());
+        assertEquals(3, body.getLong());
+        assertEquals(1, body.getLong());
+        assertEquals(widget.getId(), new UUID(body.getLong(), body.getLong()));
+        assertEquals(40, body.getLong());
+        assertEquals(50, body.getLong());
+        assertEquals(5, body.getLong());
+        assertEquals(100, body.getLong());
+        assertEquals(50, body.getLong());
+        assertEquals(widget.getModifiedAt().getTime(), body.getLong());
+    }
+
+    @Test
+    public void getAll_WhenFieldsAreSelectedWithoutLinks_ReturnOnlySelectedFieldsAndNextCursor() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        Cursor next = new Cursor(widget.getZIndex(), widget.getId());
+        Page<WidgetDto> page = Page.createPage(Collections.singleton(widget), new PageableDto(1, 1), 3, next);
+        doReturn(page).when(widgetService).findPage(any(), any());
+
+        mockMvc.perform(get("/api/widgets?page=1&size=1&fields=id,zIndex&links=none"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.links").doesNotExist())
+                .andExpect(jsonPath("$.content[0].*", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$.content[0].id", is(widget.getId().toString())))
+                .andExpect(jsonPath("$.content[0].zIndex", Matchers.equalTo(5)))
+                .andExpect(jsonPath("$.page.totalElements", Matchers.equalTo(3)))
+                .andExpect(jsonPath("$.page.nextCursor", is(next.encode())));
+    }
+
+    @Test
+    public void getAll_WhenFieldsAreSelected_KeepFieldsInPageLinks() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        Cursor next = new Cursor(widget.getZIndex(), widget.getId());
+        Page<WidgetDto> page = Page.createPage(Collections.singleton(widget), new PageableDto(1, 1), 3, next);
+        doReturn(page).when(widgetService).findPage(any(), any());
+
+        mockMvc.perform(get("/api/widgets?page=1&size=1&fields=zIndex,id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[2].href", is("http://localhost/api/widgets?page=2&size=1&cursor=" + next.encode() + "&fields=id,zIndex")))
+                .andExpect(jsonPath("$.content[0].*", Matchers.hasSize(3)))
+                .andExpect(jsonPath("$.content[0].links[0].rel", is("self")));
+    }
+
+    @Test
+    public void getAll_WhenAllFieldsAndLinksAreAskedFor_ReturnDefaultResponse() throws Exception {
+        doReturn(createPage()).when(widgetService).findPage(any(), any());
+
+        String byDefault = mockMvc.perform(get("/api/widgets"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String withAllLinks = mockMvc.perform(get("/api/widgets?links=all"
+                + "&fields=id,xCoordinate,yCoordinate,zIndex,width,height,modifiedAt"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(byDefault, withAllLinks);
+    }
+
+    @Test
+    public void getAll_WhenETagMatchesBoardVersion_ReturnNotModifiedWithoutQuery() throws Exception {
+        doReturn("5eed-42").when(widgetService).version();
+
+        mockMvc.perform(get("/api/widgets")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"5eed-42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5eed-42\""));
+        verify(widgetService, never()).findPage(any(), any());
+    }
+
+    @Test
+    public void getAll_WhenPageHasNextCursor_ReturnNextLinkWithCursor() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        Cursor next = new Cursor(widget.getZIndex(), widget.getId());
+        Page<WidgetDto> page = Page.createPage(Collections.singleton(widget), new PageableDto(1, 1), 3, next);
+        doReturn(page).when(widgetService).findPage(any(), any());
+
+        mockMvc.perform(get("/api/widgets").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[?(@.rel == 'next')].href",
+                        Matchers.contains(Matchers.containsString("cursor=" + next.encode()))));
+    }
+
+    @Test
+    public void getAll_WhenCursorIsSet_PassDecodedCursorToService() throws Exception {
+        Cursor cursor = new Cursor(7L, UUID.randomUUID());
+        doReturn(createPage()).when(widgetService).findPage(any(), any());
+
+        mockMvc.perform(get("/api/widgets").param("cursor", cursor.encode()))
+                .andExpect(status().isOk());
+
+        verify(widgetService).findPage(argThat(meta -> cursor.equals(meta.getCursor())), any());
+    }
+
+    @Test
+    public void exportAll_WhenWidgetsWereSaved_ReturnOneJsonLinePerWidget() throws Exception {
+        WidgetDto first = createWidgetDto();
+        WidgetDto second = createWidgetDto();
+        doAnswer(invocation -> {
+            Consumer<WidgetDto> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(widgetService).exportAll(any());
+
+        MvcResult result = mockMvc.perform(get("/api/widgets/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals(first.getId().toString(), mapper.readTree(lines[0]).get("id").asText());
+        assertEquals(5, mapper.readTree(lines[1]).get("zIndex").asInt());
+    }
+
     @Test
     public void getOne_WhenWidgetWasFound_ReturnFilledResponse() throws Exception {
         WidgetDto widgetDto = createWidgetDto();
         doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
 
         SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         mockMvc.perform(get("/api/widgets/" + widgetDto.getId().toString()))
@@ -80,15 +309,82 @@ public class WidgetControllerTest {
                 .andExpect(jsonPath("$.zIndex", Matchers.equalTo(5)))
                 .andExpect(jsonPath("$.width", Matchers.equalTo(100)))
                 .andExpect(jsonPath("$.height", Matchers.equalTo(50)))
-                .andExpect(jsonPath("$.modifiedAt", is(simpleDateFormat.format(widgetDto.getModifiedAt()))));
+                .andExpect(jsonPath("$.modifiedAt", is(simpleDateFormat.format(widgetDto.getModifiedAt()))))
+                .andExpect(jsonPath("$.links[*].href", Matchers.contains(
+                        "http://localhost/api/widgets/" + widgetDto.getId(),
+                        "http://localhost/api/widgets/" + widgetDto.getId(),
+                        "http://localhost/api/widgets/" + widgetDto.getId(),
+                        "http://localhost/api/widgets")))
+                .andExpect(jsonPath("$.links[*].type", Matchers.contains("GET", "PUT", "DELETE", "GET")));
+    }
+
+    @Test
+    public void getOne_WhenETagMatches_ReturnNotModified() throws Exception {
+        WidgetDto widgetDto = createWidgetDto();
+        doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
+        String etag = "\"" + widgetDto.getModifiedAt().getTime() + "\"";
+
+        mockMvc.perform(get("/api/widgets/" + widgetDto.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(get("/api/widgets/" + widgetDto.getId().toString())
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(widgetService, times(1)).findById(any());
+    }
+
+    @Test
+    public void getOne_WhenWidgetChangedAfterETagCheck_ReturnETagOfSentWidget() throws Exception {
+        WidgetDto widgetDto = createWidgetDto();
+        doReturn(new Date(widgetDto.getModifiedAt().getTime() - 1)).when(widgetService).findModifiedAt(any());
+        doReturn(widgetDto).when(widgetService).findById(any());
+
+        mockMvc.perform(get("/api/widgets/" + widgetDto.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + widgetDto.getModifiedAt().getTime() + "\""));
+    }
+
+    @Test
+    public void getOne_WhenFieldsAreSelectedWithoutLinks_ReturnOnlySelectedFields() throws Exception {
+        WidgetDto widgetDto = createWidgetDto();
+        doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
+
+        mockMvc.perform(get("/api/widgets/" + widgetDto.getId().toString() + "?fields=id,xCoordinate,width&links=none"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.*", Matchers.hasSize(3)))
+                .andExpect(jsonPath("$.id", is(widgetDto.getId().toString())))
+                .andExpect(jsonPath("$.xСoordinate", Matchers.equalTo(40)))
+                .andExpect(jsonPath("$.width", Matchers.equalTo(100)));
+    }
+
+    @Test
+    public void getOne_WhenAllLinksAreAskedFor_ReturnDefaultResponse() throws Exception {
+        WidgetDto widgetDto = createWidgetDto();
+        doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
+        String path = "/api/widgets/" + widgetDto.getId().toString();
+
+        String byDefault = mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String withAllLinks = mockMvc.perform(get(path + "?links=all"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(byDefault, withAllLinks);
     }
 
     @Test
     public void getOne_WhenWidgetWasNotFound_ReturnFilledResponse() throws Exception {
-        doReturn(null).when(widgetService).findById(any());
+        doReturn(null).when(widgetService).findModifiedAt(any());
 
         mockMvc.perform(get("/api/widgets/" + UUID.randomUUID().toString()))
                 .andExpect(status().is4xxClientError());
+        verify(widgetService, never()).findById(any());
     }
 
     @Test
@@ -113,10 +409,79 @@ public class WidgetControllerTest {
         verify(widgetService, times(1)).save(any(WidgetDto.class));
     }
 
+    @Test
+    public void createAll_WhenRequestBodyIsValid_ReturnCreatedWidgets() throws Exception {
+        WidgetDto widgetDto = createWidgetDto();
+        doReturn(Collections.singletonList(widgetDto)).when(widgetService).saveAll(any());
+
+        mockMvc.perform(post("/api/widgets/bulk")
+                .content("{\"widgets\":[" + createJSONWidgetRequest() + "]}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.content[0].id", is(widgetDto.getId().toString())))
+                .andExpect(jsonPath("$.content[0].zIndex", Matchers.equalTo(5)));
+    }
+
+    @Test
+    public void createAll_WhenOneWidgetIsInvalid_ReturnFailedResponse() throws Exception {
+        mockMvc.perform(post("/api/widgets/bulk")
+                .content("{\"widgets\":[" + createJSONWidgetRequest() + "," + createInvalidJSONWidgetRequest() + "]}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().is4xxClientError());
+
+        verify(widgetService, never()).saveAll(any());
+    }
+
+    @Test
+    public void applyAll_WhenOperationsAreValid_ReturnAffectedWidgets() throws Exception {
+        WidgetDto widgetDto = createWidgetDto();
+        doReturn(Collections.singletonList(widgetDto)).when(widgetService).applyAll(any());
+
+        mockMvc.perform(post("/api/widgets/batch")
+                .content("{\"operations\":[{\"type\":\"UPDATE\",\"id\":\"" + widgetDto.getId()
+                        + "\",\"widget\":" + createJSONWidgetRequest() + "}]}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id", is(widgetDto.getId().toString())));
+
+        verify(widgetService, times(1)).applyAll(any());
+    }
+
+    @Test
+    public void applyAll_WhenWidgetWasNotFound_ReturnNotFound() throws Exception {
+        doThrow(new NoSuchElementException()).when(widgetService).applyAll(any());
+
+        mockMvc.perform(post("/api/widgets/batch")
+                .content("{\"operations\":[{\"type\":\"DELETE\",\"id\":\"" + UUID.randomUUID() + "\"}]}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void applyAll_WhenOneWidgetIsInvalid_ReturnFailedResponse() throws Exception {
+        mockMvc.perform(post("/api/widgets/batch")
+                .content("{\"operations\":[{\"type\":\"CREATE\",\"widget\":" + createInvalidJSONWidgetRequest() + "}]}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().is4xxClientError());
+
+        verify(widgetService, never()).applyAll(any());
+    }
+
+    @Test
+    public void update_WhenWidgetWasNotFound_ReturnNotFound() throws Exception {
+        doThrow(new NoSuchElementException()).when(widgetService).update(any(), any());
+
+        mockMvc.perform(put("/api/widgets/" + UUID.randomUUID())
+                .content(createJSONWidgetRequest())
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void update_WhenWidgetWasFoundAndRequestBodyIsInvalid_ReturnFailedResponse() throws Exception {
         WidgetDto widgetDto = createWidgetDto();
         doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
 
         mockMvc.perform(put("/api/widgets/" + widgetDto.getId().toString())
                 .content(createInvalidJSONWidgetRequest())
@@ -128,6 +493,7 @@ public class WidgetControllerTest {
     public void update_WhenWidgetWasFoundAndRequestBodyIsValid_ReturnUpdatedResponse() throws Exception {
         WidgetDto widgetDto = createWidgetDto();
         doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
         doReturn(widgetDto).when(widgetService).update(eq(widgetDto.getId()), any());
 
         SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -150,6 +516,7 @@ public class WidgetControllerTest {
     public void delete_WhenWidgetWasFound_ReturnFilledDeleteResponse() throws Exception {
         WidgetDto widgetDto = createWidgetDto();
         doReturn(widgetDto).when(widgetService).findById(any());
+        doReturn(widgetDto.getModifiedAt()).when(widgetService).findModifiedAt(any());
         doReturn(widgetDto).when(widgetService).delete(eq(widgetDto.getId()));
 
         mockMvc.perform(delete("/api/widgets/" + widgetDto.getId().toString()))
@@ -158,6 +525,57 @@ public class WidgetControllerTest {
         verify(widgetService, times(1)).delete(eq(widgetDto.getId()));
     }
 
+    @Test
+    public void subscribe_WhenViewportIsSet_StreamEventsUntilOverflow() throws Exception {
+        WidgetDto widget = createWidgetDto();
+        MvcResult result = mockMvc.perform(get("/api/widgets/events?bottomLeftX=0&bottomLeftY=0&upperRightX=100&upperRightY=100")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        ArgumentCaptor<WidgetListener> listener = ArgumentCaptor.forClass(WidgetListener.class);
+        verify(widgetService).subscribe(
+                argThat(filter -> filter.getBottomLeftX() == 0 && filter.getUpperRightY() == 100),
+                listener.capture());
+        listener.getValue().onEvent(new WidgetEventDto(WidgetEventType.ENTER, widget));
+        listener.getValue().onOverflow();
+
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content.startsWith("event:enter\ndata:{"));
+        assertTrue(content.contains("\"id\":\"" + widget.getId() + "\""));
+        assertTrue(content.contains("event:overflow\n"));
+        assertTrue(MediaType.TEXT_EVENT_STREAM.isCompatibleWith(MediaType.parseMediaType(result.getResponse().getContentType())));
+        mockMvc.perform(asyncDispatch(result));
+        verify(widgetService).unsubscribe(listener.getValue());
+    }
+
+    @Test
+    public void subscribe_WhenConnectionFails_Unsubscribe() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/widgets/events?bottomLeftX=0&bottomLeftY=0&upperRightX=100&upperRightY=100")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        ArgumentCaptor<WidgetListener> listener = ArgumentCaptor.forClass(WidgetListener.class);
+        verify(widgetService).subscribe(any(), listener.capture());
+
+        MockAsyncContext context = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener asyncListener : context.getListeners()) {
+            asyncListener.onError(new AsyncEvent(context, new IOException("Broken pipe")));
+        }
+
+        verify(widgetService).unsubscribe(listener.getValue());
+    }
+
+    @Test
+    public void subscribe_WhenViewportIsNotSet_ThrowException() throws Exception {
+        try {
+            mockMvc.perform(get("/api/widgets/events?bottomLeftX=0"));
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        verify(widgetService, never()).subscribe(any(), any());
+    }
+
     private static Page<WidgetDto> createPage() {
         return Page.createPage(
                 Collections.singleton(createWidgetDto()),
@@ -166,6 +584,12 @@ public class WidgetControllerTest {
         );
     }
 
+    private static List<String> namesOf(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
     private static PageableDto createPageableDto() {
         return new PageableDto(1, 10);
     }
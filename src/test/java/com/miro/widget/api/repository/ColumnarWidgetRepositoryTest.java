@@ -0,0 +1,96 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Widget;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ColumnarWidgetRepositoryTest extends InMemoryWidgetRepositoryTest {
+    @Override
+    protected WidgetRepository createRepository() {
+        return new ColumnarWidgetRepository();
+    }
+
+    @Test
+    public void findAll_WhenManyWidgetsWereSavedAndRemoved_ReturnSameWidgetsAsInMemoryRepository() {
+        Random random = new Random(11);
+        WidgetRepository columnar = new ColumnarWidgetRepository();
+        WidgetRepository inMemory = new InMemoryWidgetRepository();
+        List<Widget> saved = new ArrayList<>();
+        Date modifiedAt = new Date();
+
+        for (int i = 0; i < 3000; i++) {
+            if (!saved.isEmpty() && random.nextInt(3) == 0) {
+                Widget widget = saved.remove(random.nextInt(saved.size()));
+                assertEquals(inMemory.remove(widget), columnar.remove(widget));
+                continue;
+            }
+            UUID id = random.nextInt(4) == 0 && !saved.isEmpty()
+                    ? saved.remove(random.nextInt(saved.size())).getId()
+                    : UUID.randomUUID();
+            Widget widget = new Widget(
+                    id,
+                    random.nextInt(1000),
+                    random.nextInt(1000),
+                    (long) random.nextInt(500),
+                    1 + random.nextInt(100),
+                    1 + random.nextInt(100),
+                    modifiedAt
+            );
+            saved.add(widget);
+            columnar.saveOrUpdate(widget);
+            inMemory.saveOrUpdate(widget);
+        }
+
+        assertEquals(inMemory.count(), columnar.count());
+        assertEquals(inMemory.findHighestZIndex(), columnar.findHighestZIndex());
+        assertEquals(new ArrayList<>(inMemory.findAllSortByZIndexGreaterThanOrEqualTo(250)),
+                new ArrayList<>(columnar.findAllSortByZIndexGreaterThanOrEqualTo(250)));
+        for (Widget widget : saved) {
+            assertEquals(inMemory.findById(widget.getId()), columnar.findById(widget.getId()));
+        }
+
+        Point bottomLeft = new Point(100, 100);
+        Point upperRight = new Point(800, 900);
+        assertEquals(zIndexesOf(inMemory.findAllInAreaSortByZIndex(bottomLeft, upperRight, 5, 50)),
+                zIndexesOf(columnar.findAllInAreaSortByZIndex(bottomLeft, upperRight, 5, 50)));
+        assertEquals(zIndexesOf(inMemory.findAllSortByZIndex(100, 200)),
+                zIndexesOf(columnar.findAllSortByZIndex(100, 200)));
+    }
+
+    @Test
+    public void removeAll_WhenRepositoryWasGrownAndFilledAgain_ReturnOnlyNewWidgets() {
+        WidgetRepository repository = new ColumnarWidgetRepository();
+        List<Widget> removed = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            Widget widget = new Widget(UUID.randomUUID(), 0, 0, i, 10, 10);
+            removed.add(widget);
+            repository.saveOrUpdate(widget);
+        }
+        repository.removeAll();
+
+        List<Widget> saved = new ArrayList<>();
+        for (long i = 0; i < 50; i++) {
+            Widget widget = new Widget(UUID.randomUUID(), 0, 0, 50 - i, 10, 10);
+            saved.add(0, widget);
+            repository.saveOrUpdate(widget);
+        }
+
+        assertEquals(50, repository.count());
+        assertEquals(saved, new ArrayList<>(repository.findAllSortByZIndex()));
+        for (Widget widget : removed) {
+            assertNull(repository.findById(widget.getId()));
+        }
+    }
+
+    // widgets with equal z-indexes may come in different order, so compare z-indexes only
+    private static List<Long> zIndexesOf(Collection<Widget> widgets) {
+        List<Long> result = new ArrayList<>();
+        widgets.forEach(widget -> result.add(widget.getZIndex()));
+        return result;
+    }
+}
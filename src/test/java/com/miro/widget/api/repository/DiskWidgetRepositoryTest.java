@@ -0,0 +1,136 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Widget;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DiskWidgetRepositoryTest extends InMemoryWidgetRepositoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected WidgetRepository createRepository() {
+        return createRepository(DiskWidgetRepository.DEFAULT_PAGE_SIZE, 64);
+    }
+
+    @Test
+    public void findAll_WhenManyWidgetsWereSavedShiftedAndRemoved_ReturnSameWidgetsAsInMemoryRepository() {
+        Random random = new Random(23);
+        // small pages and a small pool, so pages split, empty out and get evicted all the time
+        DiskWidgetRepository disk = createRepository(512, 16);
+        WidgetRepository inMemory = new InMemoryWidgetRepository();
+        List<UUID> saved = new ArrayList<>();
+        Date modifiedAt = new Date(0);
+
+        for (int i = 0; i < 5000; i++) {
+            int action = random.nextInt(5);
+            if (action == 0 && !saved.isEmpty()) {
+                Widget widget = inMemory.findById(saved.remove(random.nextInt(saved.size())));
+                assertEquals(inMemory.remove(widget).getZIndex(), disk.remove(widget).getZIndex());
+            } else if (action == 1) {
+                long zIndex = random.nextInt(300);
+                inMemory.shiftTailZIndexesAt(zIndex, null, modifiedAt);
+                disk.shiftTailZIndexesAt(zIndex, null, modifiedAt);
+            } else {
+                // equal z-indexes are not shifted consistently by the in-memory repository, so keep them unique
+                UUID id = action == 2 && !saved.isEmpty()
+                        ? saved.remove(random.nextInt(saved.size()))
+                        : UUID.randomUUID();
+                long zIndex = random.nextInt(300);
+                if (inMemory.findLeastZIndexGreaterThanOrEqualTo(zIndex) != null) {
+                    zIndex = inMemory.findHighestZIndex() + 1;
+                }
+                Widget widget = new Widget(
+                        id,
+                        random.nextInt(1000),
+                        random.nextInt(1000),
+                        zIndex,
+                        1 + random.nextInt(100),
+                        1 + random.nextInt(100),
+                        modifiedAt
+                );
+                saved.add(id);
+                inMemory.saveOrUpdate(widget);
+                disk.saveOrUpdate(widget);
+            }
+        }
+
+        assertTrue(disk.cacheMisses() > 0);
+        assertEquals(inMemory.count(), disk.count());
+        assertEquals(inMemory.findHighestZIndex(), disk.findHighestZIndex());
+        assertEquals(inMemory.findLeastZIndexGreaterThanOrEqualTo(150), disk.findLeastZIndexGreaterThanOrEqualTo(150));
+        assertEquals(new ArrayList<>(inMemory.findAllSortByZIndex()), new ArrayList<>(disk.findAllSortByZIndex()));
+        for (UUID id : saved) {
+            assertEquals(inMemory.findById(id), disk.findById(id));
+        }
+
+        Point bottomLeft = new Point(100, 100);
+        Point upperRight = new Point(800, 900);
+        assertEquals(inMemory.countInArea(bottomLeft, upperRight), disk.countInArea(bottomLeft, upperRight));
+        assertEquals(new ArrayList<>(inMemory.findAllInAreaSortByZIndex(bottomLeft, upperRight, 5, 50)),
+                new ArrayList<>(disk.findAllInAreaSortByZIndex(bottomLeft, upperRight, 5, 50)));
+        assertEquals(new ArrayList<>(inMemory.findAllSortByZIndex(100, 200)),
+                new ArrayList<>(disk.findAllSortByZIndex(100, 200)));
+        assertEquals(new ArrayList<>(inMemory.findAllSortByZIndexGreaterThanOrEqualTo(150)),
+                new ArrayList<>(disk.findAllSortByZIndexGreaterThanOrEqualTo(150)));
+    }
+
+    @Test
+    public void shiftTailZIndexesAt_WhenRunSpansPagesUpToOlderExcludedWidget_KeepOrderAndIds() {
+        DiskWidgetRepository disk = createRepository(512, 16);
+        Widget excluded = new Widget(UUID.randomUUID(), 50, 50, 300L, 100, 100);
+        disk.saveOrUpdate(excluded);
+        List<Widget> run = new ArrayList<>();
+        for (long i = 0; i < 300; i++) {
+            Widget widget = new Widget(UUID.randomUUID(), i, i, i, 10, 10);
+            run.add(widget);
+            disk.saveOrUpdate(widget);
+        }
+        Date modifiedAt = new Date(42);
+
+        disk.shiftTailZIndexesAt(0, 300L, modifiedAt);
+        disk.saveOrUpdate(new Widget(excluded.getId(), 50, 50, 0L, 100, 100));
+
+        List<Widget> widgets = new ArrayList<>(disk.findAllSortByZIndex());
+        assertEquals(301, widgets.size());
+        assertEquals(excluded.getId(), widgets.get(0).getId());
+        for (int i = 0; i < run.size(); i++) {
+            Widget shifted = disk.findById(run.get(i).getId());
+            assertEquals(i + 1, shifted.getZIndex().longValue());
+            assertEquals(modifiedAt, shifted.getModifiedAt());
+            assertEquals(shifted, widgets.get(i + 1));
+        }
+        assertEquals(301, disk.countInArea(new Point(-100, -100), new Point(400, 400)));
+    }
+
+    @Test
+    public void removeAll_WhenPagesWereWritten_ReturnEmptyRepositoryThatAcceptsWidgets() {
+        DiskWidgetRepository disk = createRepository(512, 16);
+        for (long i = 0; i < 500; i++) {
+            disk.saveOrUpdate(new Widget(UUID.randomUUID(), 50, 50, i, 100, 100));
+        }
+
+        disk.removeAll();
+        disk.saveOrUpdate(new Widget(UUID.randomUUID(), 50, 50, 7L, 100, 100));
+
+        assertEquals(1, disk.count());
+        assertEquals(7L, disk.findHighestZIndex().longValue());
+    }
+
+    private DiskWidgetRepository createRepository(int pageSize, int cachePages) {
+        try {
+            return new DiskWidgetRepository(folder.newFile().toPath(), pageSize, cachePages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -23,7 +23,11 @@ public class InMemoryWidgetRepositoryTest {
 
     @Before
     public void setUp() {
-        repository = new InMemoryWidgetRepository();
+        repository = createRepository();
+    }
+
+    protected WidgetRepository createRepository() {
+        return new InMemoryWidgetRepository();
     }
 
     @Test
@@ -154,6 +158,52 @@ public class InMemoryWidgetRepositoryTest {
         assertEquals(target, testable);
     }
 
+    @Test
+    public void shiftTailZIndexesAt_WhenWidgetsWereSaved_ShiftContiguousRun() {
+        Set<Widget> test = createWidgets(4);
+        Widget top = createWidget(10L);
+        repository.saveOrUpdate(test);
+        repository.saveOrUpdate(top);
+
+        repository.shiftTailZIndexesAt(1, null);
+
+        Iterator<Widget> testIterator = test.iterator();
+        assertEquals(0L, repository.findById(testIterator.next().getId()).getZIndex().longValue());
+        assertEquals(2L, repository.findById(testIterator.next().getId()).getZIndex().longValue());
+        assertEquals(3L, repository.findById(testIterator.next().getId()).getZIndex().longValue());
+        assertEquals(4L, repository.findById(testIterator.next().getId()).getZIndex().longValue());
+        assertEquals(10L, repository.findById(top.getId()).getZIndex().longValue());
+        assertNull(repository.findLeastZIndexGreaterThanOrEqualTo(11));
+        assertEquals(2L, repository.findLeastZIndexGreaterThanOrEqualTo(1).longValue());
+    }
+
+    @Test
+    public void shiftTailZIndexesAt_WhenExcludeIndexIsInRun_ShiftUntilExcludeIndex() {
+        Set<Widget> test = createWidgets(4);
+        repository.saveOrUpdate(test);
+
+        repository.shiftTailZIndexesAt(1, 3L);
+
+        List<Long> zIndexes = repository.findAllSortByZIndex().stream()
+                .map(Widget::getZIndex)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(0L, 2L, 3L, 3L), zIndexes);
+    }
+
+    @Test
+    public void findAllInAreaSortByZIndex_WhenWidgetsWereShifted_ReturnWidgetsWithActualZIndex() {
+        Set<Widget> test = createWidgets(4);
+        repository.saveOrUpdate(test);
+        repository.shiftTailZIndexesAt(0, null);
+        Widget newest = createWidget(0L);
+        repository.saveOrUpdate(newest);
+
+        List<Widget> testable = new ArrayList<>(repository.findAllInAreaSortByZIndex(createFilterBottomLeftPoint(), createFilterUpperRightPoint(), 0, 2));
+        assertEquals(newest.getId(), testable.get(0).getId());
+        assertEquals(test.iterator().next().getId(), testable.get(1).getId());
+        assertEquals(1L, testable.get(1).getZIndex().longValue());
+    }
+
     @Test
     public void remove_WhenWidgetsWereNotSaved_ReturnNull() {
         assertNull(repository.remove(createWidget(1L)));
@@ -202,6 +252,97 @@ public class InMemoryWidgetRepositoryTest {
         Assert.assertFalse(widgets.contains(widget3));
     }
 
+    @Test
+    public void countInArea_WhenAreaContainsTwoWidgets_ReturnTwo() {
+        Widget widget1 = new Widget(UUID.randomUUID(), 150, 100, 1L, 300, 200);
+        Widget widget2 = new Widget(UUID.randomUUID(), 50, 50, 2L, 100, 100);
+        Widget widget3 = new Widget(UUID.randomUUID(), 250, 150, 3L, 100, 100);
+        Widget widget4 = new Widget(UUID.randomUUID(), 350, 150, 4L, 100, 100);
+        repository.saveOrUpdate(Arrays.asList(widget2, widget3, widget4));
+
+        assertEquals(2, repository.countInArea(widget1.getBottomLeftPoint(), widget1.getUpperRightPoint()));
+        assertEquals(0, repository.countInArea(new Point(1000, 1000), new Point(2000, 2000)));
+    }
+
+    @Test
+    public void findAllSortByZIndexAfter_WhenPagedThroughAllWidgets_ReturnSamePagesAsOffsets() {
+        repository.saveOrUpdate(createWidgets(25));
+
+        List<Widget> expected = new ArrayList<>(repository.findAllSortByZIndex());
+        List<Widget> paged = new ArrayList<>();
+        Set<Widget> page = repository.findAllSortByZIndex(0, 10);
+        while (!page.isEmpty()) {
+            paged.addAll(page);
+            Widget last = paged.get(paged.size() - 1);
+            page = repository.findAllSortByZIndexAfter(last.getZIndex(), last.getId(), 10);
+        }
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void findAllSortByZIndexAfter_WhenWidgetOfCursorWasRemoved_ReturnWidgetsAfterItsZIndex() {
+        Widget widget1 = createWidget(1L);
+        Widget widget2 = createWidget(2L);
+        Widget widget3 = createWidget(3L);
+        repository.saveOrUpdate(Arrays.asList(widget1, widget2, widget3));
+        repository.remove(widget2);
+
+        assertEquals(Collections.singletonList(widget3),
+                new ArrayList<>(repository.findAllSortByZIndexAfter(2L, widget2.getId(), 10)));
+        assertEquals(Collections.singletonList(widget3),
+                new ArrayList<>(repository.findAllSortByZIndexAfter(1L, widget1.getId(), 1)));
+    }
+
+    @Test
+    public void findAllInAreaSortByZIndexAfter_WhenPagedThroughArea_ReturnSamePagesAsOffsets() {
+        Random random = new Random(5);
+        for (long i = 0; i < 300; i++) {
+            repository.saveOrUpdate(new Widget(UUID.randomUUID(), random.nextInt(1000), random.nextInt(1000), i, 1 + random.nextInt(100), 1 + random.nextInt(100)));
+        }
+        Point bottomLeft = new Point(100, 200);
+        Point upperRight = new Point(700, 900);
+
+        List<Widget> expected = new ArrayList<>(repository.findAllInAreaSortByZIndex(bottomLeft, upperRight, 0, Long.MAX_VALUE));
+        List<Widget> paged = new ArrayList<>(repository.findAllInAreaSortByZIndex(bottomLeft, upperRight, 0, 7));
+        while (paged.size() < expected.size()) {
+            Widget last = paged.get(paged.size() - 1);
+            Set<Widget> page = repository.findAllInAreaSortByZIndexAfter(bottomLeft, upperRight, last.getZIndex(), last.getId(), 7);
+            assertFalse(page.isEmpty());
+            paged.addAll(page);
+        }
+        assertEquals(expected, paged);
+        Widget last = paged.get(paged.size() - 1);
+        assertTrue(repository.findAllInAreaSortByZIndexAfter(bottomLeft, upperRight, last.getZIndex(), last.getId(), 7).isEmpty());
+    }
+
+    @Test
+    public void forEachSortByZIndex_WhenWidgetsWereSaved_VisitWidgetsInZOrder() {
+        Widget widget1 = createWidget(3L);
+        Widget widget2 = createWidget(1L);
+        Widget widget3 = createWidget(2L);
+        repository.saveOrUpdate(Arrays.asList(widget1, widget2, widget3));
+
+        List<Widget> visited = new ArrayList<>();
+        repository.forEachSortByZIndex(visited::add);
+        assertEquals(Arrays.asList(widget2, widget3, widget1), visited);
+    }
+
+    @Test
+    public void bulkLoad_WhenWidgetsWereSavedBefore_ReturnAllWidgetsInZOrder() {
+        Widget saved = createWidget(1L);
+        repository.saveOrUpdate(saved);
+        List<Widget> loaded = Arrays.asList(createWidget(2L), createWidget(5L), createWidget(9L));
+        repository.bulkLoad(loaded);
+
+        List<Widget> expected = new ArrayList<>();
+        expected.add(saved);
+        expected.addAll(loaded);
+        assertEquals(expected, new ArrayList<>(repository.findAllSortByZIndex()));
+        assertEquals(9L, repository.findHighestZIndex().longValue());
+        assertEquals(loaded.get(1), repository.findById(loaded.get(1).getId()));
+        assertEquals(4, repository.countInArea(new Point(0, 0), new Point(100, 100)));
+    }
+
     private static Point createFilterBottomLeftPoint() {
         return new Point(0, 0);
     }
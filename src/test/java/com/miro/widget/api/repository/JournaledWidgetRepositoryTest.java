@@ -0,0 +1,251 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.repository.journal.WidgetCheckpoint;
+import com.miro.widget.api.repository.journal.WidgetJournal;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JournaledWidgetRepositoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+    private Path checkpointPath;
+
+    @Before
+    public void setUp() throws IOException {
+        path = folder.newFile("widgets.journal").toPath();
+        checkpointPath = folder.getRoot().toPath().resolve("widgets.checkpoint");
+    }
+
+    @Test
+    public void replay_WhenWidgetsWereChanged_ReturnSameWidgets() throws IOException {
+        Widget first = createWidget(0L);
+        Widget second = createWidget(1L);
+        Widget third = createWidget(2L);
+        List<Widget> expected;
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            repository.saveOrUpdate(Arrays.asList(first, second, third));
+            repository.shiftTailZIndexesAt(0, 2L, new Date(5000));
+            repository.saveOrUpdate(createWidget(0L));
+            repository.remove(third);
+            repository.saveOrUpdate(new Widget(second.getId(), 10, 10, 7L, 20, 20, new Date(6000)));
+            repository.flush();
+            expected = new ArrayList<>(repository.findAllSortByZIndex());
+        }
+
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            assertEquals(expected, new ArrayList<>(repository.findAllSortByZIndex()));
+            assertEquals(new Date(5000), repository.findById(first.getId()).getModifiedAt());
+        }
+    }
+
+    @Test
+    public void replay_WhenJournalSpansManyRegions_ReturnAllWidgets() throws IOException {
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), 1024)) {
+            for (long i = 0; i < 1000; i++) {
+                repository.saveOrUpdate(createWidget(i));
+            }
+            repository.removeAll();
+            for (long i = 0; i < 500; i++) {
+                repository.saveOrUpdate(createWidget(i));
+            }
+            repository.flush();
+        }
+
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), 1024)) {
+            assertEquals(500, repository.count());
+            assertEquals(499L, repository.findHighestZIndex().longValue());
+        }
+    }
+
+    @Test
+    public void replay_WhenLastRecordIsTorn_ReturnWidgetsBeforeItAndAppendAfterThem() throws IOException {
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            repository.saveOrUpdate(createWidget(0L));
+            repository.saveOrUpdate(createWidget(1L));
+            repository.saveOrUpdate(createWidget(2L));
+            repository.flush();
+        }
+        // records of saved widgets are 73 bytes long, damage the payload of the third one
+        try (RandomAccessFile file = new RandomAccessFile(WidgetJournal.segmentOf(path, 0).toFile(), "rw")) {
+            file.seek(2 * 73 + 20);
+            file.write(0xFF);
+        }
+
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            assertEquals(2, repository.count());
+            repository.saveOrUpdate(createWidget(5L));
+            repository.flush();
+        }
+
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            assertEquals(3, repository.count());
+            assertEquals(5L, repository.findHighestZIndex().longValue());
+        }
+    }
+
+    @Test
+    public void load_WhenCheckpointWasWritten_ReturnWidgetsFromCheckpointAndJournalAfterIt() throws IOException {
+        assertCheckpointRestoresWidgets(new InMemoryWidgetRepository(), new InMemoryWidgetRepository());
+    }
+
+    @Test
+    public void load_WhenCheckpointWasWrittenFromSnapshot_ReturnWidgetsFromCheckpointAndJournalAfterIt() throws IOException {
+        assertCheckpointRestoresWidgets(new PersistentWidgetRepository(), new PersistentWidgetRepository());
+    }
+
+    @Test
+    public void replay_WhenJournalIsOneFileWrittenBeforeSegments_ReturnSameWidgets() throws IOException {
+        List<Widget> expected;
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), 1024)) {
+            for (long i = 0; i < 100; i++) {
+                repository.saveOrUpdate(createWidget(i));
+            }
+            repository.flush();
+            expected = new ArrayList<>(repository.findAllSortByZIndex());
+        }
+        try (OutputStream single = Files.newOutputStream(path)) {
+            for (long number = 0; Files.exists(WidgetJournal.segmentOf(path, number)); number++) {
+                Files.copy(WidgetJournal.segmentOf(path, number), single);
+                Files.delete(WidgetJournal.segmentOf(path, number));
+            }
+        }
+
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), 1024)) {
+            assertEquals(expected, new ArrayList<>(repository.findAllSortByZIndex()));
+            assertFalse(Files.exists(path));
+        }
+    }
+
+    @Test
+    public void load_WhenCheckpointIsMissing_ReturnWidgetsFromJournal() throws IOException {
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            repository.saveOrUpdate(createWidget(0L));
+            repository.flush();
+        }
+
+        try (JournaledWidgetRepository repository = openWithCheckpoint(new InMemoryWidgetRepository(), 1024)) {
+            assertEquals(1, repository.count());
+        }
+    }
+
+    @Test
+    public void saveOrUpdate_WhenJournalFailsToAppend_LeaveRepositoryAsItWasAndRefuseChanges() throws IOException {
+        InMemoryWidgetRepository delegate = new InMemoryWidgetRepository();
+        Widget saved = createWidget(0L);
+        WidgetJournal journal = new WidgetJournal(path, WidgetJournal.DEFAULT_REGION_SIZE) {
+            @Override
+            public void appendSave(Widget widget) throws IOException {
+                if (widget != saved) {
+                    throw new IOException("No space left on device");
+                }
+                super.appendSave(widget);
+            }
+        };
+        try (JournaledWidgetRepository repository = new JournaledWidgetRepository(delegate, journal)) {
+            repository.saveOrUpdate(saved);
+            try {
+                repository.saveOrUpdate(createWidget(1L));
+                fail();
+            } catch (UncheckedIOException e) {
+                assertEquals(1, delegate.count());
+            }
+
+            assertThrows(IllegalStateException.class, () -> repository.remove(saved));
+            assertThrows(IllegalStateException.class, repository::flush);
+            assertEquals(1, delegate.count());
+        }
+    }
+
+    @Test
+    public void close_WhenRepositoryIsCloseable_CloseIt() throws IOException {
+        boolean[] closed = new boolean[1];
+        WidgetRepository delegate = new ClosableWidgetRepository(() -> closed[0] = true);
+
+        open(delegate, WidgetJournal.DEFAULT_REGION_SIZE).close();
+
+        assertTrue(closed[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requestCheckpoint_WhenCheckpointIsNotConfigured_ThrowException() throws IOException {
+        try (JournaledWidgetRepository repository = open(new InMemoryWidgetRepository(), WidgetJournal.DEFAULT_REGION_SIZE)) {
+            repository.requestCheckpoint();
+        }
+    }
+
+    private void assertCheckpointRestoresWidgets(WidgetRepository written, WidgetRepository restored) throws IOException {
+        List<Widget> expected;
+        // small regions, so the checkpoint position falls in the middle of the journal
+        try (JournaledWidgetRepository repository = openWithCheckpoint(written, 1024)) {
+            for (long i = 0; i < 100; i++) {
+                repository.saveOrUpdate(createWidget(i));
+            }
+            repository.requestCheckpoint();
+            repository.flush();
+            repository.shiftTailZIndexesAt(10, null, new Date(5000));
+            repository.saveOrUpdate(createWidget(10L));
+            repository.remove(repository.findAllSortByZIndex(0, 1).iterator().next());
+            repository.flush();
+            expected = new ArrayList<>(repository.findAllSortByZIndex());
+        }
+
+        assertTrue(checkpointPath.toFile().exists());
+        // the journal before the checkpoint is not needed any more
+        assertFalse(Files.exists(WidgetJournal.segmentOf(path, 0)));
+        try (JournaledWidgetRepository repository = openWithCheckpoint(restored, 1024)) {
+            assertEquals(expected, new ArrayList<>(repository.findAllSortByZIndex()));
+        }
+    }
+
+    private JournaledWidgetRepository openWithCheckpoint(WidgetRepository repository, int regionSize) throws IOException {
+        return new JournaledWidgetRepository(
+                repository, new WidgetJournal(path, regionSize), new WidgetCheckpoint(checkpointPath), 0);
+    }
+
+    private JournaledWidgetRepository open(WidgetRepository repository, int regionSize) throws IOException {
+        return new JournaledWidgetRepository(repository, new WidgetJournal(path, regionSize));
+    }
+
+    private static void assertThrows(Class<? extends Exception> expected, Runnable action) {
+        try {
+            action.run();
+            fail();
+        } catch (Exception e) {
+            assertTrue(expected.isInstance(e));
+        }
+    }
+
+    private static Widget createWidget(Long zIndex) {
+        return new Widget(UUID.randomUUID(), 50, 50, zIndex, 100, 100, new Date(1000));
+    }
+
+    private static class ClosableWidgetRepository extends InMemoryWidgetRepository implements Closeable {
+        private final Runnable onClose;
+
+        private ClosableWidgetRepository(Runnable onClose) {
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void close() {
+            onClose.run();
+        }
+    }
+}
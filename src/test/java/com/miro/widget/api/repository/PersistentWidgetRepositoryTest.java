@@ -0,0 +1,106 @@
+package com.miro.widget.api.repository;
+
+import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.contract.WidgetRepositoryView;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Widget;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PersistentWidgetRepositoryTest extends InMemoryWidgetRepositoryTest {
+    @Override
+    protected WidgetRepository createRepository() {
+        return new PersistentWidgetRepository();
+    }
+
+    @Test
+    public void snapshot_WhenRepositoryWasChangedAfterwards_ReturnPreviousState() {
+        WidgetRepository repository = new PersistentWidgetRepository();
+        Widget first = new Widget(UUID.randomUUID(), 50, 50, 0L, 100, 100);
+        Widget second = new Widget(UUID.randomUUID(), 50, 50, 1L, 100, 100);
+        repository.saveOrUpdate(Arrays.asList(first, second));
+
+        WidgetRepositoryView snapshot = repository.snapshot();
+        repository.shiftTailZIndexesAt(0, null);
+        repository.remove(second);
+        repository.saveOrUpdate(new Widget(UUID.randomUUID(), 50, 50, 0L, 100, 100));
+
+        assertEquals(2, snapshot.count());
+        assertEquals(Arrays.asList(first, second), new ArrayList<>(snapshot.findAllSortByZIndex()));
+        assertEquals(first, snapshot.findById(first.getId()));
+        assertEquals(2, repository.count());
+        assertEquals(1L, repository.findById(first.getId()).getZIndex().longValue());
+    }
+
+    @Test
+    public void findAll_WhenManyWidgetsWereSavedShiftedAndRemoved_ReturnSameWidgetsAsInMemoryRepository() {
+        Random random = new Random(17);
+        WidgetRepository persistent = new PersistentWidgetRepository();
+        WidgetRepository inMemory = new InMemoryWidgetRepository();
+        List<UUID> saved = new ArrayList<>();
+        Date modifiedAt = new Date(0);
+
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(4);
+            if (action == 0 && !saved.isEmpty()) {
+                Widget widget = inMemory.findById(saved.remove(random.nextInt(saved.size())));
+                assertEquals(inMemory.remove(widget).getZIndex(), persistent.remove(widget).getZIndex());
+            } else if (action == 1) {
+                // both repositories stamp shifts with their own clock, so only z-indexes are compared
+                long zIndex = random.nextInt(300);
+                inMemory.shiftTailZIndexesAt(zIndex, null);
+                persistent.shiftTailZIndexesAt(zIndex, null);
+            } else {
+                // equal z-indexes are ordered differently by the two repositories, so keep them unique
+                UUID id = UUID.randomUUID();
+                long zIndex = random.nextInt(300);
+                if (inMemory.findLeastZIndexGreaterThanOrEqualTo(zIndex) != null) {
+                    zIndex = inMemory.findHighestZIndex() + 1;
+                }
+                Widget widget = new Widget(
+                        id,
+                        random.nextInt(1000),
+                        random.nextInt(1000),
+                        zIndex,
+                        1 + random.nextInt(100),
+                        1 + random.nextInt(100),
+                        modifiedAt
+                );
+                saved.add(id);
+                inMemory.saveOrUpdate(widget);
+                persistent.saveOrUpdate(widget);
+            }
+        }
+
+        assertEquals(inMemory.count(), persistent.count());
+        assertEquals(inMemory.findHighestZIndex(), persistent.findHighestZIndex());
+        assertEquals(zIndexesOf(inMemory.findAllSortByZIndex()), zIndexesOf(persistent.findAllSortByZIndex()));
+        for (UUID id : saved) {
+            assertEquals(inMemory.findById(id).getZIndex(), persistent.findById(id).getZIndex());
+        }
+
+        Point bottomLeft = new Point(100, 100);
+        Point upperRight = new Point(800, 900);
+        assertEquals(inMemory.countInArea(bottomLeft, upperRight), persistent.countInArea(bottomLeft, upperRight));
+        assertEquals(idsOf(inMemory.findAllInAreaSortByZIndex(bottomLeft, upperRight, 5, 50)),
+                idsOf(persistent.findAllInAreaSortByZIndex(bottomLeft, upperRight, 5, 50)));
+        assertEquals(idsOf(inMemory.findAllSortByZIndex(100, 200)), idsOf(persistent.findAllSortByZIndex(100, 200)));
+        assertEquals(idsOf(inMemory.findAllSortByZIndexGreaterThanOrEqualTo(150)),
+                idsOf(persistent.findAllSortByZIndexGreaterThanOrEqualTo(150)));
+    }
+
+    private static List<Long> zIndexesOf(Collection<Widget> widgets) {
+        List<Long> result = new ArrayList<>();
+        widgets.forEach(widget -> result.add(widget.getZIndex()));
+        return result;
+    }
+
+    private static List<UUID> idsOf(Collection<Widget> widgets) {
+        List<UUID> result = new ArrayList<>();
+        widgets.forEach(widget -> result.add(widget.getId()));
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+package com.miro.widget.api.repository.index;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class HashTrieTest {
+    @Test
+    public void get_WhenKeyWasNotPut_ReturnNull() {
+        assertNull(HashTrie.<UUID, Integer>empty().get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void put_WhenTrieWasUpdated_ReturnPreviousVersionUnchanged() {
+        UUID uuid = UUID.randomUUID();
+        HashTrie<UUID, Integer> first = HashTrie.<UUID, Integer>empty().put(uuid, 1);
+        HashTrie<UUID, Integer> second = first.put(uuid, 2).put(UUID.randomUUID(), 3);
+        HashTrie<UUID, Integer> third = second.remove(uuid);
+
+        assertEquals(1, first.get(uuid).intValue());
+        assertEquals(1, first.size());
+        assertEquals(2, second.get(uuid).intValue());
+        assertEquals(2, second.size());
+        assertNull(third.get(uuid));
+        assertEquals(1, third.size());
+    }
+
+    @Test
+    public void get_WhenManyKeysWerePutAndRemoved_ReturnSameValuesAsHashMap() {
+        Random random = new Random(19);
+        Map<Key, Integer> expected = new HashMap<>();
+        List<Key> keys = new ArrayList<>();
+        HashTrie<Key, Integer> trie = HashTrie.empty();
+        for (int i = 0; i < 20000; i++) {
+            if (!keys.isEmpty() && random.nextInt(3) == 0) {
+                Key key = keys.remove(random.nextInt(keys.size()));
+                expected.remove(key);
+                trie = trie.remove(key);
+            } else {
+                Key key = new Key(random.nextInt(100000));
+                if (!expected.containsKey(key)) {
+                    keys.add(key);
+                }
+                expected.put(key, i);
+                trie = trie.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), trie.size());
+        for (Map.Entry<Key, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), trie.get(entry.getKey()));
+        }
+        assertSame(trie, trie.remove(new Key(-1)));
+    }
+
+    // hash codes collide for every 16 values, so collision nodes are exercised as well
+    private static final class Key {
+        private final int value;
+
+        private Key(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value / 16;
+        }
+    }
+}
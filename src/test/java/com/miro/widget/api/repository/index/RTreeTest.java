@@ -0,0 +1,296 @@
+package com.miro.widget.api.repository.index;
+
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class RTreeTest {
+    private RTree<Widget> tree;
+
+    @Before
+    public void setUp() {
+        tree = new RTree<>(widget -> widget, Comparator.comparing(Widget::getZIndex));
+    }
+
+    @Test
+    public void search_WhenTreeIsEmpty_ReturnNothing() {
+        assertTrue(search(new Rectangle(new Point(0, 0), new Point(100, 100))).isEmpty());
+    }
+
+    @Test
+    public void search_WhenWidgetTouchesAreaBorders_ReturnWidget() {
+        Widget widget = new Widget(UUID.randomUUID(), 50, 50, 1L, 100, 100);
+        tree.insert(widget);
+
+        assertEquals(Collections.singleton(widget), search(new Rectangle(new Point(0, 0), new Point(100, 100))));
+        assertTrue(search(new Rectangle(new Point(1, 0), new Point(100, 100))).isEmpty());
+    }
+
+    @Test
+    public void remove_WhenWidgetWasNotInserted_ReturnFalse() {
+        tree.insert(new Widget(UUID.randomUUID(), 50, 50, 1L, 100, 100));
+
+        assertFalse(tree.remove(new Widget(UUID.randomUUID(), 50, 50, 2L, 100, 100)));
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    public void search_WhenManyWidgetsWereInsertedAndRemoved_ReturnSameWidgetsAsFullScan() {
+        Random random = new Random(42);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            Widget widget = createRandomWidget(random, i);
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+        for (int i = 0; i < 2000; i++) {
+            Widget widget = inserted.remove(random.nextInt(inserted.size()));
+            assertTrue(tree.remove(widget));
+        }
+        assertEquals(inserted.size(), tree.size());
+
+        for (int i = 0; i < 200; i++) {
+            long x = random.nextInt(1000);
+            long y = random.nextInt(1000);
+            Rectangle area = new Rectangle(new Point(x, y), new Point(x + 1 + random.nextInt(300), y + 1 + random.nextInt(300)));
+
+            Set<Widget> expected = inserted.stream()
+                    .filter(widget -> isInside(widget, area))
+                    .collect(Collectors.toSet());
+            assertEquals(expected, search(area));
+        }
+    }
+
+    @Test
+    public void count_WhenManyWidgetsWereInsertedAndRemoved_ReturnSameCountAsFullScan() {
+        Random random = new Random(13);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            Widget widget = createRandomWidget(random, i);
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+        for (int i = 0; i < 2000; i++) {
+            tree.remove(inserted.remove(random.nextInt(inserted.size())));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            long x = random.nextInt(1000);
+            long y = random.nextInt(1000);
+            Rectangle area = new Rectangle(new Point(x, y), new Point(x + 1 + random.nextInt(600), y + 1 + random.nextInt(600)));
+
+            long expected = inserted.stream()
+                    .filter(widget -> isInside(widget, area))
+                    .count();
+            assertEquals(expected, tree.count(area));
+        }
+        assertEquals(inserted.size(), tree.count(new Rectangle(new Point(-1000, -1000), new Point(3000, 3000))));
+    }
+
+    @Test
+    public void search_WithRangeParamsWhenManyWidgetsWereInserted_ReturnPageSortedByZIndex() {
+        Random random = new Random(7);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 3000; i++) {
+            Widget widget = createRandomWidget(random, random.nextLong());
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+
+        Rectangle area = new Rectangle(new Point(100, 100), new Point(900, 700));
+        List<Widget> expected = inserted.stream()
+                .filter(widget -> isInside(widget, area))
+                .sorted(Comparator.comparing(Widget::getZIndex))
+                .skip(20)
+                .limit(30)
+                .collect(Collectors.toList());
+
+        List<Widget> testable = new ArrayList<>();
+        tree.search(area, 20, 30, testable::add);
+        assertEquals(expected, testable);
+    }
+
+    @Test
+    public void search_WithRangeParamsWhenAllSkip_ReturnNothing() {
+        tree.insert(new Widget(UUID.randomUUID(), 50, 50, 1L, 100, 100));
+
+        List<Widget> testable = new ArrayList<>();
+        tree.search(new Rectangle(new Point(0, 0), new Point(100, 100)), 1, 10, testable::add);
+        assertTrue(testable.isEmpty());
+    }
+
+    @Test
+    public void nodeCount_WhenWidgetsWereMovedManyTimes_ReturnNodeCountBoundedBySize() {
+        Random random = new Random(5);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 2000; i++) {
+            Widget widget = createRandomWidget(random, i);
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+
+        for (int i = 0; i < 50000; i++) {
+            int index = random.nextInt(inserted.size());
+            Widget moved = createRandomWidget(random, inserted.get(index).getZIndex());
+            assertTrue(tree.remove(inserted.get(index)));
+            tree.insert(moved);
+            inserted.set(index, moved);
+        }
+
+        // every node but the root holds at least MIN_ENTRIES entries, so empty nodes cannot pile up
+        assertEquals(inserted.size(), tree.size());
+        assertTrue(tree.nodeCount() <= inserted.size() / 5 + 1);
+
+        inserted.forEach(tree::remove);
+        assertTrue(tree.isEmpty());
+        assertEquals(1, tree.nodeCount());
+    }
+
+    @Test
+    public void clear_WhenWidgetsWereInserted_ReturnEmptyTree() {
+        tree.insert(new Widget(UUID.randomUUID(), 50, 50, 1L, 100, 100));
+        tree.clear();
+
+        assertTrue(tree.isEmpty());
+        assertTrue(search(new Rectangle(new Point(0, 0), new Point(100, 100))).isEmpty());
+    }
+
+    @Test
+    public void load_WhenManyWidgetsWereLoadedAndRemoved_ReturnSameWidgetsAsFullScan() {
+        Random random = new Random(11);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            Widget widget = createRandomWidget(random, i);
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+        List<Widget> loaded = new ArrayList<>();
+        for (long i = 100; i < 5000; i++) {
+            loaded.add(createRandomWidget(random, i));
+        }
+        tree.load(loaded);
+        inserted.addAll(loaded);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(tree.remove(inserted.remove(random.nextInt(inserted.size()))));
+        }
+        assertEquals(inserted.size(), tree.size());
+
+        for (int i = 0; i < 200; i++) {
+            long x = random.nextInt(1000);
+            long y = random.nextInt(1000);
+            Rectangle area = new Rectangle(new Point(x, y), new Point(x + 1 + random.nextInt(300), y + 1 + random.nextInt(300)));
+
+            Set<Widget> expected = inserted.stream()
+                    .filter(widget -> isInside(widget, area))
+                    .collect(Collectors.toSet());
+            assertEquals(expected, search(area));
+            assertEquals(expected.size(), tree.count(area));
+        }
+    }
+
+    @Test
+    public void searchAfter_WhenManyWidgetsWereInserted_ReturnTailOfSortedPage() {
+        Random random = new Random(3);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 3000; i++) {
+            Widget widget = createRandomWidget(random, i);
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+
+        Rectangle area = new Rectangle(new Point(100, 100), new Point(900, 700));
+        List<Widget> sorted = inserted.stream()
+                .filter(widget -> isInside(widget, area))
+                .sorted(Comparator.comparing(Widget::getZIndex))
+                .collect(Collectors.toList());
+        // the bound does not have to be inside the area
+        Widget after = inserted.get(1500);
+        List<Widget> expected = sorted.stream()
+                .filter(widget -> widget.getZIndex() > after.getZIndex())
+                .limit(30)
+                .collect(Collectors.toList());
+
+        List<Widget> testable = new ArrayList<>();
+        tree.searchAfter(area, after, 30, testable::add);
+        assertEquals(expected, testable);
+    }
+
+    @Test
+    public void searchIntersecting_WhenManyWidgetsWereInsertedAndRemoved_ReturnSameWidgetsAsFullScan() {
+        Random random = new Random(17);
+        List<Widget> inserted = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            Widget widget = createRandomWidget(random, i);
+            inserted.add(widget);
+            tree.insert(widget);
+        }
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(tree.remove(inserted.remove(random.nextInt(inserted.size()))));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            long x = random.nextInt(1000);
+            long y = random.nextInt(1000);
+            Rectangle area = new Rectangle(new Point(x, y), new Point(x + 1 + random.nextInt(300), y + 1 + random.nextInt(300)));
+
+            Set<Widget> expected = inserted.stream()
+                    .filter(widget -> isIntersects(widget, area))
+                    .collect(Collectors.toSet());
+            Set<Widget> testable = new HashSet<>();
+            tree.searchIntersecting(area, testable::add);
+            assertEquals(expected, testable);
+        }
+    }
+
+    @Test
+    public void searchIntersecting_WhenWidgetTouchesAreaBorderFromOutside_ReturnWidget() {
+        Widget widget = new Widget(UUID.randomUUID(), 150, 50, 1L, 100, 100);
+        tree.insert(widget);
+
+        Set<Widget> touching = new HashSet<>();
+        tree.searchIntersecting(new Rectangle(new Point(0, 0), new Point(100, 100)), touching::add);
+        Set<Widget> apart = new HashSet<>();
+        tree.searchIntersecting(new Rectangle(new Point(0, 0), new Point(99, 100)), apart::add);
+
+        assertEquals(Collections.singleton(widget), touching);
+        assertTrue(apart.isEmpty());
+    }
+
+    private Set<Widget> search(Rectangle area) {
+        Set<Widget> result = new HashSet<>();
+        tree.search(area, result::add);
+        return result;
+    }
+
+    private static boolean isInside(Widget widget, Rectangle area) {
+        return widget.getBottomLeftPoint().getXCoordinate() >= area.getBottomLeftPoint().getXCoordinate()
+                && widget.getBottomLeftPoint().getYCoordinate() >= area.getBottomLeftPoint().getYCoordinate()
+                && widget.getUpperRightPoint().getXCoordinate() <= area.getUpperRightPoint().getXCoordinate()
+                && widget.getUpperRightPoint().getYCoordinate() <= area.getUpperRightPoint().getYCoordinate();
+    }
+
+    private static boolean isIntersects(Widget widget, Rectangle area) {
+        return widget.getBottomLeftPoint().getXCoordinate() <= area.getUpperRightPoint().getXCoordinate()
+                && widget.getBottomLeftPoint().getYCoordinate() <= area.getUpperRightPoint().getYCoordinate()
+                && widget.getUpperRightPoint().getXCoordinate() >= area.getBottomLeftPoint().getXCoordinate()
+                && widget.getUpperRightPoint().getYCoordinate() >= area.getBottomLeftPoint().getYCoordinate();
+    }
+
+    private static Widget createRandomWidget(Random random, long zIndex) {
+        return new Widget(
+                UUID.randomUUID(),
+                random.nextInt(1200),
+                random.nextInt(1200),
+                zIndex,
+                2 + random.nextInt(100),
+                2 + random.nextInt(100)
+        );
+    }
+}
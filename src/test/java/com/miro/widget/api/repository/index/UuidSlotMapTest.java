@@ -0,0 +1,57 @@
+package com.miro.widget.api.repository.index;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class UuidSlotMapTest {
+    private UuidSlotMap map;
+
+    @Before
+    public void setUp() {
+        map = new UuidSlotMap();
+    }
+
+    @Test
+    public void get_WhenKeyWasNotPut_ReturnNoSlot() {
+        assertEquals(UuidSlotMap.NO_SLOT, map.get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void put_WhenKeyWasAlreadyPut_ReturnPreviousSlot() {
+        UUID uuid = UUID.randomUUID();
+        map.put(uuid, 1);
+
+        assertEquals(1, map.put(uuid, 2));
+        assertEquals(2, map.get(uuid));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void get_WhenManyKeysWerePutAndRemoved_ReturnSameSlotsAsHashMap() {
+        Random random = new Random(3);
+        Map<UUID, Integer> expected = new HashMap<>();
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            if (!keys.isEmpty() && random.nextInt(3) == 0) {
+                UUID uuid = keys.remove(random.nextInt(keys.size()));
+                assertEquals(expected.remove(uuid).intValue(), map.remove(uuid));
+            } else {
+                // small bit ranges force colliding probe sequences
+                UUID uuid = new UUID(random.nextInt(64), random.nextInt(64));
+                if (!expected.containsKey(uuid)) {
+                    keys.add(uuid);
+                }
+                expected.put(uuid, i);
+                map.put(uuid, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((uuid, slot) -> assertEquals(slot.intValue(), map.get(uuid)));
+        assertEquals(UuidSlotMap.NO_SLOT, map.remove(new UUID(-1, -1)));
+    }
+}
@@ -0,0 +1,206 @@
+package com.miro.widget.api.repository.index;
+
+import com.miro.widget.api.model.entity.Widget;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ZIndexTreeTest {
+    private ZIndexTree tree;
+
+    @Before
+    public void setUp() {
+        tree = new ZIndexTree();
+    }
+
+    @Test
+    public void lastKey_WhenTreeIsEmpty_ReturnNull() {
+        assertNull(tree.lastKey());
+        assertNull(tree.ceilingKey(0));
+    }
+
+    @Test
+    public void remove_WhenWidgetWasInserted_ReturnTreeWithoutWidget() {
+        ZIndexTree.Entry first = tree.insert(createWidget(1L));
+        tree.insert(createWidget(2L));
+        tree.remove(first);
+
+        assertEquals(1, tree.size());
+        assertEquals(2L, tree.ceilingKey(0).longValue());
+    }
+
+    @Test
+    public void forEach_WithRangeParamsWhenManyWidgetsWereInserted_ReturnSamePagesAsSortedList() {
+        Random random = new Random(42);
+        TreeMap<Long, ZIndexTree.Entry> entries = new TreeMap<>();
+        TreeMap<Long, Widget> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            long zIndex = random.nextInt(20000);
+            if (!expected.containsKey(zIndex)) {
+                Widget widget = createWidget(zIndex);
+                expected.put(zIndex, widget);
+                entries.put(zIndex, tree.insert(widget));
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            Long zIndex = expected.ceilingKey((long) random.nextInt(20000));
+            if (zIndex != null) {
+                expected.remove(zIndex);
+                tree.remove(entries.remove(zIndex));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        assertEquals(expected.lastKey(), tree.lastKey());
+        assertEquals(expected.ceilingKey(10000L), tree.ceilingKey(10000L));
+
+        for (long skip : new long[]{0, 1, 999, 2500, expected.size() - 5, expected.size() + 5}) {
+            List<Widget> page = new ArrayList<>();
+            tree.forEach(skip, 10, page::add);
+            assertEquals(
+                    expected.values().stream().skip(skip).limit(10).collect(Collectors.toList()),
+                    page
+            );
+        }
+
+        List<Widget> tail = new ArrayList<>();
+        tree.forEachGreaterThanOrEqualTo(15000, tail::add);
+        assertEquals(new ArrayList<>(expected.tailMap(15000L, true).values()), tail);
+    }
+
+    @Test
+    public void shiftRun_WhenZIndexIsFree_ShiftNothing() {
+        tree.insert(createWidget(1L));
+        tree.insert(createWidget(3L));
+
+        assertEquals(0, tree.shiftRun(2, null, new Date()));
+        assertEquals(Arrays.asList(1L, 3L), zIndexes());
+    }
+
+    @Test
+    public void shiftRun_WhenRunHasGap_ShiftUntilGap() {
+        for (long zIndex : new long[]{1, 2, 3, 5, 6}) {
+            tree.insert(createWidget(zIndex));
+        }
+        Date shiftedAt = Date.from(Instant.now().plusSeconds(60));
+
+        assertEquals(2, tree.shiftRun(2, null, shiftedAt));
+        assertEquals(Arrays.asList(1L, 3L, 4L, 5L, 6L), zIndexes());
+
+        List<Widget> widgets = new ArrayList<>();
+        tree.forEach(widgets::add);
+        assertNotEquals(shiftedAt, widgets.get(0).getModifiedAt());
+        assertEquals(shiftedAt, widgets.get(1).getModifiedAt());
+        assertEquals(shiftedAt, widgets.get(2).getModifiedAt());
+        assertNotEquals(shiftedAt, widgets.get(3).getModifiedAt());
+    }
+
+    @Test
+    public void shiftRun_WhenExcludeIndexIsInRun_ShiftUntilExcludeIndex() {
+        for (long zIndex = 0; zIndex < 10; zIndex++) {
+            tree.insert(createWidget(zIndex));
+        }
+
+        assertEquals(3, tree.shiftRun(2, 5L, new Date()));
+        assertEquals(Arrays.asList(0L, 1L, 3L, 4L, 5L, 5L, 6L, 7L, 8L, 9L), zIndexes());
+        assertEquals(0, tree.shiftRun(6, 6L, new Date()));
+    }
+
+    @Test
+    public void shiftRun_WhenManyWidgetsWereInsertedWithShift_ReturnSameOrderAsNaiveShift() {
+        Random random = new Random(7);
+        List<Widget> naive = new ArrayList<>();
+        Map<UUID, ZIndexTree.Entry> entries = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            long zIndex = random.nextInt(4000);
+            naiveShift(naive, zIndex);
+            tree.shiftRun(zIndex, null, new Date());
+
+            Widget widget = createWidget(zIndex);
+            naive.add(widget);
+            naive.sort(Comparator.comparing(Widget::getZIndex));
+            entries.put(widget.getId(), tree.insert(widget));
+        }
+
+        List<Widget> testable = new ArrayList<>();
+        tree.forEach(testable::add);
+        assertEquals(
+                naive.stream().map(Widget::getId).collect(Collectors.toList()),
+                testable.stream().map(Widget::getId).collect(Collectors.toList())
+        );
+        assertEquals(
+                naive.stream().map(Widget::getZIndex).collect(Collectors.toList()),
+                testable.stream().map(Widget::getZIndex).collect(Collectors.toList())
+        );
+        for (Widget widget : testable) {
+            assertEquals(widget.getZIndex(), tree.widgetOf(entries.get(widget.getId())).getZIndex());
+        }
+    }
+
+    @Test
+    public void compare_WhenWidgetsWereShifted_ReturnOrderByZIndex() {
+        ZIndexTree.Entry first = tree.insert(createWidget(1L));
+        ZIndexTree.Entry second = tree.insert(createWidget(2L));
+        tree.shiftRun(1, null, new Date());
+        ZIndexTree.Entry inserted = tree.insert(createWidget(1L));
+
+        assertTrue(tree.compare(inserted, first) < 0);
+        assertTrue(tree.compare(first, second) < 0);
+        assertEquals(0, tree.compare(second, second));
+    }
+
+    @Test
+    public void appendAll_WhenWidgetsWereInserted_ReturnWidgetsAfterInsertedOnes() {
+        tree.insert(createWidget(1L));
+        List<Widget> appended = new ArrayList<>();
+        for (long i = 2; i < 1000; i++) {
+            appended.add(createWidget(i * 2));
+        }
+        List<ZIndexTree.Entry> entries = tree.appendAll(appended);
+
+        assertEquals(999, tree.size());
+        assertEquals(1998L, tree.lastKey().longValue());
+        assertEquals(6L, tree.ceilingKey(5).longValue());
+        assertEquals(appended.get(500), tree.widgetOf(entries.get(500)));
+        assertTrue(tree.compare(entries.get(0), entries.get(1)) < 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void appendAll_WhenZIndexIsNotAboveLastKey_ThrowException() {
+        tree.insert(createWidget(5L));
+        tree.appendAll(Arrays.asList(createWidget(6L), createWidget(5L)));
+    }
+
+    private static void naiveShift(List<Widget> widgets, long zIndex) {
+        long expected = zIndex;
+        for (int i = 0; i < widgets.size(); i++) {
+            Widget widget = widgets.get(i);
+            if (widget.getZIndex() < expected) {
+                continue;
+            }
+            if (widget.getZIndex() > expected) {
+                break;
+            }
+            widgets.set(i, createWidget(widget.getId(), expected + 1));
+            expected++;
+        }
+    }
+
+    private List<Long> zIndexes() {
+        List<Long> result = new ArrayList<>();
+        tree.forEach(widget -> result.add(widget.getZIndex()));
+        return result;
+    }
+
+    private static Widget createWidget(Long zIndex) {
+        return createWidget(UUID.randomUUID(), zIndex);
+    }
+
+    private static Widget createWidget(UUID id, Long zIndex) {
+        return new Widget(id, 50, 50, zIndex, 100, 100);
+    }
+}
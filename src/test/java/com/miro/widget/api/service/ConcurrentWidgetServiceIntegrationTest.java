@@ -1,7 +1,15 @@
 package com.miro.widget.api.service;
 
+import com.miro.widget.api.contract.WidgetListener;
 import com.miro.widget.api.contract.WidgetService;
+import com.miro.widget.api.model.dto.PageableDto;
 import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetEventDto;
+import com.miro.widget.api.model.dto.WidgetOperationDto;
+import com.miro.widget.api.model.entity.Filter;
+import com.miro.widget.api.model.entity.OperationType;
+import com.miro.widget.api.model.entity.Page;
+import com.miro.widget.api.model.entity.WidgetEventType;
 import lombok.extern.log4j.Log4j2;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,7 +20,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.*;
 
 @RunWith(SpringRunner.class)
@@ -557,4 +565,340 @@ public class ConcurrentWidgetServiceIntegrationTest {
         e.awaitTermination(5, TimeUnit.SECONDS);
         Assert.assertEquals(0, service.findAll().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findAll_WhenReadInParallelWithShiftingWrites_ReturnConsistentWidgets() throws Exception {
+        int writers = 2;
+        int readers = 4;
+        ExecutorService e = Executors.newFixedThreadPool(writers + readers);
+        CountDownLatch latch = new CountDownLatch(writers);
+        List<Future<?>> futures = new CopyOnWriteArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            futures.add(e.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 1000; i++) {
+                    WidgetDto widgetDto = new WidgetDto();
+                    widgetDto.setXCoordinate(random.nextInt(1000));
+                    widgetDto.setYCoordinate(random.nextInt(1000));
+                    widgetDto.setZIndex((long) random.nextInt(50));
+                    widgetDto.setWidth(1 + random.nextInt(100));
+                    widgetDto.setHeight(1 + random.nextInt(100));
+                    WidgetDto saved = service.save(widgetDto);
+                    if (random.nextInt(3) == 0) {
+                        service.delete(saved.getId());
+                    }
+                }
+                latch.countDown();
+            }));
+        }
+
+        for (int r = 0; r < readers; r++) {
+            futures.add(e.submit(() -> {
+                while (latch.getCount() > 0) {
+                    List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+                    for (int i = 1; i < widgets.size(); i++) {
+                        Assert.assertTrue(widgets.get(i - 1).getZIndex() < widgets.get(i).getZIndex());
+                    }
+
+                    Page<WidgetDto> page = service.findPage(new PageableDto(1, 10), new Filter(0L, 0L, 500L, 500L));
+                    Assert.assertTrue(page.getItemCount() <= 10);
+                    Assert.assertTrue(page.getItemCount() <= page.getTotalItems());
+
+                    if (!widgets.isEmpty()) {
+                        WidgetDto widget = service.findById(widgets.get(0).getId());
+                        Assert.assertTrue(widget == null || widget.getId().equals(widgets.get(0).getId()));
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        e.shutdown();
+    }
+
+    @Test
+    public void saveAsync_WhenManyWidgetsInParallel_CompleteWithUniqueZIndexes() throws Exception {
+        List<CompletableFuture<WidgetDto>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            WidgetDto widgetDto = new WidgetDto();
+            widgetDto.setXCoordinate(i);
+            widgetDto.setYCoordinate(i);
+            widgetDto.setZIndex(i % 2 == 0 ? 0L : null);
+            widgetDto.setWidth(100);
+            widgetDto.setHeight(50);
+            futures.add(service.saveAsync(widgetDto));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+        List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+        Assert.assertEquals(2000, widgets.size());
+        for (int i = 1; i < widgets.size(); i++) {
+            Assert.assertTrue(widgets.get(i - 1).getZIndex() < widgets.get(i).getZIndex());
+        }
+    }
+
+    @Test
+    public void saveAll_WhenBatchOverlapsSavedWidgets_ReturnShiftedUniqueZIndexes() {
+        service.save(createWidgetDto(1L));
+        service.save(createWidgetDto(2L));
+
+        List<WidgetDto> batch = new ArrayList<>();
+        batch.add(createWidgetDto(null));
+        batch.add(createWidgetDto(2L));
+        batch.add(createWidgetDto(2L));
+        List<WidgetDto> saved = service.saveAll(batch);
+
+        // answered in the order of the batch, which itself is left as it was
+        Assert.assertEquals(Long.valueOf(5L), saved.get(0).getZIndex());
+        Assert.assertEquals(Long.valueOf(2L), saved.get(1).getZIndex());
+        Assert.assertEquals(Long.valueOf(3L), saved.get(2).getZIndex());
+        Assert.assertNull(batch.get(0).getZIndex());
+        Assert.assertNull(batch.get(1).getId());
+        List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+        Assert.assertEquals(5, widgets.size());
+        for (int i = 1; i < widgets.size(); i++) {
+            Assert.assertTrue(widgets.get(i - 1).getZIndex() < widgets.get(i).getZIndex());
+        }
+    }
+
+    @Test
+    public void saveAll_WhenBatchMixesInRangeAndMissingZIndexes_PutWidgetsWithoutZIndexOnTop() {
+        for (long i = 1; i <= 5; i++) {
+            service.save(createWidgetDto(i));
+        }
+
+        List<WidgetDto> batch = new ArrayList<>();
+        batch.add(createWidgetDto(null));
+        batch.add(createWidgetDto(3L));
+        batch.add(createWidgetDto(null));
+        batch.add(createWidgetDto(1L));
+        List<WidgetDto> saved = service.saveAll(batch);
+
+        // both widgets in range shift the board up by one each before the others go on top of it
+        Assert.assertEquals(Long.valueOf(8L), saved.get(0).getZIndex());
+        Assert.assertEquals(Long.valueOf(3L), saved.get(1).getZIndex());
+        Assert.assertEquals(Long.valueOf(9L), saved.get(2).getZIndex());
+        Assert.assertEquals(Long.valueOf(1L), saved.get(3).getZIndex());
+        List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+        Assert.assertEquals(9, widgets.size());
+        Assert.assertEquals(saved.get(0).getId(), widgets.get(7).getId());
+        Assert.assertEquals(saved.get(2).getId(), widgets.get(8).getId());
+        for (int i = 1; i < widgets.size(); i++) {
+            Assert.assertTrue(widgets.get(i - 1).getZIndex() < widgets.get(i).getZIndex());
+        }
+    }
+
+    @Test
+    public void saveAll_WhenBoardIsEmpty_ReturnWidgetsInZOrder() {
+        List<WidgetDto> batch = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            batch.add(createWidgetDto(i % 2 == 0 ? null : 1000 - i));
+        }
+        service.saveAll(batch);
+
+        List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+        Assert.assertEquals(1000, widgets.size());
+        Assert.assertEquals(Long.valueOf(1L), widgets.get(0).getZIndex());
+        for (int i = 1; i < widgets.size(); i++) {
+            Assert.assertTrue(widgets.get(i - 1).getZIndex() < widgets.get(i).getZIndex());
+        }
+    }
+
+    @Test
+    public void applyAll_WhenWidgetsSwapZIndexes_ShiftNothingElse() {
+        WidgetDto first = service.save(createWidgetDto(1L));
+        WidgetDto second = service.save(createWidgetDto(2L));
+        WidgetDto third = service.save(createWidgetDto(3L));
+
+        List<WidgetOperationDto> operations = new ArrayList<>();
+        operations.add(new WidgetOperationDto(OperationType.UPDATE, first.getId(), createWidgetDto(2L)));
+        operations.add(new WidgetOperationDto(OperationType.UPDATE, second.getId(), createWidgetDto(1L)));
+        operations.add(new WidgetOperationDto(OperationType.DELETE, third.getId(), null));
+        operations.add(new WidgetOperationDto(OperationType.CREATE, null, createWidgetDto(null)));
+        List<WidgetDto> affected = service.applyAll(operations);
+
+        Assert.assertEquals(4, affected.size());
+        Assert.assertEquals(third.getId(), affected.get(2).getId());
+        Assert.assertEquals(Long.valueOf(2L), service.findById(first.getId()).getZIndex());
+        Assert.assertEquals(Long.valueOf(1L), service.findById(second.getId()).getZIndex());
+        Assert.assertNull(service.findById(third.getId()));
+        Assert.assertEquals(Long.valueOf(3L), service.findById(affected.get(3).getId()).getZIndex());
+    }
+
+    @Test
+    public void applyAll_WhenOneWidgetWasNotFound_ApplyNothing() {
+        WidgetDto saved = service.save(createWidgetDto(1L));
+
+        List<WidgetOperationDto> operations = new ArrayList<>();
+        operations.add(new WidgetOperationDto(OperationType.CREATE, null, createWidgetDto(1L)));
+        operations.add(new WidgetOperationDto(OperationType.DELETE, saved.getId(), null));
+        operations.add(new WidgetOperationDto(OperationType.DELETE, UUID.randomUUID(), null));
+        try {
+            service.applyAll(operations);
+            Assert.fail();
+        } catch (NoSuchElementException e) {
+            List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+            Assert.assertEquals(1, widgets.size());
+            Assert.assertEquals(saved.getId(), widgets.get(0).getId());
+            Assert.assertEquals(saved.getZIndex(), widgets.get(0).getZIndex());
+        }
+    }
+
+    @Test
+    public void applyAll_WhenOneWidgetHasZeroWidth_ApplyNothing() {
+        WidgetDto saved = service.save(createWidgetDto(1L));
+        WidgetDto invalid = createWidgetDto(2L);
+        invalid.setWidth(0);
+
+        List<WidgetOperationDto> operations = new ArrayList<>();
+        operations.add(new WidgetOperationDto(OperationType.DELETE, saved.getId(), null));
+        operations.add(new WidgetOperationDto(OperationType.CREATE, null, invalid));
+        try {
+            service.applyAll(operations);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            List<WidgetDto> widgets = new ArrayList<>(service.findAll());
+            Assert.assertEquals(1, widgets.size());
+            Assert.assertEquals(saved.getId(), widgets.get(0).getId());
+        }
+    }
+
+    @Test
+    public void applyAll_WhenWidgetsArePlaced_LeaveOperationWidgetsAsTheyWere() {
+        WidgetDto saved = service.save(createWidgetDto(1L));
+
+        WidgetDto created = createWidgetDto(null);
+        WidgetDto updated = createWidgetDto(1L);
+        List<WidgetDto> affected = service.applyAll(Arrays.asList(
+                new WidgetOperationDto(OperationType.CREATE, null, created),
+                new WidgetOperationDto(OperationType.UPDATE, saved.getId(), updated)
+        ));
+
+        Assert.assertEquals(Long.valueOf(2L), affected.get(0).getZIndex());
+        Assert.assertEquals(saved.getId(), affected.get(1).getId());
+        Assert.assertNull(created.getId());
+        Assert.assertNull(created.getZIndex());
+        Assert.assertNull(created.getModifiedAt());
+        Assert.assertNull(updated.getId());
+        Assert.assertNull(updated.getModifiedAt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void applyAll_WhenWidgetIsChangedTwice_ThrowException() {
+        UUID id = UUID.randomUUID();
+        service.applyAll(Arrays.asList(
+                new WidgetOperationDto(OperationType.UPDATE, id, createWidgetDto(1L)),
+                new WidgetOperationDto(OperationType.DELETE, id, null)
+        ));
+    }
+
+    @Test
+    public void exportAll_WhenWidgetsWereSaved_VisitSameWidgetsAsFindAll() {
+        for (long i = 0; i < 100; i++) {
+            service.save(createWidgetDto(i % 10));
+        }
+
+        List<WidgetDto> exported = new ArrayList<>();
+        service.exportAll(exported::add);
+        Assert.assertEquals(new ArrayList<>(service.findAll()), exported);
+    }
+
+    @Test
+    public void exportAll_WhenWidgetsAreShiftedDuringExport_VisitEveryWidgetOnce() {
+        for (long i = 0; i < 3000; i++) {
+            service.save(createWidgetDto(i));
+        }
+        List<WidgetDto> before = new ArrayList<>(service.findAll());
+
+        // every widget on the board is shifted up while the first ones are being exported
+        List<WidgetDto> exported = new ArrayList<>();
+        service.exportAll(widget -> {
+            if (exported.isEmpty()) {
+                service.save(createWidgetDto(0L));
+            }
+            exported.add(widget);
+        });
+
+        Assert.assertEquals(before, exported);
+        Assert.assertEquals(3001, service.findAll().size());
+    }
+
+    @Test
+    public void save_WhenWidgetsAreSavedInARow_ChangeVersionAndGrowModificationTimes() {
+        String version = service.version();
+        WidgetDto first = service.save(createWidgetDto(1L));
+        String firstVersion = service.version();
+        WidgetDto second = service.save(createWidgetDto(1L));
+
+        Assert.assertNotEquals(version, firstVersion);
+        Assert.assertNotEquals(firstVersion, service.version());
+        Assert.assertTrue(second.getModifiedAt().after(first.getModifiedAt()));
+        // the shifted widget takes the modification time of the change that shifted it
+        Assert.assertEquals(second.getModifiedAt(), service.findById(first.getId()).getModifiedAt());
+        Assert.assertEquals(second.getModifiedAt(), service.findById(second.getId()).getModifiedAt());
+    }
+
+    @Test
+    public void findPage_WhenBoardChangesBetweenReads_ReturnFreshPage() {
+        service.save(createWidgetDto(1L));
+        PageableDto meta = new PageableDto(1, 10);
+        Page<WidgetDto> first = service.findPage(meta, new Filter());
+        Assert.assertSame(first, service.findPage(meta, new Filter()));
+
+        service.save(createWidgetDto(2L));
+        Page<WidgetDto> second = service.findPage(meta, new Filter());
+        Assert.assertEquals(1, first.getTotalItems());
+        Assert.assertEquals(2, second.getTotalItems());
+    }
+
+    @Test
+    public void subscribe_WhenWidgetsAreSavedShiftedAndMovedAway_SendEventsOfViewport() throws InterruptedException {
+        BlockingQueue<WidgetEventDto> events = new LinkedBlockingQueue<>();
+        WidgetListener listener = new WidgetListener() {
+            @Override
+            public void onEvent(WidgetEventDto event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onOverflow() {
+            }
+        };
+        service.subscribe(new Filter(-100L, -100L, 100L, 100L), listener);
+        try {
+            WidgetDto first = service.save(createWidgetDto(1L));
+            WidgetDto second = service.save(createWidgetDto(1L));
+            WidgetDto moved = createWidgetDto(5L);
+            moved.setXCoordinate(1000);
+            service.update(second.getId(), moved);
+
+            assertEvent(WidgetEventType.ENTER, first.getId(), 1L, events.poll(5, TimeUnit.SECONDS));
+            assertEvent(WidgetEventType.UPDATE, first.getId(), 2L, events.poll(5, TimeUnit.SECONDS));
+            assertEvent(WidgetEventType.ENTER, second.getId(), 1L, events.poll(5, TimeUnit.SECONDS));
+            assertEvent(WidgetEventType.LEAVE, second.getId(), 1L, events.poll(5, TimeUnit.SECONDS));
+        } finally {
+            service.unsubscribe(listener);
+        }
+    }
+
+    private static void assertEvent(WidgetEventType type, UUID id, long zIndex, WidgetEventDto event) {
+        Assert.assertNotNull(event);
+        Assert.assertEquals(type, event.getType());
+        Assert.assertEquals(id, event.getWidget().getId());
+        Assert.assertEquals(Long.valueOf(zIndex), event.getWidget().getZIndex());
+    }
+
+    private static WidgetDto createWidgetDto(Long zIndex) {
+        WidgetDto widgetDto = new WidgetDto();
+        widgetDto.setXCoordinate(10);
+        widgetDto.setYCoordinate(20);
+        widgetDto.setZIndex(zIndex);
+        widgetDto.setWidth(100);
+        widgetDto.setHeight(50);
+        return widgetDto;
+    }
+}
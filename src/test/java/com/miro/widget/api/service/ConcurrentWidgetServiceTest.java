@@ -1,9 +1,11 @@
 package com.miro.widget.api.service;
 
 import com.miro.widget.api.contract.WidgetRepository;
+import com.miro.widget.api.contract.WidgetRepositoryView;
 import com.miro.widget.api.contract.WidgetService;
 import com.miro.widget.api.model.dto.PageableDto;
 import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.Cursor;
 import com.miro.widget.api.model.entity.Filter;
 import com.miro.widget.api.model.entity.Page;
 import com.miro.widget.api.model.entity.Point;
@@ -16,7 +18,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static java.util.Collections.emptySet;
@@ -35,7 +38,9 @@ public class ConcurrentWidgetServiceTest {
     @Before
     public void setUp() {
         repository = mock(WidgetRepository.class);
-        service = new ConcurrentWidgetService(repository);
+        ConcurrentWidgetService service = new ConcurrentWidgetService(repository);
+        service.start();
+        this.service = service;
     }
 
     @Test
@@ -53,6 +58,18 @@ public class ConcurrentWidgetServiceTest {
         assertEquals(test.getModifiedAt(), testable.getModifiedAt());
     }
 
+    @Test
+    public void findById_WhenRepositoryHasSnapshot_ReadFromSnapshot() {
+        Widget test = createWidget();
+        WidgetRepositoryView snapshot = mock(WidgetRepositoryView.class);
+        doReturn(snapshot).when(repository).snapshot();
+        doReturn(test).when(snapshot).findById(eq(test.getId()));
+
+        WidgetDto testable = service.findById(test.getId());
+        assertEquals(test.getId(), testable.getId());
+        verify(repository, never()).findById(any(UUID.class));
+    }
+
     @Test
     public void findById_WhenWidgetIsNotExist_ReturnNull() {
         Widget test = createWidget();
@@ -76,7 +93,7 @@ public class ConcurrentWidgetServiceTest {
 
     @Test
     public void findPage_WhenRequestWidgetsPageIsNotExist_ReturnEmptyPage() {
-        doReturn(0L).when(repository).count();
+        doReturn(0L).when(repository).countInArea(any(Point.class), any(Point.class));
 
         PageableDto pageableDto = createPageableDto();
         Page<WidgetDto> page = service.findPage(pageableDto, createFilter());
@@ -89,7 +106,7 @@ public class ConcurrentWidgetServiceTest {
 
     @Test
     public void findPage_WhenRequestWidgetsPageIsExist_ReturnExpectedPage() {
-        doReturn(2L).when(repository).count();
+        doReturn(2L).when(repository).countInArea(any(Point.class), any(Point.class));
 
         Set<Widget> widgets = createTwoWidgets();
         doReturn(widgets).when(repository).findAllInAreaSortByZIndex(any(Point.class), any(Point.class), anyLong(), anyLong());
@@ -121,6 +138,66 @@ public class ConcurrentWidgetServiceTest {
     }
 
 
+    @Test
+    public void findPage_WhenCursorIsSet_SeekAfterCursorAndReturnNextCursor() {
+        Set<Widget> widgets = createTwoWidgets();
+        Widget last = new ArrayList<>(widgets).get(1);
+        Cursor cursor = new Cursor(3L, UUID.randomUUID());
+        doReturn(5L).when(repository).count();
+        doReturn(widgets).when(repository).findAllSortByZIndexAfter(eq(3L), eq(cursor.getId()), eq(2L));
+
+        Page<WidgetDto> page = service.findPage(new PageableDto(2, 2, cursor), new Filter());
+
+        assertEquals(2, page.getItemCount());
+        assertEquals(cursor, page.getCursor());
+        assertEquals(Cursor.after(last), page.getNextCursor());
+        verify(repository, never()).findAllSortByZIndex(anyLong(), anyLong());
+    }
+
+    @Test
+    public void findPage_WhenIdenticalQueriesRunConcurrently_QueryRepositoryOnce() throws Exception {
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            queried.countDown();
+            released.await();
+            return 2L;
+        }).when(repository).count();
+        doReturn(createTwoWidgets()).when(repository).findAllSortByZIndex(anyLong(), anyLong());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CyclicBarrier barrier = new CyclicBarrier(8);
+        List<Future<Page<WidgetDto>>> pages = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            pages.add(executor.submit(() -> {
+                barrier.await();
+                return service.findPage(createPageableDto(), new Filter());
+            }));
+        }
+        queried.await();
+        // the others get to wait for the first query meanwhile
+        Thread.sleep(300);
+        released.countDown();
+
+        for (Future<Page<WidgetDto>> page : pages) {
+            assertSame(pages.get(0).get(), page.get());
+        }
+        executor.shutdown();
+        verify(repository, times(1)).count();
+    }
+
+    @Test
+    public void findPage_WhenFilterIsFilled_ReturnTotalItemsInArea() {
+        doReturn(5L).when(repository).count();
+        doReturn(2L).when(repository).countInArea(any(Point.class), any(Point.class));
+        doReturn(createTwoWidgets()).when(repository).findAllInAreaSortByZIndex(any(Point.class), any(Point.class), anyLong(), anyLong());
+
+        Page<WidgetDto> page = service.findPage(createPageableDto(), createFilter());
+
+        assertEquals(2, page.getTotalItems());
+        verify(repository, never()).count();
+    }
+
     @Test
     public void findAll_WhenWidgetsAreNotExists_ReturnEmptyCollection() {
         doReturn(emptySet()).when(repository).findAllSortByZIndex(anyLong(), anyLong());
@@ -164,6 +241,7 @@ public class ConcurrentWidgetServiceTest {
 
         verify(repository, times(1)).saveOrUpdate(any(Widget.class));
         verify(repository, never()).saveOrUpdate(anyCollection());
+        verify(repository, times(1)).flush();
 
         Assert.assertNotNull(saved);
         assertNotEquals(test.getId(), saved.getId());
@@ -201,13 +279,11 @@ public class ConcurrentWidgetServiceTest {
         doReturn(1L).when(repository).findLeastZIndexGreaterThanOrEqualTo(eq(1L));
 
         Widget test = createWidget(1L);
-        doReturn(Stream.of(test).collect(Collectors.toCollection(() -> new TreeSet<>(Comparator.comparing(Widget::getZIndex)))))
-                .when(repository).findAllSortByZIndexGreaterThanOrEqualTo(eq(1L));
-
         WidgetDto saved = service.save(fromEntity(test));
 
         verify(repository, times(1)).saveOrUpdate(any(Widget.class));
-        verify(repository, times(1)).saveOrUpdate(anyCollection());
+        verify(repository, times(1)).shiftTailZIndexesAt(eq(1L), isNull(), any(Date.class));
+        verify(repository, never()).saveOrUpdate(anyCollection());
 
         Assert.assertNotNull(saved);
         assertNotEquals(test.getId(), saved.getId());
@@ -269,6 +345,95 @@ public class ConcurrentWidgetServiceTest {
         service.delete(UUID.randomUUID());
     }
 
+    @Test
+    public void deleteAsync_WhenWidgetIsNotExist_CompleteWithNoSuchElementException() throws InterruptedException {
+        doReturn(null).when(repository).findById(any());
+
+        CompletableFuture<WidgetDto> deleted = service.deleteAsync(UUID.randomUUID());
+        try {
+            deleted.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NoSuchElementException);
+        }
+    }
+
+    @Test
+    public void save_WhenPreviousMutationThrewException_FailOnlyThatMutationAndKeepWriting() {
+        doThrow(new IllegalStateException("broken")).doReturn(null).when(repository).findHighestZIndex();
+
+        try {
+            service.save(fromEntity(createWidget(null)));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+        WidgetDto saved = service.save(fromEntity(createWidget(null)));
+
+        assertEquals(0L, saved.getZIndex().longValue());
+        verify(repository, times(1)).saveOrUpdate(any(Widget.class));
+    }
+
+    @Test
+    public void save_WhenMutationThrewError_FailItAndRefuseLaterMutations() {
+        doThrow(new StackOverflowError()).when(repository).findHighestZIndex();
+
+        try {
+            service.save(fromEntity(createWidget(null)));
+            fail();
+        } catch (IllegalStateException e) {
+            // the error stopped the writer, nobody completes the mutation
+        }
+        expectedException.expect(IsInstanceOf.instanceOf(IllegalStateException.class));
+        service.save(fromEntity(createWidget(null)));
+    }
+
+    @Test
+    public void version_WhenAnotherServiceStartsOverTheSameBoard_ReturnDifferentVersion() {
+        ConcurrentWidgetService other = new ConcurrentWidgetService(repository);
+
+        assertNotEquals(service.version(), other.version());
+    }
+
+    @Test
+    public void findModifiedAt_WhenWidgetIsExist_ReturnItsModificationTime() {
+        Widget test = createWidget(2L);
+        doReturn(test).when(repository).findById(eq(test.getId()));
+
+        assertEquals(test.getModifiedAt(), service.findModifiedAt(test.getId()));
+        Assert.assertNull(service.findModifiedAt(UUID.randomUUID()));
+    }
+
+    @Test
+    public void exportAll_WhenRepositoryHasNoSnapshot_ConvertCopiedWidgetsInZOrder() {
+        Widget first = createWidget(1L);
+        Widget second = createWidget(2L);
+        doReturn(2L).when(repository).count();
+        doAnswer(invocation -> {
+            Consumer<Widget> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(repository).forEachSortByZIndex(any());
+
+        List<WidgetDto> exported = new ArrayList<>();
+        service.exportAll(exported::add);
+
+        assertEquals(2, exported.size());
+        assertEquals(first.getId(), exported.get(0).getId());
+        assertEquals(second.getId(), exported.get(1).getId());
+    }
+
+    @Test
+    public void saveAsync_WhenServiceIsShutDown_ThrowIllegalStateException() throws InterruptedException {
+        expectedException.expect(IsInstanceOf.instanceOf(IllegalStateException.class));
+        ConcurrentWidgetService service = new ConcurrentWidgetService(repository);
+        service.start();
+        service.shutdown();
+
+        service.saveAsync(fromEntity(createWidget(1L)));
+    }
+
     @Test
     public void delete_WhenWidgetIsExist_ReturnDeletedWidget() {
         Widget test = createWidget(2L);
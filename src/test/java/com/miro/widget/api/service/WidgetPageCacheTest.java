@@ -0,0 +1,104 @@
+package com.miro.widget.api.service;
+
+import com.miro.widget.api.model.dto.PageableDto;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.entity.Filter;
+import com.miro.widget.api.model.entity.Page;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class WidgetPageCacheTest {
+
+    @Test
+    public void get_WhenPageWasPutAtSameVersion_ReturnCachedPage() {
+        WidgetPageCache cache = new WidgetPageCache(100);
+        Page<WidgetDto> page = createPage(new PageableDto(1, 10), 10);
+        cache.put(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter(0L, 0L, 100L, 100L)), page);
+
+        assertSame(page, cache.get(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter(0L, 0L, 100L, 100L))));
+        assertNull(cache.get(WidgetPageCache.Key.of(2, new PageableDto(1, 10), new Filter(0L, 0L, 100L, 100L))));
+        assertNull(cache.get(WidgetPageCache.Key.of(1, new PageableDto(2, 10), new Filter(0L, 0L, 100L, 100L))));
+        assertNull(cache.get(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter(0L, 0L, 100L, 200L))));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0.25, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void get_WhenFilterIsPartlyFilled_ReturnPageOfWholeBoard() {
+        WidgetPageCache cache = new WidgetPageCache(100);
+        Page<WidgetDto> page = createPage(new PageableDto(1, 10), 10);
+        cache.put(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter()), page);
+
+        assertSame(page, cache.get(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter(0L, null, null, null))));
+    }
+
+    @Test
+    public void put_WhenCapacityIsExceeded_EvictLeastRecentlyUsedPages() {
+        WidgetPageCache cache = new WidgetPageCache(25);
+        Filter filter = new Filter();
+        for (long number = 1; number <= 2; number++) {
+            cache.put(WidgetPageCache.Key.of(1, new PageableDto(number, 10), filter), createPage(new PageableDto(number, 10), 10));
+        }
+        cache.get(WidgetPageCache.Key.of(1, new PageableDto(1, 10), filter));
+        cache.put(WidgetPageCache.Key.of(1, new PageableDto(3, 10), filter), createPage(new PageableDto(3, 10), 10));
+
+        assertNotNull(cache.get(WidgetPageCache.Key.of(1, new PageableDto(1, 10), filter)));
+        assertNull(cache.get(WidgetPageCache.Key.of(1, new PageableDto(2, 10), filter)));
+        assertNotNull(cache.get(WidgetPageCache.Key.of(1, new PageableDto(3, 10), filter)));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getSize());
+        assertEquals(20, cache.getWeight());
+    }
+
+    @Test
+    public void put_WhenCapacityIsZero_CacheNothing() {
+        WidgetPageCache cache = new WidgetPageCache(0);
+        cache.put(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter()), createPage(new PageableDto(1, 10), 0));
+
+        assertNull(cache.get(WidgetPageCache.Key.of(1, new PageableDto(1, 10), new Filter())));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void put_WhenManyThreadsPutAndGetConcurrently_KeepWeightWithinCapacity() throws Exception {
+        WidgetPageCache cache = new WidgetPageCache(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            long version = thread;
+            futures.add(executor.submit(() -> {
+                for (long number = 1; number <= 500; number++) {
+                    WidgetPageCache.Key key = WidgetPageCache.Key.of(version, new PageableDto(number, 10), new Filter());
+                    cache.put(key, createPage(new PageableDto(number, 10), 10));
+                    cache.get(key);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        // a put racing with a sweep may overshoot, the next one over capacity sweeps again
+        cache.put(WidgetPageCache.Key.of(100, new PageableDto(1, 10), new Filter()), createPage(new PageableDto(1, 10), 10));
+
+        assertTrue(cache.getWeight() <= 1000);
+        assertEquals(cache.getSize() * 10, cache.getWeight());
+        assertEquals(8 * 500 + 1 - cache.getSize(), cache.getEvictions());
+    }
+
+    private static Page<WidgetDto> createPage(PageableDto meta, int count) {
+        List<WidgetDto> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new WidgetDto());
+        }
+        return Page.createPage(items, meta, count);
+    }
+}
@@ -0,0 +1,150 @@
+package com.miro.widget.api.service;
+
+import com.miro.widget.api.contract.WidgetListener;
+import com.miro.widget.api.model.dto.WidgetDto;
+import com.miro.widget.api.model.dto.WidgetEventDto;
+import com.miro.widget.api.model.entity.Point;
+import com.miro.widget.api.model.entity.Rectangle;
+import com.miro.widget.api.model.entity.Widget;
+import com.miro.widget.api.model.entity.WidgetEventType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class WidgetSubscriptionsTest {
+
+    @Test
+    public void publish_WhenWidgetMovesBetweenViewports_SendEnterUpdateAndLeaveToTouchedViewportsOnly() {
+        WidgetSubscriptions subscriptions = new WidgetSubscriptions(16, Runnable::run);
+        RecordingListener left = new RecordingListener();
+        RecordingListener right = new RecordingListener();
+        RecordingListener far = new RecordingListener();
+        subscriptions.subscribe(new Rectangle(new Point(0, 0), new Point(100, 100)), left);
+        subscriptions.subscribe(new Rectangle(new Point(200, 0), new Point(300, 100)), right);
+        subscriptions.subscribe(new Rectangle(new Point(5000, 5000), new Point(6000, 6000)), far);
+
+        UUID id = UUID.randomUUID();
+        Widget created = new Widget(id, 50, 50, 1L, 20, 20);
+        Widget moved = new Widget(id, 250, 50, 1L, 20, 20);
+        Widget shifted = new Widget(id, 250, 50, 2L, 20, 20);
+        subscriptions.publish(Arrays.asList(
+                new WidgetSubscriptions.Change(null, created),
+                new WidgetSubscriptions.Change(created, moved),
+                new WidgetSubscriptions.Change(moved, shifted),
+                new WidgetSubscriptions.Change(shifted, null)
+        ), WidgetSubscriptionsTest::convertFromEntity);
+
+        assertEquals(Arrays.asList(WidgetEventType.ENTER, WidgetEventType.LEAVE), left.types());
+        assertEquals(Arrays.asList(WidgetEventType.ENTER, WidgetEventType.UPDATE, WidgetEventType.LEAVE), right.types());
+        assertEquals(Long.valueOf(1), left.events.get(1).getWidget().getZIndex());
+        assertEquals(Long.valueOf(2), right.events.get(1).getWidget().getZIndex());
+        assertEquals(Long.valueOf(2), right.events.get(2).getWidget().getZIndex());
+        assertTrue(far.events.isEmpty());
+    }
+
+    @Test
+    public void publish_WhenWidgetCoversViewport_SendEnter() {
+        WidgetSubscriptions subscriptions = new WidgetSubscriptions(16, Runnable::run);
+        RecordingListener listener = new RecordingListener();
+        subscriptions.subscribe(new Rectangle(new Point(40, 40), new Point(60, 60)), listener);
+
+        subscriptions.publish(Collections.singletonList(
+                new WidgetSubscriptions.Change(null, new Widget(UUID.randomUUID(), 50, 50, 1L, 100, 100))
+        ), WidgetSubscriptionsTest::convertFromEntity);
+
+        assertEquals(Collections.singletonList(WidgetEventType.ENTER), listener.types());
+    }
+
+    @Test
+    public void publish_WhenListenerFallsQueueBehind_UnsubscribeAndTellListener() {
+        List<Runnable> tasks = new ArrayList<>();
+        WidgetSubscriptions subscriptions = new WidgetSubscriptions(2, tasks::add);
+        RecordingListener listener = new RecordingListener();
+        subscriptions.subscribe(new Rectangle(new Point(0, 0), new Point(100, 100)), listener);
+
+        List<WidgetSubscriptions.Change> changes = new ArrayList<>();
+        for (long i = 0; i < 3; i++) {
+            changes.add(new WidgetSubscriptions.Change(null, new Widget(UUID.randomUUID(), 50, 50, i, 20, 20)));
+        }
+        subscriptions.publish(changes, WidgetSubscriptionsTest::convertFromEntity);
+
+        assertEquals(0, subscriptions.size());
+        assertTrue(subscriptions.isEmpty());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertTrue(listener.events.isEmpty());
+        assertTrue(listener.overflowed);
+    }
+
+    @Test
+    public void publish_WhenListenerThrows_Unsubscribe() {
+        WidgetSubscriptions subscriptions = new WidgetSubscriptions(16, Runnable::run);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onEvent(WidgetEventDto event) throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        subscriptions.subscribe(new Rectangle(new Point(0, 0), new Point(100, 100)), listener);
+
+        subscriptions.publish(Collections.singletonList(
+                new WidgetSubscriptions.Change(null, new Widget(UUID.randomUUID(), 50, 50, 1L, 20, 20))
+        ), WidgetSubscriptionsTest::convertFromEntity);
+
+        assertTrue(subscriptions.isEmpty());
+    }
+
+    @Test
+    public void unsubscribe_WhenEventsAreQueued_DropThem() {
+        List<Runnable> tasks = new ArrayList<>();
+        WidgetSubscriptions subscriptions = new WidgetSubscriptions(16, tasks::add);
+        RecordingListener listener = new RecordingListener();
+        subscriptions.subscribe(new Rectangle(new Point(0, 0), new Point(100, 100)), listener);
+
+        subscriptions.publish(Collections.singletonList(
+                new WidgetSubscriptions.Change(null, new Widget(UUID.randomUUID(), 50, 50, 1L, 20, 20))
+        ), WidgetSubscriptionsTest::convertFromEntity);
+        subscriptions.unsubscribe(listener);
+        tasks.forEach(Runnable::run);
+
+        assertTrue(listener.events.isEmpty());
+        assertFalse(listener.overflowed);
+        assertTrue(subscriptions.isEmpty());
+    }
+
+    private static WidgetDto convertFromEntity(Widget entity) {
+        return new WidgetDto(
+                entity.getId(),
+                entity.getXCoordinate(),
+                entity.getYCoordinate(),
+                entity.getZIndex(),
+                entity.getWidth(),
+                entity.getHeight(),
+                entity.getModifiedAt()
+        );
+    }
+
+    private static class RecordingListener implements WidgetListener {
+        private final List<WidgetEventDto> events = new ArrayList<>();
+        private boolean overflowed;
+
+        @Override
+        public void onEvent(WidgetEventDto event) throws IOException {
+            events.add(event);
+        }
+
+        @Override
+        public void onOverflow() {
+            overflowed = true;
+        }
+
+        private List<WidgetEventType> types() {
+            List<WidgetEventType> result = new ArrayList<>();
+            events.forEach(event -> result.add(event.getType()));
+            return result;
+        }
+    }
+}